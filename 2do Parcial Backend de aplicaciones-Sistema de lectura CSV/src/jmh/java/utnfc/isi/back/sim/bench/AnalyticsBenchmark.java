@@ -0,0 +1,81 @@
+package utnfc.isi.back.sim.bench;
+
+import org.openjdk.jmh.annotations.*;
+import utnfc.isi.back.sim.analytics.LegoAnalyticsEngine;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.repository.JpaLegoSetRepository;
+import utnfc.isi.back.sim.service.ImportService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reportes de ranking: versión JPQL sobre H2 contra el motor columnar en memoria,
+ * con la base cargada una sola vez por trial (la importación de 1M filas tarda).
+ * H2 reutiliza el último resultado de una consulta idéntica si las tablas no cambiaron;
+ * se desactiva (OPTIMIZE_REUSE_RESULTS=FALSE) para medir la agregación y no esa caché.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g",
+        "-Dbackdb.url=jdbc:h2:mem:backdb;DB_CLOSE_DELAY=-1;MODE=LEGACY;OPTIMIZE_REUSE_RESULTS=FALSE"})
+public class AnalyticsBenchmark {
+
+    @Param({"1000000"})
+    public long rows;
+
+    private JpaLegoSetRepository repo;
+    private LegoAnalyticsEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path csv = Files.createTempFile("lego_bench_", ".csv");
+        try {
+            LegoCsvGenerator.write(csv, rows, 42L);
+            engine = new LegoAnalyticsEngine();
+            var svc = new ImportService();
+            svc.alImportar(r -> engine.refrescar());
+            try (var s = CsvLoader.streamMapped(csv.toString())) {
+                svc.importar(s);
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+        repo = new JpaLegoSetRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LocalEntityManagerProvider.close();
+    }
+
+    @Benchmark
+    public List<Object[]> jpqlRankingPaises() { return repo.rankingPaisesPorCostoValoracion(); }
+
+    @Benchmark
+    public List<Object[]> columnarRankingPaises() { return engine.rankingPaisesPorCostoValoracion(); }
+
+    @Benchmark
+    public List<Object[]> jpqlTop5Themes() { return repo.top5ThemesPorPiezas(); }
+
+    @Benchmark
+    public List<Object[]> columnarTop5Themes() { return engine.top5ThemesPorPiezas(); }
+
+    @Benchmark
+    public List<Object[]> jpqlCountriesConMasDeN() { return repo.countriesConMasDeN(1_000); }
+
+    @Benchmark
+    public List<Object[]> columnarCountriesConMasDeN() { return engine.countriesConMasDeN(1_000); }
+
+    @Benchmark
+    public List<Object[]> jpqlThemesPorRating() { return repo.rankingThemesPorRatingPromedio(500); }
+
+    @Benchmark
+    public List<Object[]> columnarThemesPorRating() { return engine.rankingThemesPorRatingPromedio(500); }
+}
@@ -0,0 +1,85 @@
+package utnfc.isi.back.sim.bench;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.openjdk.jmh.annotations.*;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.service.ImportService;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * El mismo CSV generado, en texto plano ({@code raw}), gzip y zstd (nivel 3), leído con
+ * {@code CsvLoader.streamMapped}: el texto plano se mapea en memoria y los comprimidos se
+ * descomprimen en un hilo aparte mientras se parsea. {@code importar} es la importación de
+ * punta a punta como en ImportBenchmark (se vacía LEGO_SETS antes de cada iteración);
+ * {@code parsear} sólo recorre las filas, para ver cuánto del costo de descomprimir queda
+ * oculto detrás de la base.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class CompressedImportBenchmark {
+
+    @Param({"100000"})
+    public long rows;
+
+    @Param({"raw", "gzip", "zstd"})
+    public String formato;
+
+    private Path csv;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path plano = Files.createTempFile("lego_bench_", ".csv");
+        LegoCsvGenerator.write(plano, rows, 42L);
+        if (formato.equals("raw")) {
+            csv = plano;
+            return;
+        }
+        csv = Files.createTempFile("lego_bench_", formato.equals("gzip") ? ".csv.gz" : ".csv.zst");
+        try (OutputStream out = formato.equals("gzip")
+                ? new GZIPOutputStream(Files.newOutputStream(csv), 1 << 16)
+                : new ZstdOutputStream(Files.newOutputStream(csv), 3)) {
+            Files.copy(plano, out);
+        } finally {
+            Files.deleteIfExists(plano);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void truncateSets() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("TRUNCATE TABLE LEGO_SETS").executeUpdate();
+            em.getTransaction().commit();
+        } finally { em.close(); }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public int importar() throws Exception {
+        try (var s = CsvLoader.streamMapped(csv.toString())) {
+            return new ImportService().importar(s).getSetsInsertados();
+        }
+    }
+
+    @Benchmark
+    public long parsear() throws Exception {
+        try (var s = CsvLoader.streamMapped(csv.toString())) {
+            return s.count();
+        }
+    }
+}
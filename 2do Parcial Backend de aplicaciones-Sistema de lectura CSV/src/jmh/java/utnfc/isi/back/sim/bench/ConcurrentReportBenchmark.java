@@ -0,0 +1,78 @@
+package utnfc.isi.back.sim.bench;
+
+import org.openjdk.jmh.annotations.*;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.repository.JpaLegoSetRepository;
+import utnfc.isi.back.sim.service.ImportService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Los cuatro rankings de {@link JpaLegoSetRepository} lanzados desde {@code threads} hilos a
+ * la vez sobre una única instancia del repositorio (cada consulta toma su propia sesión del
+ * pool). Una operación es una ronda: cada hilo corre los cuatro rankings y se espera a todos,
+ * así que rondas/s × threads × 4 da las consultas por segundo.
+ * Sin OPTIMIZE_REUSE_RESULTS, como en ReportBenchmark, y con el pool al menos tan grande como
+ * la cantidad de hilos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Dbackdb.pool=32",
+        "-Dbackdb.url=jdbc:h2:mem:backdb;DB_CLOSE_DELAY=-1;MODE=LEGACY;OPTIMIZE_REUSE_RESULTS=FALSE"})
+public class ConcurrentReportBenchmark {
+
+    @Param({"100000"})
+    public long rows;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private JpaLegoSetRepository repo;
+    private ExecutorService pool;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path csv = Files.createTempFile("lego_bench_", ".csv");
+        try {
+            LegoCsvGenerator.write(csv, rows, 42L);
+            try (var s = CsvLoader.streamMapped(csv.toString())) {
+                new ImportService().importar(s);
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+        repo = new JpaLegoSetRepository();
+        pool = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+        LocalEntityManagerProvider.close();
+    }
+
+    @Benchmark
+    public int cuatroRankings() throws Exception {
+        List<Future<Integer>> rondas = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            rondas.add(pool.submit(() -> repo.rankingPaisesPorCostoValoracion().size()
+                    + repo.top5ThemesPorPiezas().size()
+                    + repo.countriesConMasDeN(100).size()
+                    + repo.rankingThemesPorRatingPromedio(500).size()));
+        }
+        int filas = 0;
+        for (var f : rondas) filas += f.get();
+        return filas;
+    }
+}
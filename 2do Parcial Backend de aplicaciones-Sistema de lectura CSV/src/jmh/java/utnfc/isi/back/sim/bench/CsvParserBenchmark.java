@@ -0,0 +1,95 @@
+package utnfc.isi.back.sim.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import utnfc.isi.back.sim.csv.CsvLegoRow;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.csv.CsvSnapshot;
+import utnfc.isi.back.sim.csv.MappedCsvParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el parseo con OpenCSV ({@link CsvLoader}) contra {@link MappedCsvParser}
+ * sobre un archivo sintético, y ambos contra la relectura del snapshot binario
+ * ({@link CsvSnapshot}, incluida la verificación del CRC del CSV).
+ * Correr con {@code -prof gc} para ver la asignación por fila.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParserBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public long rows;
+
+    private Path csv;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        csv = Files.createTempFile("lego_bench_", ".csv");
+        LegoCsvGenerator.write(csv, rows, 42L);
+        snapshot = CsvSnapshot.rutaPara(csv);
+        CsvSnapshot.escribir(csv, snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public void openCsvRead(Blackhole bh) throws Exception {
+        for (CsvLegoRow r : CsvLoader.read(csv.toString())) consume(bh, r);
+    }
+
+    @Benchmark
+    public void openCsvStream(Blackhole bh) throws Exception {
+        try (var s = CsvLoader.stream(csv.toString())) { s.forEach(r -> consume(bh, r)); }
+    }
+
+    @Benchmark
+    public long mappedParser(Blackhole bh) throws Exception {
+        try (var p = MappedCsvParser.open(csv)) {
+            return p.forEach(r -> {
+                bh.consume(r.getProdId());
+                bh.consume(r.getListPrice());
+                bh.consume(r.getPieceCount());
+                bh.consume(r.getStarRating());
+                bh.consume(r.getThemeName());
+                bh.consume(r.getCountry());
+            });
+        }
+    }
+
+    @Benchmark
+    public long snapshot(Blackhole bh) throws Exception {
+        if (!CsvSnapshot.vigente(csv, snapshot)) throw new IllegalStateException("snapshot desactualizado");
+        try (var s = CsvSnapshot.open(snapshot)) {
+            return s.forEach(r -> {
+                bh.consume(r.getProdId());
+                bh.consume(r.getListPrice());
+                bh.consume(r.getPieceCount());
+                bh.consume(r.getStarRating());
+                bh.consume(r.getThemeName());
+                bh.consume(r.getCountry());
+            });
+        }
+    }
+
+    private static void consume(Blackhole bh, CsvLegoRow r) {
+        bh.consume(r.getProdId());
+        bh.consume(r.getListPrice());
+        bh.consume(r.getPieceCount());
+        bh.consume(r.getStarRating());
+        bh.consume(r.getThemeName());
+        bh.consume(r.getCountry());
+    }
+}
@@ -0,0 +1,64 @@
+package utnfc.isi.back.sim.bench;
+
+import org.openjdk.jmh.annotations.*;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.service.ImportService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importación de punta a punta contra H2 en memoria: parseo + validación + inserción.
+ * {@code readAndImport} es el camino original de AppMain ({@code CsvLoader.read} materializa
+ * todas las filas y después {@code importar(List)}); {@code streamAndImport} usa el parser
+ * mapeado en streaming. Antes de cada iteración se vacía LEGO_SETS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ImportBenchmark {
+
+    @Param({"10000", "100000"})
+    public long rows;
+
+    private Path csv;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        csv = Files.createTempFile("lego_bench_", ".csv");
+        LegoCsvGenerator.write(csv, rows, 42L);
+    }
+
+    /** Como en ImportThroughputBenchmark: se trunca en vez de recrear el esquema (secuencias pooled). */
+    @Setup(Level.Iteration)
+    public void truncateSets() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("TRUNCATE TABLE LEGO_SETS").executeUpdate();
+            em.getTransaction().commit();
+        } finally { em.close(); }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public int readAndImport() throws Exception {
+        return new ImportService().importar(CsvLoader.read(csv.toString())).getSetsInsertados();
+    }
+
+    @Benchmark
+    public int streamAndImport() throws Exception {
+        try (var s = CsvLoader.streamMapped(csv.toString())) {
+            return new ImportService().importar(s).getSetsInsertados();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package utnfc.isi.back.sim.bench;
+
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.DatabaseInitializer;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.service.ImportService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filas por segundo de la importación completa (parseo + persistencia en H2 en memoria)
+ * para distintos tamaños de lote. Antes de cada corrida se vacía LEGO_SETS (las maestras
+ * quedan de la corrida de calentamiento, así todas las mediciones parten del mismo estado).
+ *
+ * Uso (perfil jmh):
+ *      mvn -q -Pjmh compile exec:java -Dexec.mainClass=utnfc.isi.back.sim.bench.ImportThroughputBenchmark
+ *          -Dexec.args="[--lote 1000] [--dir target/bench] [10000 100000 500000]"
+ */
+public final class ImportThroughputBenchmark {
+    private ImportThroughputBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> lotes = new ArrayList<>();
+        Path dir = Path.of("target", "bench");
+        List<Long> sizes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--lote" -> lotes.add(Integer.parseInt(args[++i]));
+                case "--dir" -> dir = Path.of(args[++i]);
+                default -> sizes.add(Long.parseLong(args[i]));
+            }
+        }
+        if (sizes.isEmpty()) sizes = List.of(10_000L, 100_000L, 500_000L);
+        if (lotes.isEmpty()) lotes = List.of(ImportService.DEFAULT_CHUNK_SIZE);
+        Files.createDirectories(dir);
+
+        // calentamiento: carga el EMF y compila las rutas calientes
+        DatabaseInitializer.recreateSchemaFromDdl();
+        importar(csv(dir, 10_000), lotes.get(0));
+
+        System.out.printf("%-12s %-8s %12s %12s%n", "filas", "lote", "ms", "filas/s");
+        for (long n : sizes) {
+            Path csv = csv(dir, n);
+            for (int lote : lotes) {
+                truncateSets();
+                long t0 = System.nanoTime();
+                var r = importar(csv, lote);
+                long ms = Math.max(1, (System.nanoTime() - t0) / 1_000_000);
+                System.out.printf("%-12d %-8d %12d %12d%n", n, lote, ms, r.getSetsInsertados() * 1000L / ms);
+            }
+        }
+        LocalEntityManagerProvider.close();
+    }
+
+    /**
+     * No se recrea el esquema: reiniciaría las secuencias mientras Hibernate todavía tiene
+     * bloques de ids reservados (allocationSize = 50) y se repetirían claves.
+     */
+    private static void truncateSets() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("TRUNCATE TABLE LEGO_SETS").executeUpdate();
+            em.getTransaction().commit();
+        } finally { em.close(); }
+    }
+
+    private static Path csv(Path dir, long n) throws Exception {
+        Path csv = dir.resolve("lego_" + n + ".csv");
+        if (!Files.exists(csv)) LegoCsvGenerator.write(csv, n, 42L);
+        return csv;
+    }
+
+    private static ImportService.ImportResult importar(Path csv, int lote) throws Exception {
+        try (var rows = CsvLoader.streamMapped(csv.toString())) {
+            return new ImportService(lote).importar(rows);
+        }
+    }
+}
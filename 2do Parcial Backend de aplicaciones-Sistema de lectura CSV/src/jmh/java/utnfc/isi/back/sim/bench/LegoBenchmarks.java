@@ -0,0 +1,54 @@
+package utnfc.isi.back.sim.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Punto de entrada de target/benchmarks.jar: delega en {@code org.openjdk.jmh.Main} con los
+ * mismos argumentos, pero si no se indica formato de resultado ({@code -rf}) guarda el JSON en
+ * {@code jmh-results/<fecha>-<commit>.json} para poder comparar corridas entre commits
+ * (por ejemplo con jq o un visualizador de JMH). El commit sale de {@code -Dbench.commit}
+ * o de {@code git rev-parse --short HEAD}.
+ *
+ * Uso: java -jar target/benchmarks.jar [ReportBenchmark] [-p rows=10000,1000000] [opciones JMH]
+ */
+public final class LegoBenchmarks {
+    private LegoBenchmarks() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        boolean soloInfo = jmhArgs.stream().anyMatch(a -> a.equals("-h") || a.equals("-l") || a.equals("-lp")
+                || a.equals("-lprof") || a.equals("-lrf"));
+        if (!soloInfo && !jmhArgs.contains("-rf")) {
+            Path dir = Path.of("jmh-results");
+            Files.createDirectories(dir);
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            Path out = dir.resolve(stamp + "-" + commit() + ".json");
+            jmhArgs.addAll(List.of("-rf", "json", "-rff", out.toString()));
+            System.out.println("Resultados JMH en " + out.toAbsolutePath());
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(String[]::new));
+    }
+
+    private static String commit() {
+        String prop = System.getProperty("bench.commit");
+        if (prop != null && !prop.isBlank()) return prop;
+        try {
+            Process p = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (p.waitFor() == 0 && !out.isEmpty()) return out;
+        } catch (IOException e) {
+            // sin git disponible
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "local";
+    }
+}
@@ -0,0 +1,234 @@
+package utnfc.isi.back.sim.bench;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Genera archivos CSV sintéticos con el mismo encabezado que lego_sets_data.csv.
+ * Es determinístico para una misma configuración (incluida la semilla) y escribe en
+ * streaming (no retiene filas), así que sirve para archivos de cientos de millones de filas.
+ *
+ * Se puede configurar la cardinalidad de temáticas / países / edades y su sesgo (Zipf),
+ * la proporción de filas sucias (theme_name o country en blanco, prod_id faltante) y de
+ * prod_desc largos entre comillas con separadores, comillas y saltos de línea embebidos.
+ *
+ * Uso (perfil jmh):
+ *      mvn -q -Pjmh compile exec:java -Dexec.mainClass=utnfc.isi.back.sim.bench.LegoCsvGenerator
+ *          -Dexec.args="--rows 10000000 [--seed 42] [--themes 40] [--countries 21] [--ages 12]
+ *                       [--skew 1.1] [--sucias 0.01] [--comillas 0.05] [--desc 400] salida.csv"
+ */
+public final class LegoCsvGenerator {
+    private LegoCsvGenerator() {}
+
+    public static final String HEADER =
+            "ages;list_price;num_reviews;piece_count;play_star_rating;prod_desc;prod_id;"
+            + "review_difficulty;set_name;star_rating;theme_name;val_star_rating;country";
+
+    /** Máximo de filas por archivo (prod_id = 10000 + fila tiene que entrar en un int). */
+    public static final long MAX_ROWS = 2_000_000_000L;
+
+    private static final String[] AGES = {"2-5", "4-7", "5-12", "6-12", "7-12", "7-14", "8-14", "9-14", "10", "12", "16", "4-99"};
+    private static final String[] THEMES = {"City", "DUPLO®", "Star Wars™", "Technic", "Friends", "Creator 3-in-1",
+            "NINJAGO®", "Architecture", "Minecraft™", "Speed Champions"};
+    private static final String[] COUNTRIES = {"US", "CA", "GB", "DE", "FR", "ES", "IT", "AU", "NZ", "DN",
+            "AT", "BE", "CH", "CZ", "FI", "IE", "LU", "NL", "NO", "PL", "PT"};
+    private static final String[] DIFFICULTIES = {"Very Easy", "Easy", "Average", "Challenging", "Very Challenging"};
+    private static final String[] WORDS = {"build", "the", "bricks", "with", "minifigures", "and", "adventure",
+            "vehicle", "castle", "ship", "rescue", "city", "space", "pieces", "kids", "play", "display"};
+
+    /** Configuración del archivo; los valores por defecto generan filas limpias y uniformes. */
+    @Getter
+    @Builder
+    public static class Config {
+        private final long rows;
+        @Builder.Default private final long seed = 42L;
+        @Builder.Default private final int themes = THEMES.length;
+        @Builder.Default private final int countries = 10;
+        @Builder.Default private final int ages = AGES.length;
+        /** Exponente Zipf para elegir theme / country / age (0 = uniforme, ~1 = muy sesgado). */
+        @Builder.Default private final double skew = 0.0;
+        /** Proporción de filas con theme_name en blanco, country en blanco o sin prod_id (cada una). */
+        @Builder.Default private final double sucias = 0.0;
+        /** Proporción de filas con prod_desc largo entre comillas (con ';', '"' y saltos de línea). */
+        @Builder.Default private final double comillas = 0.0;
+        /** Largo aproximado en caracteres de los prod_desc largos. */
+        @Builder.Default private final int descLargo = 400;
+    }
+
+    /** Escribe {@code rows} filas limpias en {@code out} (lo sobreescribe si existe). */
+    public static void write(Path out, long rows, long seed) throws IOException {
+        write(out, Config.builder().rows(rows).seed(seed).build());
+    }
+
+    /** Escribe el archivo descripto por {@code cfg} en {@code out} (lo sobreescribe si existe). */
+    public static void write(Path out, Config cfg) throws IOException {
+        validar(cfg);
+        var rnd = new SplittableRandom(cfg.seed);
+        String[] themes = dictionary(THEMES, cfg.themes, i -> "Theme " + i);
+        String[] countries = dictionary(COUNTRIES, cfg.countries, LegoCsvGenerator::countryCode);
+        String[] ages = ageCodes(cfg.ages);
+        var themePick = new Zipf(themes.length, cfg.skew);
+        var countryPick = new Zipf(countries.length, cfg.skew);
+        var agePick = new Zipf(ages.length, cfg.skew);
+
+        var sb = new StringBuilder(256 + 2 * cfg.descLargo);
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write(HEADER);
+            w.write('\n');
+            for (long i = 0; i < cfg.rows; i++) {
+                int pieces = rnd.nextInt(10, 4000);
+                long cents = 499 + 100L * rnd.nextInt(0, 400) + 99L * rnd.nextInt(0, 2);
+                boolean sinTheme = rnd.nextDouble() < cfg.sucias;
+                boolean sinCountry = rnd.nextDouble() < cfg.sucias;
+                boolean sinProdId = rnd.nextDouble() < cfg.sucias;
+
+                sb.setLength(0);
+                sb.append(ages[agePick.next(rnd)]).append(';');
+                appendCents(sb, cents).append(';');
+                sb.append(rnd.nextInt(0, 200)).append(".0;");
+                sb.append(pieces).append(".0;");
+                appendRating(sb, rnd).append(';');
+                if (rnd.nextDouble() < cfg.comillas) appendQuotedDesc(sb, rnd, i, cfg.descLargo);
+                else sb.append("Synthetic set number ").append(i).append(" with ").append(pieces).append(" pieces.");
+                sb.append(';');
+                if (!sinProdId) sb.append(10_000 + i).append(".0");
+                sb.append(';');
+                sb.append(DIFFICULTIES[rnd.nextInt(DIFFICULTIES.length)]).append(';');
+                sb.append("Set ").append(i).append(';');
+                appendRating(sb, rnd).append(';');
+                if (!sinTheme) sb.append(themes[themePick.next(rnd)]);
+                sb.append(';');
+                appendRating(sb, rnd).append(';');
+                if (!sinCountry) sb.append(countries[countryPick.next(rnd)]);
+                sb.append('\n');
+                w.append(sb);
+            }
+        }
+    }
+
+    private static void validar(Config cfg) {
+        if (cfg.rows < 0 || cfg.rows > MAX_ROWS) throw new IllegalArgumentException("rows fuera de rango: " + cfg.rows);
+        if (cfg.themes <= 0 || cfg.countries <= 0 || cfg.ages <= 0)
+            throw new IllegalArgumentException("Las cardinalidades deben ser > 0");
+        if (cfg.countries > 26 * 26 * 26) throw new IllegalArgumentException("countries: máximo " + 26 * 26 * 26);
+        if (cfg.skew < 0) throw new IllegalArgumentException("skew debe ser >= 0");
+        if (cfg.sucias < 0 || cfg.sucias > 1 || cfg.comillas < 0 || cfg.comillas > 1)
+            throw new IllegalArgumentException("Las proporciones deben estar entre 0 y 1");
+    }
+
+    // ---------- Campos ----------
+
+    /** Precio en centavos como "12.34" (sin String.format: es la parte caliente del generador). */
+    private static StringBuilder appendCents(StringBuilder sb, long cents) {
+        sb.append(cents / 100).append('.');
+        long c = cents % 100;
+        if (c < 10) sb.append('0');
+        return sb.append(c);
+    }
+
+    /** Rating entre 2.0 y 5.0 con un decimal. */
+    private static StringBuilder appendRating(StringBuilder sb, SplittableRandom rnd) {
+        int tenths = 20 + rnd.nextInt(0, 31);
+        return sb.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    /** prod_desc entre comillas con "" escapadas, ';' y saltos de línea (LF y CRLF) en el medio. */
+    private static void appendQuotedDesc(StringBuilder sb, SplittableRandom rnd, long i, int largo) {
+        sb.append("\"Synthetic set ").append(i).append(": \"\"special edition\"\";");
+        int start = sb.length();
+        while (sb.length() - start < largo) {
+            int r = rnd.nextInt(20);
+            if (r == 0) sb.append(rnd.nextBoolean() ? "\n" : "\r\n");
+            else if (r == 1) sb.append("; ");
+            else sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(' ');
+        }
+        sb.append("end.\"");
+    }
+
+    // ---------- Diccionarios ----------
+
+    private static String[] dictionary(String[] base, int n, java.util.function.IntFunction<String> synthetic) {
+        String[] out = Arrays.copyOf(base, n);
+        for (int i = base.length; i < n; i++) out[i] = synthetic.apply(i);
+        return out;
+    }
+
+    /** Códigos de 3 letras (COUNTRIES.CODE es VARCHAR(3)) que no chocan con los de 2 letras reales. */
+    private static String countryCode(int i) {
+        return "" + (char) ('A' + i / 676 % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+    }
+
+    /**
+     * Los códigos reales primero y después rangos "a-b" (1 <= a < b <= 99) que
+     * {@code AgeGroup} sabe interpretar.
+     */
+    private static String[] ageCodes(int n) {
+        Set<String> codes = new LinkedHashSet<>(Arrays.asList(AGES).subList(0, Math.min(n, AGES.length)));
+        for (int a = 1; a < 99 && codes.size() < n; a++) {
+            for (int b = a + 1; b <= 99 && codes.size() < n; b++) codes.add(a + "-" + b);
+        }
+        if (codes.size() < n) throw new IllegalArgumentException("ages: máximo " + codes.size());
+        return codes.toArray(String[]::new);
+    }
+
+    /** Muestreo Zipf(s) sobre 0..n-1 con la acumulada precalculada y búsqueda binaria. */
+    private static final class Zipf {
+        private final double[] cdf;
+
+        Zipf(int n, double s) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) cdf[k] = sum += 1.0 / Math.pow(k + 1, s);
+            for (int k = 0; k < n; k++) cdf[k] /= sum;
+        }
+
+        int next(SplittableRandom rnd) {
+            int i = Arrays.binarySearch(cdf, rnd.nextDouble());
+            return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+        }
+    }
+
+    // ---------- CLI ----------
+
+    public static void main(String[] args) throws IOException {
+        var cfg = Config.builder();
+        List<String> rest = new ArrayList<>();
+        long rows = -1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rows" -> rows = Long.parseLong(args[++i]);
+                case "--seed" -> cfg.seed(Long.parseLong(args[++i]));
+                case "--themes" -> cfg.themes(Integer.parseInt(args[++i]));
+                case "--countries" -> cfg.countries(Integer.parseInt(args[++i]));
+                case "--ages" -> cfg.ages(Integer.parseInt(args[++i]));
+                case "--skew" -> cfg.skew(Double.parseDouble(args[++i]));
+                case "--sucias" -> cfg.sucias(Double.parseDouble(args[++i]));
+                case "--comillas" -> cfg.comillas(Double.parseDouble(args[++i]));
+                case "--desc" -> cfg.descLargo(Integer.parseInt(args[++i]));
+                default -> rest.add(args[i]);
+            }
+        }
+        if (rows < 0 || rest.size() != 1) {
+            System.out.println("Uso: LegoCsvGenerator --rows N [--seed S] [--themes T] [--countries C] [--ages A]"
+                    + " [--skew Z] [--sucias P] [--comillas P] [--desc LARGO] salida.csv");
+            return;
+        }
+        Path out = Path.of(rest.get(0));
+        long t0 = System.nanoTime();
+        write(out, cfg.rows(rows).build());
+        System.out.printf("%d filas, %d MB en %d ms → %s%n", rows, Files.size(out) >> 20,
+                (System.nanoTime() - t0) / 1_000_000, out.toAbsolutePath());
+    }
+}
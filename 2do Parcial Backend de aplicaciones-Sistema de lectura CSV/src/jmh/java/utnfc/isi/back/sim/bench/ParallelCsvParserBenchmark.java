@@ -0,0 +1,55 @@
+package utnfc.isi.back.sim.bench;
+
+import org.openjdk.jmh.annotations.*;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.csv.ParallelCsvParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escalabilidad del parseo en paralelo según la cantidad de hilos del pool,
+ * contra el parser mapeado secuencial (mismas filas {@code CsvLegoRow}) como referencia.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ParallelCsvParserBenchmark {
+
+    @Param({"2000000"})
+    public long rows;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    private Path csv;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        csv = Files.createTempFile("lego_bench_", ".csv");
+        LegoCsvGenerator.write(csv, rows, 42L);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.shutdown();
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public long parallel() throws Exception {
+        try (var s = ParallelCsvParser.stream(csv, pool)) { return s.count(); }
+    }
+
+    @Benchmark
+    public long sequential() throws Exception {
+        try (var s = CsvLoader.streamMapped(csv.toString())) { return s.count(); }
+    }
+}
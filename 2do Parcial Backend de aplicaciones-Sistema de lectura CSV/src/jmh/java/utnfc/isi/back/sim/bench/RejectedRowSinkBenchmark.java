@@ -0,0 +1,69 @@
+package utnfc.isi.back.sim.bench;
+
+import org.openjdk.jmh.annotations.*;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.service.ImportService;
+import utnfc.isi.back.sim.service.RejectedRowSink;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de grabar las filas rechazadas: la misma importación de ImportBenchmark sobre un CSV
+ * con ~10 % de filas sucias (sucias = 0.035 por cada uno de los tres campos), sin salida de
+ * rechazos ({@code ninguno}) y con {@link RejectedRowSink} en CSV y en JSON lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class RejectedRowSinkBenchmark {
+
+    @Param({"100000"})
+    public long rows;
+
+    @Param({"ninguno", "csv", "jsonl"})
+    public String destino;
+
+    private Path csv;
+    private Path salida;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        csv = Files.createTempFile("lego_bench_", ".csv");
+        LegoCsvGenerator.write(csv, LegoCsvGenerator.Config.builder().rows(rows).sucias(0.035).build());
+        if (!destino.equals("ninguno")) salida = Files.createTempFile("lego_rechazos_", "." + destino);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncateSets() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("TRUNCATE TABLE LEGO_SETS").executeUpdate();
+            em.getTransaction().commit();
+        } finally { em.close(); }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(csv);
+        if (salida != null) Files.deleteIfExists(salida);
+    }
+
+    @Benchmark
+    public int importar() throws Exception {
+        var svc = new ImportService();
+        var sink = salida != null ? RejectedRowSink.abrir(salida) : null;
+        svc.registrarRechazos(sink);
+        try (var s = CsvLoader.streamMapped(csv.toString())) {
+            return svc.importar(s).getSetsInsertados();
+        } finally {
+            if (sink != null) sink.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package utnfc.isi.back.sim.bench;
+
+import org.openjdk.jmh.annotations.*;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.repository.JpaLegoSetRepository;
+import utnfc.isi.back.sim.service.ImportService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cada reporte de {@link JpaLegoSetRepository} sobre una base cargada una vez por trial.
+ * El repositorio abre una sesión sin estado por consulta, así que las que devuelven
+ * entidades no reaprovechan un contexto de persistencia anterior.
+ * H2 reutiliza el último resultado de una consulta idéntica si las tablas no cambiaron;
+ * se desactiva (OPTIMIZE_REUSE_RESULTS=FALSE) para medir la consulta y no esa caché.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g",
+        "-Dbackdb.url=jdbc:h2:mem:backdb;DB_CLOSE_DELAY=-1;MODE=LEGACY;OPTIMIZE_REUSE_RESULTS=FALSE"})
+public class ReportBenchmark {
+
+    @Param({"10000", "100000"})
+    public long rows;
+
+    private final JpaLegoSetRepository repo = new JpaLegoSetRepository();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path csv = Files.createTempFile("lego_bench_", ".csv");
+        try {
+            LegoCsvGenerator.write(csv, rows, 42L);
+            try (var s = CsvLoader.streamMapped(csv.toString())) {
+                new ImportService().importar(s);
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LocalEntityManagerProvider.close();
+    }
+
+    @Benchmark
+    public int rankingPaisesPorCostoValoracion() {
+        return repo.rankingPaisesPorCostoValoracion().size();
+    }
+
+    @Benchmark
+    public int findByEdadPrecioValoracion() {
+        return repo.findByEdadPrecioValoracion(3, 10.0).size();
+    }
+
+    @Benchmark
+    public int top5ThemesPorPiezas() {
+        return repo.top5ThemesPorPiezas().size();
+    }
+
+    @Benchmark
+    public int countriesConMasDeN() {
+        return repo.countriesConMasDeN(100).size();
+    }
+
+    @Benchmark
+    public int rankingThemesPorRatingPromedio() {
+        return repo.rankingThemesPorRatingPromedio(500).size();
+    }
+
+    @Benchmark
+    public int findAllWithRefs() {
+        return repo.findAllWithRefs().size();
+    }
+}
@@ -0,0 +1,88 @@
+package utnfc.isi.back.sim.bench;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import utnfc.isi.back.sim.csv.CsvLoader;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mide el heap vivo máximo (medido después de cada GC) al recorrer un CSV con
+ * {@link CsvLoader#stream(String)} para tamaños crecientes de archivo.
+ * Con la lectura en streaming el pico debe mantenerse plano; con {@code --materializar}
+ * se compara contra {@link CsvLoader#read(String)}, que crece linealmente.
+ *
+ * Uso (perfil jmh):
+ *      mvn -q -Pjmh compile exec:java -Dexec.mainClass=utnfc.isi.back.sim.bench.StreamingHeapBenchmark
+ *          -Dexec.args="[--materializar] [--dir target/bench] [10000 100000 1000000 10000000]"
+ */
+public final class StreamingHeapBenchmark {
+    private StreamingHeapBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        boolean materializar = false;
+        Path dir = Path.of("target", "bench");
+        List<Long> sizes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--materializar" -> materializar = true;
+                case "--dir" -> dir = Path.of(args[++i]);
+                default -> sizes.add(Long.parseLong(args[i]));
+            }
+        }
+        if (sizes.isEmpty()) sizes = List.of(10_000L, 100_000L, 1_000_000L, 10_000_000L);
+        Files.createDirectories(dir);
+
+        var liveAfterGc = new AtomicLong();
+        installGcListener(liveAfterGc);
+
+        System.out.printf("%-12s %-10s %12s %12s %14s%n", "filas", "modo", "ms", "filas/s", "heap vivo MB");
+        for (long n : sizes) {
+            Path csv = dir.resolve("lego_" + n + ".csv");
+            if (!Files.exists(csv)) LegoCsvGenerator.write(csv, n, 42L);
+
+            run(csv, n, "stream", liveAfterGc, () -> {
+                try (var rows = CsvLoader.stream(csv.toString())) { return rows.count(); }
+            });
+            if (materializar) {
+                run(csv, n, "read", liveAfterGc, () -> CsvLoader.read(csv.toString()).size());
+            }
+        }
+    }
+
+    private interface Work { long run() throws Exception; }
+
+    private static void run(Path csv, long n, String modo, AtomicLong liveAfterGc, Work work) throws Exception {
+        System.gc();
+        Thread.sleep(200); // las notificaciones de GC llegan de forma asíncrona
+        liveAfterGc.set(0);
+        long t0 = System.nanoTime();
+        long leidas = work.run();
+        long ms = Math.max(1, (System.nanoTime() - t0) / 1_000_000);
+        if (leidas != n) throw new IllegalStateException(csv + ": se esperaban " + n + " filas y se leyeron " + leidas);
+        System.out.printf("%-12d %-10s %12d %12d %14.1f%n",
+                n, modo, ms, n * 1000 / ms, liveAfterGc.get() / (1024.0 * 1024.0));
+    }
+
+    /** Registra el máximo de heap usado inmediatamente después de cada GC (≈ conjunto vivo). */
+    private static void installGcListener(AtomicLong maxLive) {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+            var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = info.getGcInfo().getMemoryUsageAfterGc().values().stream()
+                    .mapToLong(MemoryUsage::getUsed).sum();
+            maxLive.accumulateAndGet(used, Math::max);
+        };
+        for (var gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter emitter) emitter.addNotificationListener(listener, null, null);
+        }
+    }
+}
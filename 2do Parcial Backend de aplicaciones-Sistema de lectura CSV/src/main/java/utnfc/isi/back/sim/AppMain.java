@@ -1,46 +1,178 @@
 package utnfc.isi.back.sim;
 
+import utnfc.isi.back.sim.analytics.LegoAnalyticsEngine;
+import utnfc.isi.back.sim.csv.CompressedInput;
 import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.csv.MappedCsvRow;
+import utnfc.isi.back.sim.infra.DatabaseInitializer;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
 import utnfc.isi.back.sim.repository.JpaLegoSetRepository;
 import utnfc.isi.back.sim.service.ImportService;
+import utnfc.isi.back.sim.service.RejectedRowSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
 
 public class AppMain {
 
     public static void main(String[] args) throws Exception {
-        if (args.length == 0) {
-            System.out.println("Uso: mvn -q exec:java -Dexec.args=\"/path/lego_sets_data.csv\"");
+        var opts = Arrays.asList(args);
+        var path = opts.stream().filter(a -> !a.startsWith("--")).findFirst().orElse(null);
+        // Con --base=ruta la base H2 queda en archivo y se reutiliza en la próxima corrida;
+        // --reimport la recrea. Se fija antes de tocar JPA (el esquema se prepara al arrancar).
+        opts.stream().filter(a -> a.startsWith("--base=")).findFirst()
+                .ifPresent(a -> System.setProperty(DatabaseInitializer.FILE_PROPERTY, a.substring("--base=".length())));
+        boolean reimport = opts.contains("--reimport");
+        if (reimport) System.setProperty(DatabaseInitializer.RECREATE_PROPERTY, "true");
+        boolean enArchivo = System.getProperty(DatabaseInitializer.FILE_PROPERTY) != null;
+        if (path == null && (!enArchivo || reimport || !LocalEntityManagerProvider.esquemaReutilizado())) {
+            if (enArchivo && !reimport) {
+                System.out.println("La base " + DatabaseInitializer.url() + " no tenía datos importados; indicar el CSV.");
+            }
+            System.out.println("Uso: mvn -q exec:java -Dexec.args=\"/path/lego_sets_data.csv | /dir | '/dir/lego_sets_*.csv' [--hilos=N] [--paralelo] [--pipeline | --delta [--marcar-bajas] | --reanudable] [--lote=N] [--snapshot] [--analitico] [--telemetria=archivo.jsonl] [--rechazos=archivo.csv|.jsonl] [--base=ruta [--reimport]]\"");
+            System.out.println("     con --base=ruta y sin CSV, sólo los reportes sobre lo importado antes en esa base.");
             return;
         }
-
-        var path = args[0];
-
-        // 1️⃣ Leer CSV
-        var rows = CsvLoader.read(path);
-
-        // 2️⃣ Importar datos a la base
-        var svc = new ImportService();
-        var result = svc.importar(rows);
+        boolean paralelo = opts.contains("--paralelo");
+        boolean delta = opts.contains("--delta");
+        boolean pipeline = opts.contains("--pipeline");
+        boolean snapshot = opts.contains("--snapshot");
+        // Un directorio o un glob (lego_sets_*.csv) importa todos sus CSV en paralelo
+        boolean varios = path != null && (Files.isDirectory(Path.of(path)) || path.matches(".*[*?\\[{].*"));
+        if (varios && (delta || pipeline || snapshot)) {
+            System.out.println("Con un directorio o patrón de archivos no se admiten --delta, --pipeline ni --snapshot.");
+            return;
+        }
+        // gzip / zstd se detectan por contenido; como no admiten checkpoints se importan enteros
+        boolean comprimido = path != null && !varios && CompressedInput.comprimido(Path.of(path));
+        // La importación reanudable (checkpoints por offset) es opcional y sólo para un CSV sin comprimir
+        boolean reanudable = opts.contains("--reanudable");
+        if (reanudable && (varios || comprimido || delta || pipeline || paralelo || snapshot)) {
+            System.out.println("--reanudable importa un único CSV sin comprimir; no se combina con --delta, --pipeline, --paralelo ni --snapshot.");
+            return;
+        }
+        if (path != null && !delta && !reanudable && LocalEntityManagerProvider.esquemaReutilizado()) {
+            // Estos modos insertan todo el archivo: sobre una base ya cargada duplicarían los sets
+            System.out.println("La base " + DatabaseInitializer.url() + " ya tiene datos importados:"
+                    + " usar --delta para aplicar el CSV sobre ellos o --reimport para recrearla.");
+            LocalEntityManagerProvider.close();
+            return;
+        }
+        int lote = opts.stream().filter(a -> a.startsWith("--lote="))
+                .mapToInt(a -> Integer.parseInt(a.substring("--lote=".length())))
+                .findFirst().orElse(ImportService.DEFAULT_CHUNK_SIZE);
+        var telemetria = opts.stream().filter(a -> a.startsWith("--telemetria="))
+                .map(a -> Path.of(a.substring("--telemetria=".length())))
+                .findFirst().orElse(null);
+        var rechazos = opts.stream().filter(a -> a.startsWith("--rechazos="))
+                .map(a -> Path.of(a.substring("--rechazos=".length())))
+                .findFirst().orElse(null);
+
+        // 1️⃣ + 2️⃣ Leer CSV en streaming e importar fila a fila (en lotes de `lote` filas).
+        //          Con --reanudable cada lote se confirma con un checkpoint y una corrida
+        //          interrumpida se retoma desde ahí. Con --delta sólo se escriben los cambios;
+        //          con --pipeline parseo, validación y escritura corren como etapas concurrentes.
+        //          Con un directorio o patrón cada archivo va en su transacción, en --hilos=N hilos.
+        //          Con --snapshot las filas salen del snapshot binario del CSV (se graba en la primera
+        //          lectura). Un CSV comprimido (gzip / zstd) se descomprime en otro hilo mientras
+        //          se parsea. Con --rechazos las filas inválidas se
+        //          graban (línea y motivo) en un CSV o JSON lines desde un hilo aparte.
+        //          Sin CSV (base en archivo ya cargada) se va directo a los reportes.
+        var svc = new ImportService(lote);
+        // Con --analitico los rankings salen del motor columnar, que se recarga al importar
+        var engine = opts.contains("--analitico") ? new LegoAnalyticsEngine() : null;
+        if (engine != null) svc.alImportar(r -> engine.refrescar());
+        ImportService.ImportResult result = null;
+        var sink = path != null && rechazos != null ? RejectedRowSink.abrir(rechazos) : null;
+        svc.registrarRechazos(sink);
+        try {
+            if (path == null) {
+                if (engine != null) engine.refrescar();
+                System.out.println("Reportes sobre la base existente " + DatabaseInitializer.url() + " (sin importar)");
+            } else if (varios) {
+                var archivos = CsvLoader.listar(path);
+                int hilos = opts.stream().filter(a -> a.startsWith("--hilos="))
+                        .mapToInt(a -> Integer.parseInt(a.substring("--hilos=".length())))
+                        .findFirst().orElse(Math.max(1, Math.min(archivos.size(), Runtime.getRuntime().availableProcessors())));
+                result = svc.importarArchivos(archivos, hilos);
+            } else if (delta) {
+                try (var rows = abrir(path, paralelo, snapshot)) {
+                    result = svc.importarDelta(rows, opts.contains("--marcar-bajas"));
+                }
+            } else if (pipeline) {
+                try (var rows = abrir(path, paralelo, snapshot)) {
+                    result = svc.importarPipeline(rows, true);
+                }
+            } else if (!reanudable) {
+                try (var rows = abrir(path, paralelo, snapshot)) {
+                    result = svc.importar(rows);
+                }
+            } else {
+                try {
+                    result = svc.importarReanudable(Path.of(path));
+                } catch (IllegalStateException ex) {
+                    // Base reutilizada sin checkpoint de este archivo (u otra versión ya importada)
+                    if (!LocalEntityManagerProvider.esquemaReutilizado()) throw ex;
+                    System.out.println(ex.getMessage());
+                    System.out.println("Usar --delta para aplicar el CSV sobre los datos existentes o --reimport para recrear la base.");
+                    LocalEntityManagerProvider.close();
+                    return;
+                }
+            }
+        } finally {
+            if (sink != null) sink.close();
+        }
 
         // 3️⃣ Mostrar resumen de importación
-        System.out.println();
-        System.out.println("   RESULTADO DE LA IMPORTACIÓN");
-        System.out.println("════════════════════════════════════════════════════════════");
-        System.out.printf("Total de filas procesadas: %d%n", result.getFilasLeidas());
-        System.out.printf("Filas válidas importadas: %d%n", result.getFilasValidas());
-        System.out.printf("Filas saltadas: %d (campos vacíos o países no encontrados)%n",
-                result.getFilasLeidas() - result.getFilasValidas());
-        System.out.println();
-        System.out.printf("Cantidad de Sets que se insertaron en la base de datos: %d%n",
-                result.getSetsInsertados());
-        System.out.printf("Cantidad de Rangos de edad que se insertaron en la base de datos: %d%n",
-                result.getAgeGroupsInsertados());
-        System.out.printf("Cantidad de Temáticas que se insertaron en la base de datos: %d%n",
-                result.getThemesInsertados());
-        System.out.println("────────────────────────────────────────────────────────────");
+        if (result != null) {
+            System.out.println();
+            System.out.println("   RESULTADO DE LA IMPORTACIÓN");
+            System.out.println("════════════════════════════════════════════════════════════");
+            if (result.getReanudadoDesdeFila() > 0) {
+                System.out.printf("Importación reanudada desde la fila %d (checkpoint)%n", result.getReanudadoDesdeFila());
+            }
+            System.out.printf("Total de filas procesadas: %d%n", result.getFilasLeidas());
+            System.out.printf("Filas válidas importadas: %d%n", result.getFilasValidas());
+            System.out.printf("Filas saltadas: %d (campos vacíos o países no encontrados)%n",
+                    result.getFilasLeidas() - result.getFilasValidas());
+            System.out.println();
+            System.out.printf("Cantidad de Sets que se insertaron en la base de datos: %d%n",
+                    result.getSetsInsertados());
+            System.out.printf("Cantidad de Rangos de edad que se insertaron en la base de datos: %d%n",
+                    result.getAgeGroupsInsertados());
+            System.out.printf("Cantidad de Temáticas que se insertaron en la base de datos: %d%n",
+                    result.getThemesInsertados());
+            if (delta) {
+                System.out.printf("Importación delta: %d actualizados, %d sin cambios, %d dados de baja, %d filas duplicadas%n",
+                        result.getSetsActualizados(), result.getSetsSinCambios(),
+                        result.getSetsEliminados(), result.getFilasDuplicadas());
+            }
+            if (result.getPipeline() != null) System.out.println(result.getPipeline());
+            System.out.println(result.getTelemetria());
+            if (result.getPorArchivo() != null) {
+                for (var r : result.getPorArchivo()) {
+                    System.out.printf("  %s: %d filas, %d sets en %d ms (%.0f filas/s)%n", r.getArchivo(),
+                            r.getFilasLeidas(), r.getSetsInsertados(),
+                            r.getTelemetria().getWallTotalNanos() / 1_000_000, r.getTelemetria().filasPorSegundo());
+                }
+            }
+            if (sink != null) {
+                System.out.printf("Filas rechazadas grabadas en %s: %d%n", sink.getDestino().toAbsolutePath(),
+                        sink.getEscritos());
+            }
+            if (telemetria != null) {
+                result.getTelemetria().exportarJsonl(telemetria);
+                System.out.println("Telemetría agregada a " + telemetria.toAbsolutePath());
+            }
+            System.out.println("────────────────────────────────────────────────────────────");
+        }
 
         // 4️⃣ Ranking costo/valoración
         var repo = new JpaLegoSetRepository();
-        var ranking = repo.rankingPaisesPorCostoValoracion();
+        var ranking = engine != null ? engine.rankingPaisesPorCostoValoracion() : repo.rankingPaisesPorCostoValoracion();
 
         System.out.println("════════════════════════════════════════════════════════════");
         System.out.println("📊  RANKING DE LOS 5 PAÍSES CON LA RELACIÓN COSTO/VALORACIÓN MÁS BAJA");
@@ -77,5 +209,12 @@ public class AppMain {
         }
 
         System.out.println("────────────────────────────────────────────────────────────");
+        // Cierra el pool: con base en archivo H2 la compacta y la deja consistente para la próxima corrida
+        LocalEntityManagerProvider.close();
+    }
+
+    private static Stream<MappedCsvRow> abrir(String path, boolean paralelo, boolean snapshot) throws IOException {
+        if (snapshot) return CsvLoader.streamSnapshot(path);
+        return paralelo ? CsvLoader.streamParallel(path) : CsvLoader.streamMapped(path);
     }
 }
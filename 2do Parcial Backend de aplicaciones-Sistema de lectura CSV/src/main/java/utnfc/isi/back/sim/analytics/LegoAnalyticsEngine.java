@@ -0,0 +1,268 @@
+package utnfc.isi.back.sim.analytics;
+
+import jakarta.persistence.EntityManager;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Motor analítico en memoria para los reportes de {@code JpaLegoSetRepository}.
+ *
+ * Carga los sets activos en arreglos primitivos por columna: theme / country / age como
+ * códigos densos de diccionario (0..k-1) y precio, rating y piezas como double/int.
+ * Cada reporte es un group-by que recorre las columnas en paralelo por segmentos, con un
+ * acumulador de k posiciones por segmento: el recorrido no crea objetos por fila.
+ * Las columnas son arreglos, así que el máximo es algo menos de {@code Integer.MAX_VALUE} filas.
+ *
+ * Los resultados tienen la misma forma que las versiones JPQL (listas de Object[]).
+ * Las consultas ven siempre una foto consistente: {@link #refrescar()} arma columnas nuevas
+ * y las publica de una vez. Para mantenerla al día después de cada importación:
+ * {@code importService.alImportar(r -> engine.refrescar())}.
+ */
+public class LegoAnalyticsEngine {
+
+    /** Piezas desconocidas (PIECE_COUNT null). Precio y rating usan NaN. */
+    static final int SIN_PIEZAS = Integer.MIN_VALUE;
+
+    private volatile Columnas cols = Columnas.VACIAS;
+
+    /** Recarga las columnas desde LEGO_SETS (sin los dados de baja). */
+    public void refrescar() {
+        EntityManager em = LocalEntityManagerProvider.em();
+        try {
+            cols = Columnas.cargar(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    public int filas() { return cols.n; }
+
+    // ---------- Reportes ----------
+
+    /** Igual que la versión JPQL: los 5 países con menor promedio de precio / rating. */
+    public List<Object[]> rankingPaisesPorCostoValoracion() {
+        var c = cols;
+        var acc = agrupar(c, c.countries.length, (desde, hasta, suma, cuenta) -> {
+            int[] country = c.country;
+            double[] price = c.price, rating = c.rating;
+            for (int i = desde; i < hasta; i++) {
+                double p = price[i], r = rating[i];
+                // rating 0 no entra (como NULLIF(STAR_RATING, 0) en los agregados)
+                if (Double.isNaN(p) || Double.isNaN(r) || r == 0) continue;
+                suma[country[i]] += p / r;
+                cuenta[country[i]]++;
+            }
+        });
+        return top(acc, c.countries, 5, Comparator.comparingDouble(acc::promedio), acc::promedio);
+    }
+
+    public List<Object[]> top5ThemesPorPiezas() {
+        var c = cols;
+        var acc = agrupar(c, c.themes.length, (desde, hasta, suma, cuenta) -> {
+            int[] theme = c.theme, pieces = c.pieces;
+            for (int i = desde; i < hasta; i++) {
+                int p = pieces[i];
+                if (p == SIN_PIEZAS) continue;
+                suma[theme[i]] += p;
+                cuenta[theme[i]]++;
+            }
+        });
+        return top(acc, c.themes, 5, Comparator.comparingDouble(g -> -acc.suma[g]), g -> (long) acc.suma[g]);
+    }
+
+    public List<Object[]> countriesConMasDeN(int n) {
+        var c = cols;
+        var acc = agrupar(c, c.countries.length, (desde, hasta, suma, cuenta) -> {
+            int[] country = c.country;
+            for (int i = desde; i < hasta; i++) cuenta[country[i]]++;
+        });
+        return top(acc, c.countries, Integer.MAX_VALUE, Comparator.comparingLong(g -> -acc.cuenta[g]),
+                g -> acc.cuenta[g], g -> acc.cuenta[g] > n);
+    }
+
+    public List<Object[]> rankingThemesPorRatingPromedio(int minPieces) {
+        var c = cols;
+        var acc = agrupar(c, c.themes.length, (desde, hasta, suma, cuenta) -> {
+            int[] theme = c.theme, pieces = c.pieces;
+            double[] rating = c.rating;
+            for (int i = desde; i < hasta; i++) {
+                double r = rating[i];
+                int p = pieces[i];
+                if (Double.isNaN(r) || p == SIN_PIEZAS || p < minPieces) continue;
+                suma[theme[i]] += r;
+                cuenta[theme[i]]++;
+            }
+        });
+        return top(acc, c.themes, Integer.MAX_VALUE, Comparator.comparingDouble(g -> -acc.promedio(g)), acc::promedio);
+    }
+
+    // ---------- Recorrido ----------
+
+    /** Recorre las filas [desde, hasta) acumulando por grupo en {@code suma} / {@code cuenta}. */
+    @FunctionalInterface
+    private interface Segmento {
+        void recorrer(int desde, int hasta, double[] suma, long[] cuenta);
+    }
+
+    /**
+     * Divide las filas en segmentos que se recorren en paralelo, cada uno con su propio
+     * acumulador de {@code k} grupos; al final se combinan. Cada reporte trae su propio
+     * bucle (una llamada por segmento, no por fila), así el JIT lo compila sin indirecciones.
+     */
+    private static Acumulador agrupar(Columnas c, int k, Segmento cuerpo) {
+        int n = c.n;
+        int segs = Math.max(1, Math.min(n / 16_384, Runtime.getRuntime().availableProcessors() * 4));
+        int paso = (n + segs - 1) / segs;
+        return IntStream.range(0, segs).parallel()
+                .mapToObj(s -> {
+                    var acc = new Acumulador(k);
+                    cuerpo.recorrer(s * paso, Math.min(n, (s + 1) * paso), acc.suma, acc.cuenta);
+                    return acc;
+                })
+                .reduce(Acumulador::combinar)
+                .orElseGet(() -> new Acumulador(k));
+    }
+
+    private static List<Object[]> top(Acumulador acc, String[] dic, int limite,
+                                      Comparator<Integer> orden, IntFunction<Object> metrica) {
+        return top(acc, dic, limite, orden, metrica, g -> true);
+    }
+
+    /** Grupos con al menos una fila, ordenados (empate por nombre) y recortados a {@code limite}. */
+    private static List<Object[]> top(Acumulador acc, String[] dic, int limite, Comparator<Integer> orden,
+                                      IntFunction<Object> metrica, IntPredicate having) {
+        List<Integer> grupos = new ArrayList<>();
+        for (int g = 0; g < dic.length; g++) {
+            if (acc.cuenta[g] > 0 && having.test(g)) grupos.add(g);
+        }
+        grupos.sort(orden.thenComparing(g -> dic[g]));
+        List<Object[]> out = new ArrayList<>(Math.min(limite, grupos.size()));
+        for (int g : grupos) {
+            if (out.size() == limite) break;
+            out.add(new Object[]{dic[g], metrica.apply(g)});
+        }
+        return out;
+    }
+
+    private static final class Acumulador {
+        final double[] suma;
+        final long[] cuenta;
+
+        Acumulador(int k) {
+            suma = new double[k];
+            cuenta = new long[k];
+        }
+
+        double promedio(int g) { return suma[g] / cuenta[g]; }
+
+        Acumulador combinar(Acumulador o) {
+            for (int g = 0; g < suma.length; g++) {
+                suma[g] += o.suma[g];
+                cuenta[g] += o.cuenta[g];
+            }
+            return this;
+        }
+    }
+
+    // ---------- Columnas ----------
+
+    /** Foto inmutable de los sets: una posición por fila en cada arreglo. */
+    private static final class Columnas {
+        static final Columnas VACIAS = new Cargador().columnas();
+
+        final int n;
+        final String[] themes, countries, ages;   // código de diccionario → nombre / código
+        final int[] theme, country, age, pieces;
+        final double[] price, rating;
+
+        private Columnas(int n, String[] themes, String[] countries, String[] ages,
+                         int[] theme, int[] country, int[] age, int[] pieces, double[] price, double[] rating) {
+            this.n = n;
+            this.themes = themes;
+            this.countries = countries;
+            this.ages = ages;
+            this.theme = theme;
+            this.country = country;
+            this.age = age;
+            this.pieces = pieces;
+            this.price = price;
+            this.rating = rating;
+        }
+
+        /**
+         * Una sola consulta (un único recorrido de LEGO_SETS, sin COUNT previo): los diccionarios
+         * se arman con los grupos que aparecen, así una temática o país creado mientras se carga
+         * no puede quedar sin código, y los arreglos crecen según las filas que llegan.
+         */
+        static Columnas cargar(EntityManager em) {
+            var c = new Cargador();
+            try (var rows = em.createQuery("""
+                    SELECT t.id, t.name, co.id, co.code, a.id, a.code, s.listPrice, s.starRating, s.pieceCount
+                    FROM LegoSet s JOIN s.theme t JOIN s.country co JOIN s.ageGroup a
+                    WHERE s.deleted = false
+                    """, Object[].class).getResultStream()) {
+                rows.forEach(c::agregar);
+            }
+            return c.columnas();
+        }
+    }
+
+    /** Arma las columnas fila a fila, duplicando la capacidad de los arreglos cuando se llenan. */
+    private static final class Cargador {
+        private final Diccionario themes = new Diccionario(), countries = new Diccionario(), ages = new Diccionario();
+        private int n;
+        private int[] theme = new int[1024], country = new int[1024], age = new int[1024], pieces = new int[1024];
+        private double[] price = new double[1024], rating = new double[1024];
+
+        void agregar(Object[] r) {
+            if (n == theme.length) crecer();
+            theme[n] = themes.codigo((Integer) r[0], (String) r[1]);
+            country[n] = countries.codigo((Integer) r[2], (String) r[3]);
+            age[n] = ages.codigo((Integer) r[4], (String) r[5]);
+            price[n] = r[6] == null ? Double.NaN : ((BigDecimal) r[6]).doubleValue();
+            rating[n] = r[7] == null ? Double.NaN : (Double) r[7];
+            pieces[n] = r[8] == null ? SIN_PIEZAS : (Integer) r[8];
+            n++;
+        }
+
+        private void crecer() {
+            if (n == Integer.MAX_VALUE - 8) throw new IllegalStateException("Demasiados sets para el motor en memoria");
+            int cap = (int) Math.min((long) n * 2, Integer.MAX_VALUE - 8);
+            theme = Arrays.copyOf(theme, cap);
+            country = Arrays.copyOf(country, cap);
+            age = Arrays.copyOf(age, cap);
+            pieces = Arrays.copyOf(pieces, cap);
+            price = Arrays.copyOf(price, cap);
+            rating = Arrays.copyOf(rating, cap);
+        }
+
+        Columnas columnas() {
+            return new Columnas(n, themes.nombres(), countries.nombres(), ages.nombres(),
+                    Arrays.copyOf(theme, n), Arrays.copyOf(country, n), Arrays.copyOf(age, n),
+                    Arrays.copyOf(pieces, n), Arrays.copyOf(price, n), Arrays.copyOf(rating, n));
+        }
+    }
+
+    /** Id de la maestra → código denso 0..k-1, en orden de aparición. */
+    private static final class Diccionario {
+        private final Map<Integer, Integer> codigos = new HashMap<>();
+        private final List<String> nombres = new ArrayList<>();
+
+        int codigo(Integer id, String nombre) {
+            Integer cod = codigos.get(id);
+            if (cod == null) {
+                cod = nombres.size();
+                codigos.put(id, cod);
+                nombres.add(nombre);
+            }
+            return cod;
+        }
+
+        String[] nombres() { return nombres.toArray(String[]::new); }
+    }
+}
@@ -0,0 +1,123 @@
+package utnfc.isi.back.sim.csv;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Diccionario de una columna de texto de pocos valores distintos (ver
+ * {@link LegoColumn#isCodificada()}) durante una importación: cada valor recibe un código
+ * entero (0, 1, 2…) y una única instancia de String que comparten todas las filas.
+ * {@link MappedCsvParser} busca por los bytes UTF-8 del campo, sin crear un String: sólo la
+ * primera aparición de cada valor se decodifica.
+ *
+ * Admite hasta {@value #MAX_CODIGOS} valores; pasado eso la columna no era de baja
+ * cardinalidad y {@link #codigo} devuelve {@link #SIN_CODIGO} (el llamador usa su propio String)
+ * sin copiar bytes ni tomar el lock.
+ * La búsqueda no toma locks y las altas sí, así lo pueden compartir los tramos de
+ * {@link ParallelCsvParser}; un código, una vez asignado, no cambia.
+ */
+public final class ColumnDictionary {
+
+    public static final int SIN_CODIGO = -1;
+    static final int MAX_CODIGOS = 4096;
+
+    /** Tabla de hash abierta con factor de carga ≤ 0,5. */
+    private static final int SLOTS = MAX_CODIGOS * 2;
+
+    /** Código + 1 de cada slot (0 = libre); se publica después de {@code claves} y {@code valores}. */
+    private final AtomicIntegerArray slots = new AtomicIntegerArray(SLOTS);
+    private final byte[][] claves = new byte[MAX_CODIGOS][];
+    private final String[] valores = new String[MAX_CODIGOS];
+    private volatile int size;
+
+    /** Código de los bytes UTF-8 {@code b[off, off + len)}, dándolo de alta si es nuevo. */
+    public int codigo(byte[] b, int off, int len) {
+        int h = hash(b, off, len);
+        for (int i = h & (SLOTS - 1); ; i = (i + 1) & (SLOTS - 1)) {
+            int c = slots.get(i) - 1;
+            if (c < 0) return lleno() ? SIN_CODIGO : agregar(Arrays.copyOfRange(b, off, off + len), null, h);
+            byte[] k = claves[c];
+            if (Arrays.equals(k, 0, k.length, b, off, off + len)) return c;
+        }
+    }
+
+    /** Código de {@code s}, dándolo de alta si es nuevo. */
+    public int codigo(String s) {
+        int h = hash(s);
+        for (int i = h & (SLOTS - 1); ; i = (i + 1) & (SLOTS - 1)) {
+            int c = slots.get(i) - 1;
+            if (c < 0) return lleno() ? SIN_CODIGO : agregar(s.getBytes(StandardCharsets.UTF_8), s, h);
+            if (valores[c].equals(s)) return c;
+        }
+    }
+
+    /** Instancia compartida igual a {@code s} (o {@code s} mismo si el diccionario está lleno). */
+    public String canonico(String s) {
+        if (s == null) return null;
+        int c = codigo(s);
+        return c == SIN_CODIGO ? s : valores[c];
+    }
+
+    public String valor(int codigo) {
+        if (codigo < 0 || codigo >= size) throw new IllegalArgumentException("Código inexistente: " + codigo);
+        return valores[codigo];
+    }
+
+    /** Valores distintos registrados. */
+    public int size() { return size; }
+
+    /**
+     * Lleno: un valor nuevo ya no recibe código. Se mira antes de copiar la clave y de tomar el
+     * lock, porque en una columna de muchos valores casi todas las búsquedas terminan acá.
+     */
+    private boolean lleno() { return size == MAX_CODIGOS; }
+
+    private synchronized int agregar(byte[] clave, String valor, int h) {
+        int i = h & (SLOTS - 1);
+        for (int c; (c = slots.get(i) - 1) >= 0; i = (i + 1) & (SLOTS - 1)) {
+            if (Arrays.equals(claves[c], clave)) return c;   // otro hilo lo agregó primero
+        }
+        int n = size;
+        if (n == MAX_CODIGOS) return SIN_CODIGO;
+        claves[n] = clave;
+        valores[n] = valor != null ? valor : new String(clave, StandardCharsets.UTF_8);
+        size = n + 1;
+        slots.set(i, n + 1);
+        return n;
+    }
+
+    // ---------- Hash (FNV-1a de los bytes UTF-8, igual desde bytes o desde un String) ----------
+
+    private static int hash(byte[] b, int off, int len) {
+        int h = 0x811C9DC5;
+        for (int i = off, end = off + len; i < end; i++) h = (h ^ (b[i] & 0xFF)) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(String s) {
+        int h = 0x811C9DC5;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            int cp = s.charAt(i);
+            if (cp < 0x80) {
+                h = (h ^ cp) * 0x01000193;
+                continue;
+            }
+            if (Character.isHighSurrogate((char) cp) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                cp = Character.toCodePoint((char) cp, s.charAt(++i));
+            }
+            if (cp < 0x800) {
+                h = (h ^ (0xC0 | cp >> 6)) * 0x01000193;
+            } else if (cp < 0x10000) {
+                h = (h ^ (0xE0 | cp >> 12)) * 0x01000193;
+                h = (h ^ (0x80 | (cp >> 6 & 0x3F))) * 0x01000193;
+            } else {
+                h = (h ^ (0xF0 | cp >> 18)) * 0x01000193;
+                h = (h ^ (0x80 | (cp >> 12 & 0x3F))) * 0x01000193;
+                h = (h ^ (0x80 | (cp >> 6 & 0x3F))) * 0x01000193;
+            }
+            h = (h ^ (0x80 | (cp & 0x3F))) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
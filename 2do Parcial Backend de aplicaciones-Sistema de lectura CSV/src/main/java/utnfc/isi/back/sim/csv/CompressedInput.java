@@ -0,0 +1,156 @@
+package utnfc.isi.back.sim.csv;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Entrada de un CSV que puede venir comprimido con gzip o zstd. El formato se detecta por los
+ * primeros bytes del archivo (gzip {@code 1F 8B}, zstd {@code 28 B5 2F FD}), no por la extensión,
+ * y se descomprime en streaming sin pasar por un archivo temporal.
+ *
+ * Con {@code hiloAparte} la descompresión corre en su propio hilo y entrega bloques de
+ * {@value #BLOQUE} bytes por una cola acotada ({@value #BLOQUES_EN_COLA} bloques), así se
+ * superpone con el parseo en el hilo que lee; si el parser se atrasa, el hilo se frena.
+ */
+public final class CompressedInput {
+    private CompressedInput() {}
+
+    public enum Formato { NINGUNO, GZIP, ZSTD }
+
+    static final int BLOQUE = 1 << 20;
+    static final int BLOQUES_EN_COLA = 4;
+
+    /** Formato de {@code archivo} según sus primeros bytes. */
+    public static Formato detectar(Path archivo) throws IOException {
+        byte[] m = new byte[4];
+        int n;
+        try (var in = Files.newInputStream(archivo)) {
+            n = in.readNBytes(m, 0, 4);
+        }
+        if (n >= 2 && m[0] == (byte) 0x1F && m[1] == (byte) 0x8B) return Formato.GZIP;
+        if (n == 4 && m[0] == (byte) 0x28 && m[1] == (byte) 0xB5 && m[2] == (byte) 0x2F && m[3] == (byte) 0xFD) {
+            return Formato.ZSTD;
+        }
+        return Formato.NINGUNO;
+    }
+
+    public static boolean comprimido(Path archivo) throws IOException {
+        return detectar(archivo) != Formato.NINGUNO;
+    }
+
+    /**
+     * Bytes del CSV ya descomprimidos (o tal cual, si no está comprimido). Sin compresión
+     * no se usa el hilo aparte: no hay trabajo que superponer.
+     */
+    public static InputStream abrir(Path archivo, boolean hiloAparte) throws IOException {
+        var formato = detectar(archivo);
+        InputStream raw = Files.newInputStream(archivo);
+        try {
+            InputStream in = switch (formato) {
+                case NINGUNO -> new BufferedInputStream(raw, 1 << 16);
+                case GZIP -> new GZIPInputStream(raw, 1 << 16);
+                case ZSTD -> new ZstdInputStream(new BufferedInputStream(raw, 1 << 16));
+            };
+            return hiloAparte && formato != Formato.NINGUNO ? new EnHilo(in, archivo.getFileName().toString()) : in;
+        } catch (IOException | RuntimeException ex) {
+            raw.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Lee {@code origen} en un hilo propio y lo entrega por bloques. Un bloque vacío marca el fin;
+     * un error del hilo se relanza en el lector. Cerrar interrumpe el hilo y cierra el origen.
+     */
+    private static final class EnHilo extends InputStream {
+        private static final byte[] FIN = new byte[0];
+
+        private final BlockingQueue<byte[]> cola = new ArrayBlockingQueue<>(BLOQUES_EN_COLA);
+        private final Thread hilo;
+        private volatile IOException error;
+        private byte[] actual;
+        private int pos, len;
+        private boolean terminado;
+
+        EnHilo(InputStream origen, String nombre) {
+            hilo = new Thread(() -> producir(origen), "descompresion-" + nombre);
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+
+        private void producir(InputStream origen) {
+            try (origen) {
+                while (true) {
+                    byte[] b = new byte[BLOQUE];
+                    int n = origen.readNBytes(b, 0, BLOQUE);
+                    if (n > 0) cola.put(n == BLOQUE ? b : Arrays.copyOf(b, n));
+                    if (n < BLOQUE) break;
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                return;   // close(): nadie más lee
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            }
+            try {
+                cola.put(FIN);
+            } catch (InterruptedException ignored) {
+                // close() antes de que se leyera el final
+            }
+        }
+
+        /** Deja en {@code actual} un bloque con datos; false al final del flujo. */
+        private boolean siguiente() throws IOException {
+            if (terminado) return false;
+            while (actual == null || pos == len) {
+                try {
+                    actual = cola.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Lectura interrumpida");
+                }
+                pos = 0;
+                len = actual.length;
+                if (actual == FIN) {
+                    terminado = true;
+                    if (error != null) throw new IOException("Error descomprimiendo", error);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return siguiente() ? actual[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int n) throws IOException {
+            if (n == 0) return 0;
+            if (!siguiente()) return -1;
+            int c = Math.min(n, len - pos);
+            System.arraycopy(actual, pos, b, off, c);
+            pos += c;
+            return c;
+        }
+
+        @Override
+        public void close() {
+            terminado = true;
+            hilo.interrupt();
+            cola.clear();
+        }
+    }
+}
@@ -44,4 +44,7 @@ public class CsvLegoRow {
 
     @CsvBindByName(column = "country")
     private String country;
+
+    /** Línea física del archivo donde empieza la fila (1 = encabezado); 0 si el lector no la informa. */
+    private long lineNumber;
 }
@@ -1,36 +1,218 @@
 package utnfc.isi.back.sim.csv;
 
+import com.opencsv.bean.CsvToBean;
 import com.opencsv.bean.CsvToBeanBuilder;
 import com.opencsv.enums.CSVReaderNullFieldIndicator;
 import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 
-import java.io.FileReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public final class CsvLoader {
     private CsvLoader() {}
 
+    /**
+     * Todas las filas en memoria. Los textos codificados (edades, dificultad, temática, país)
+     * se reemplazan por instancias compartidas de un {@link LegoDictionary}: las copias que crea
+     * OpenCSV por fila no quedan retenidas en la lista.
+     */
     public static List<CsvLegoRow> read(String path) throws Exception {
-        try (var fr = new FileReader(path, StandardCharsets.UTF_8)) {
-
-            var parser = new CSVParserBuilder()
-                    .withSeparator(';')             // separador correcto
-                    .withQuoteChar('"')             // permite comillas en campos
-                    .withIgnoreQuotations(false)    // no ignorar las comillas
-                    .build();
-
-            var reader = new CSVReaderBuilder(fr)
-                    .withCSVParser(parser)
-                    .build();
-
-            return new CsvToBeanBuilder<CsvLegoRow>(reader)
-                    .withType(CsvLegoRow.class)
-                    .withIgnoreLeadingWhiteSpace(true)
-                    .withFieldAsNull(CSVReaderNullFieldIndicator.EMPTY_SEPARATORS)
-                    .build()
-                    .parse();
+        try (var fr = abrirTexto(path)) {
+            var rows = toBean(reader(fr)).parse();
+            var diccionario = new LegoDictionary();
+            rows.forEach(diccionario::canonicalizar);
+            return rows;
         }
     }
+
+    /**
+     * Variante en streaming: las filas se leen de a una a medida que se consume el Stream,
+     * sin materializar el archivo completo en memoria. Como en {@link #read(String)}, los
+     * textos codificados salen de un {@link LegoDictionary} del Stream.
+     * El Stream mantiene el archivo abierto: hay que cerrarlo (try-with-resources).
+     * Como todas las variantes, acepta el CSV comprimido con gzip o zstd ({@link CompressedInput}).
+     */
+    public static Stream<CsvLegoRow> stream(String path) throws IOException {
+        var fr = abrirTexto(path);
+        try {
+            var it = toBean(reader(fr)).iterator();
+            return StreamSupport.stream(
+                            Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL),
+                            false)
+                    .map(new LegoDictionary()::canonicalizar)
+                    .onClose(() -> closeUnchecked(fr));
+        } catch (RuntimeException ex) {
+            fr.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Igual que {@link #stream(String)} pero usando {@link MappedCsvParser} (archivo mapeado en memoria,
+     * sin binding por reflexión). Cada fila es una copia propia de {@link MappedCsvRow}: primitivos,
+     * máscara de presencia y precio exacto, sin boxing; es lo que consume el importador.
+     * Un CSV comprimido no se mapea: se descomprime en otro hilo y el parser lo recorre en modo
+     * streaming.
+     */
+    public static Stream<MappedCsvRow> streamMapped(String path) throws IOException {
+        var parser = abrirParser(Path.of(path));
+        var row = new MappedCsvRow();
+        var split = new Spliterators.AbstractSpliterator<MappedCsvRow>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super MappedCsvRow> action) {
+                if (!parser.next(row)) return false;
+                action.accept(row.copy());
+                return true;
+            }
+        };
+        return StreamSupport.stream(split, false).onClose(() -> closeUnchecked(parser));
+    }
+
+    /**
+     * Igual que {@link #streamMapped(String)} pero a través del snapshot binario del archivo
+     * ({@link CsvSnapshot}): si hay uno vigente las filas salen de ahí sin parsear el texto; si no,
+     * se parsea el CSV y el snapshot se graba a medida que se consumen las filas (queda publicado
+     * sólo si el Stream se recorrió completo).
+     */
+    public static Stream<MappedCsvRow> streamSnapshot(String path) throws IOException {
+        var csv = Path.of(path);
+        var snap = CsvSnapshot.rutaPara(csv);
+        var row = new MappedCsvRow();
+        if (CsvSnapshot.vigente(csv, snap)) {
+            var snapshot = CsvSnapshot.open(snap);
+            var split = new Spliterators.AbstractSpliterator<MappedCsvRow>(snapshot.filas(),
+                    Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED) {
+                @Override
+                public boolean tryAdvance(Consumer<? super MappedCsvRow> action) {
+                    if (!snapshot.next(row)) return false;
+                    action.accept(row.copy());
+                    return true;
+                }
+            };
+            return StreamSupport.stream(split, false).onClose(() -> closeUnchecked(snapshot));
+        }
+
+        var parser = abrirParser(csv);
+        CsvSnapshot.Escritor escritor;
+        try {
+            escritor = CsvSnapshot.escritor(csv, snap);
+        } catch (IOException | RuntimeException ex) {
+            parser.close();
+            throw ex;
+        }
+        var split = new Spliterators.AbstractSpliterator<MappedCsvRow>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            /** El snapshot se publica una sola vez: después el escritor queda cerrado. */
+            private boolean terminado;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super MappedCsvRow> action) {
+                if (terminado) return false;
+                if (!parser.next(row)) {
+                    terminado = true;
+                    try { escritor.terminar(); }
+                    catch (IOException e) { throw new UncheckedIOException(e); }
+                    return false;
+                }
+                escritor.agregar(row);
+                action.accept(row.copy());
+                return true;
+            }
+        };
+        return StreamSupport.stream(split, false).onClose(() -> {
+            closeUnchecked(escritor);
+            closeUnchecked(parser);
+        });
+    }
+
+    /**
+     * Parseo en paralelo con {@link ParallelCsvParser} sobre el pool común de fork-join;
+     * las filas se entregan en el orden del archivo. Un CSV comprimido no se puede partir en
+     * tramos (no hay acceso al azar): se lee como en {@link #streamMapped(String)}.
+     */
+    public static Stream<MappedCsvRow> streamParallel(String path) throws IOException {
+        if (CompressedInput.comprimido(Path.of(path))) return streamMapped(path);
+        return ParallelCsvParser.stream(Path.of(path), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * {@link MappedCsvParser} sobre {@code csv}: mapeado en memoria si es texto plano, en modo
+     * streaming sobre la descompresión (en un hilo aparte) si viene comprimido.
+     */
+    static MappedCsvParser abrirParser(Path csv) throws IOException {
+        if (!CompressedInput.comprimido(csv)) return MappedCsvParser.open(csv);
+        return MappedCsvParser.open(CompressedInput.abrir(csv, true), csv.toString());
+    }
+
+    /**
+     * Archivos de una importación de varios CSV: si {@code patron} es un directorio, sus
+     * {@code *.csv} (también {@code .gz} / {@code .zst}); si no, los del directorio padre cuyo nombre cumple el glob del último
+     * tramo (por ejemplo {@code entregas/lego_sets_*.csv}). Ordenados por nombre.
+     */
+    public static List<Path> listar(String patron) throws IOException {
+        var p = Path.of(patron);
+        Path dir;
+        String glob;
+        if (Files.isDirectory(p)) {
+            dir = p;
+            glob = "*.{csv,gz,zst}";
+        } else {
+            dir = p.getParent() != null ? p.getParent() : Path.of(".");
+            glob = p.getFileName().toString();
+        }
+        List<Path> archivos = new ArrayList<>();
+        try (var ds = Files.newDirectoryStream(dir, glob)) {
+            for (var f : ds) if (Files.isRegularFile(f)) archivos.add(f);
+        }
+        archivos.sort(null);
+        return archivos;
+    }
+
+    private static Reader abrirTexto(String path) throws IOException {
+        return new InputStreamReader(CompressedInput.abrir(Path.of(path), true), StandardCharsets.UTF_8);
+    }
+
+    private static CSVReader reader(Reader in) {
+        var parser = new CSVParserBuilder()
+                .withSeparator(';')             // separador correcto
+                .withQuoteChar('"')             // permite comillas en campos
+                .withIgnoreQuotations(false)    // no ignorar las comillas
+                // vacío sin comillas = null; va en el parser porque CsvToBeanBuilder
+                // ignora su withFieldAsNull cuando recibe un CSVReader ya armado
+                .withFieldAsNull(CSVReaderNullFieldIndicator.EMPTY_SEPARATORS)
+                .build();
+
+        return new CSVReaderBuilder(in)
+                .withCSVParser(parser)
+                .build();
+    }
+
+    private static CsvToBean<CsvLegoRow> toBean(CSVReader reader) {
+        return new CsvToBeanBuilder<CsvLegoRow>(reader)
+                .withType(CsvLegoRow.class)
+                .withIgnoreLeadingWhiteSpace(true)
+                .build();
+    }
+
+    private static void closeUnchecked(Closeable r) {
+        try { r.close(); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
 }
@@ -0,0 +1,432 @@
+package utnfc.isi.back.sim.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot binario de las filas ya parseadas de un CSV de LEGO, para no volver a parsear el
+ * texto mientras el archivo no cambie. Se guarda junto al CSV ({@code archivo.csv.snap}).
+ *
+ * Formato (little-endian):
+ * <pre>
+ *  encabezado (80 bytes): magia, versión, tamaño de registro, tamaño / mtime / CRC32C del CSV,
+ *                         cantidad de filas, offsets de diccionario y de textos sueltos
+ *  filas ({@value #RECORD} bytes c/u): máscara de presencia (con la escala del precio en el byte
+ *                         alto), línea, offsets, el precio sin escala, los otros tres decimales,
+ *                         los tres enteros y una referencia por columna de texto
+ *  diccionario:           por entrada, largo + bytes UTF-8
+ *  textos sueltos:        ídem, en el orden de las filas que los usan
+ * </pre>
+ * Cada columna de texto tiene un diccionario de hasta {@value #MAX_DICCIONARIO} valores: las de
+ * pocos valores distintos (temática, país, edades, dificultad) quedan codificadas completas y se
+ * decodifican una sola vez al abrir. Cuando el diccionario de una columna se llena (nombres,
+ * descripciones) los valores nuevos van como textos sueltos, que se leen en secuencia junto con
+ * las filas; así ni el escritor ni el lector guardan en memoria todos los textos del archivo.
+ * Las filas son de ancho fijo y se leen mapeadas en memoria por ventanas, igual que
+ * {@link MappedCsvParser}.
+ *
+ * El snapshot vale mientras el CSV tenga el mismo tamaño, fecha de modificación y CRC32C
+ * ({@link #vigente}); si no, se vuelve a parsear y se reescribe.
+ * Igual que el parser, no es thread-safe.
+ */
+public final class CsvSnapshot implements Closeable {
+
+    private static final long MAGIC = 0x50414E534F47454CL;   // "LEGOSNAP"
+    private static final int VERSION = 2;
+    private static final int HEADER = 80;
+    static final int RECORD = 96;
+    static final int MAX_DICCIONARIO = 4096;
+    private static final int WINDOW = (MappedCsvParser.DEFAULT_WINDOW / RECORD) * RECORD;
+
+    /** Referencias a texto en una fila: ausente, o el próximo texto suelto; las demás son ids de diccionario. */
+    private static final int NULO = -1, SUELTO = -2;
+
+    /** Columnas de texto en el orden en que se guardan sus referencias. */
+    private static final LegoColumn[] TEXTOS = {
+            LegoColumn.AGES, LegoColumn.PROD_DESC, LegoColumn.REVIEW_DIFFICULTY,
+            LegoColumn.SET_NAME, LegoColumn.THEME_NAME, LegoColumn.COUNTRY
+    };
+
+    private final Path path;
+    private final FileChannel ch;
+    private final long filas;
+    private final String[] diccionario;
+    /** Código en {@code codigos} de cada entrada de {@code diccionario} de una columna codificada (-2: sin buscar). */
+    private final int[] codigoDeEntrada;
+    private final LegoDictionary codigos = new LegoDictionary();
+    private final long sueltosDesde, sueltosHasta;
+
+    private MappedByteBuffer buf;
+    private long winStart = -1, winFilas;
+    private long siguiente;
+
+    private MappedByteBuffer sueltos;
+    private long sueltosWin = -1, sueltosWinFin = -1;
+    private long sueltoPos;
+    private byte[] scratch = new byte[512];
+
+    private CsvSnapshot(Path path) throws IOException {
+        this.path = path;
+        this.ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var h = leerEncabezado(ch);
+            if (h == null) throw new IllegalStateException("Snapshot inválido o de otra versión: " + path);
+            this.filas = h.getLong(40);
+            long dicOffset = h.getLong(48);
+            this.sueltosDesde = h.getLong(64);
+            this.sueltosHasta = ch.size();
+            if (HEADER + filas * RECORD > dicOffset || dicOffset > sueltosDesde || sueltosDesde > sueltosHasta) {
+                throw new IllegalStateException("Snapshot truncado: " + path);
+            }
+            this.diccionario = leerDiccionario(dicOffset, h.getInt(56));
+            this.codigoDeEntrada = new int[diccionario.length];
+            Arrays.fill(codigoDeEntrada, -2);
+            this.sueltoPos = sueltosDesde;
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+
+    public static CsvSnapshot open(Path snapshot) throws IOException {
+        return new CsvSnapshot(snapshot);
+    }
+
+    /** Ubicación del snapshot de {@code csv}: el mismo nombre con {@code .snap} agregado. */
+    public static Path rutaPara(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + ".snap");
+    }
+
+    /**
+     * true si {@code snapshot} existe, es de este formato y corresponde al contenido actual de
+     * {@code csv}: primero compara tamaño y mtime (baratos) y recién después el CRC32C del archivo.
+     */
+    public static boolean vigente(Path csv, Path snapshot) throws IOException {
+        if (!Files.isRegularFile(snapshot)) return false;
+        ByteBuffer h;
+        try (var ch = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            h = leerEncabezado(ch);
+        }
+        return h != null
+                && h.getLong(16) == Files.size(csv)
+                && h.getLong(24) == Files.getLastModifiedTime(csv).toMillis()
+                && h.getLong(32) == checksum(csv);
+    }
+
+    /** Parsea {@code csv} completo con {@link MappedCsvParser} y escribe su snapshot; devuelve las filas. */
+    public static long escribir(Path csv, Path snapshot) throws IOException {
+        try (var parser = CsvLoader.abrirParser(csv); var w = escritor(csv, snapshot)) {
+            parser.forEach(w::agregar);
+            w.terminar();
+            return w.filas;
+        }
+    }
+
+    /** Escritor incremental, para grabar el snapshot mientras se consumen las filas del parser. */
+    static Escritor escritor(Path csv, Path snapshot) throws IOException {
+        return new Escritor(csv, snapshot);
+    }
+
+    public long filas() { return filas; }
+
+    /** Cantidad de textos del diccionario (los sueltos no cuentan). */
+    public int textosEnDiccionario() { return diccionario.length; }
+
+    /** Recorre todas las filas desde la primera; devuelve la cantidad entregada. */
+    public long forEach(Consumer<? super MappedCsvRow> action) {
+        siguiente = 0;
+        sueltoPos = sueltosDesde;
+        var row = new MappedCsvRow();
+        long n = 0;
+        while (next(row)) {
+            action.accept(row);
+            n++;
+        }
+        return n;
+    }
+
+    /** Lee la próxima fila en {@code row} (estilo cursor, como {@link MappedCsvParser#next}). */
+    public boolean next(MappedCsvRow row) {
+        if (siguiente >= filas) return false;
+        if (siguiente < winStart || siguiente >= winStart + winFilas) mapear(siguiente);
+        int p = (int) ((siguiente - winStart) * RECORD);
+        siguiente++;
+
+        int mask = buf.getInt(p);
+        row.begin(buf.getLong(p + 8), buf.getLong(p + 16));
+        row.end(buf.getLong(p + 24));
+        if (presente(mask, LegoColumn.LIST_PRICE)) row.setMoney(LegoColumn.LIST_PRICE, buf.getLong(p + 32), mask >>> 24);
+        if (presente(mask, LegoColumn.PLAY_STAR_RATING)) row.setDecimal(LegoColumn.PLAY_STAR_RATING, buf.getDouble(p + 40));
+        if (presente(mask, LegoColumn.STAR_RATING)) row.setDecimal(LegoColumn.STAR_RATING, buf.getDouble(p + 48));
+        if (presente(mask, LegoColumn.VAL_STAR_RATING)) row.setDecimal(LegoColumn.VAL_STAR_RATING, buf.getDouble(p + 56));
+        if (presente(mask, LegoColumn.NUM_REVIEWS)) row.setInteger(LegoColumn.NUM_REVIEWS, buf.getInt(p + 4));
+        if (presente(mask, LegoColumn.PIECE_COUNT)) row.setInteger(LegoColumn.PIECE_COUNT, buf.getInt(p + 64));
+        if (presente(mask, LegoColumn.PROD_ID)) row.setInteger(LegoColumn.PROD_ID, buf.getInt(p + 68));
+        for (int i = 0; i < TEXTOS.length; i++) {
+            int ref = buf.getInt(p + 72 + 4 * i);
+            var c = TEXTOS[i];
+            if (ref == NULO) continue;
+            if (!c.isCodificada()) {
+                row.setText(c, ref >= 0 ? diccionario[ref] : siguienteSuelto());
+            } else if (ref >= 0) {
+                int codigo = codigoDeEntrada[ref];
+                if (codigo == -2) codigo = codigoDeEntrada[ref] = codigos.columna(c).codigo(diccionario[ref]);
+                row.setText(c, codigo, codigo != ColumnDictionary.SIN_CODIGO ? codigos.valor(c, codigo) : diccionario[ref]);
+            } else {
+                String s = siguienteSuelto();
+                int codigo = codigos.columna(c).codigo(s);
+                row.setText(c, codigo, codigo != ColumnDictionary.SIN_CODIGO ? codigos.valor(c, codigo) : s);
+            }
+        }
+        return true;
+    }
+
+    /** Diccionario de las columnas codificadas de las filas que entrega {@link #next}. */
+    public LegoDictionary diccionario() { return codigos; }
+
+    @Override
+    public void close() throws IOException {
+        buf = null;
+        sueltos = null;
+        ch.close();
+    }
+
+    private static boolean presente(int mask, LegoColumn c) { return (mask & c.bit()) != 0; }
+
+    private void mapear(long fila) {
+        try {
+            winFilas = Math.min(WINDOW / RECORD, filas - fila);
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, HEADER + fila * RECORD, winFilas * RECORD);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            winStart = fila;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo mapear " + path + " en la fila " + fila, e);
+        }
+    }
+
+    private String siguienteSuelto() {
+        if (sueltoPos + 4 > sueltosWinFin) mapearSueltos(sueltoPos);
+        int len = sueltos.getInt((int) (sueltoPos - sueltosWin));
+        if (sueltoPos + 4 + len > sueltosWinFin) mapearSueltos(sueltoPos);
+        if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+        sueltos.get((int) (sueltoPos + 4 - sueltosWin), scratch, 0, len);
+        sueltoPos += 4 + len;
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private void mapearSueltos(long p) {
+        try {
+            long len = Math.min(MappedCsvParser.DEFAULT_WINDOW, sueltosHasta - p);
+            if (len < 4) throw new IllegalStateException("Textos sueltos truncados en " + path);
+            sueltos = ch.map(FileChannel.MapMode.READ_ONLY, p, len);
+            sueltos.order(ByteOrder.LITTLE_ENDIAN);
+            sueltosWin = p;
+            sueltosWinFin = p + len;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo mapear " + path + " en offset " + p, e);
+        }
+    }
+
+    private String[] leerDiccionario(long offset, int entradas) throws IOException {
+        var textos = new String[entradas];
+        var in = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN).flip();
+        long p = offset;
+        for (int i = 0; i < entradas; i++) {
+            if (in.remaining() < 4) p = rellenar(in, p, 4);
+            int len = in.getInt();
+            if (in.remaining() < len) {
+                if (len > in.capacity()) {
+                    var mayor = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+                    mayor.put(in).flip();
+                    in = mayor;
+                }
+                p = rellenar(in, p, len);
+            }
+            textos[i] = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+            in.position(in.position() + len);
+        }
+        return textos;
+    }
+
+    /** Compacta {@code in} y lo completa desde el archivo hasta tener al menos {@code minimo} bytes. */
+    private long rellenar(ByteBuffer in, long p, int minimo) throws IOException {
+        in.compact();
+        while (in.position() < minimo) {
+            if (p >= sueltosDesde) throw new IllegalStateException("Diccionario truncado en " + path);
+            p += ch.read(in, p);
+        }
+        in.flip();
+        return p;
+    }
+
+    private static ByteBuffer leerEncabezado(FileChannel ch) throws IOException {
+        if (ch.size() < HEADER) return null;
+        var h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        while (h.hasRemaining()) {
+            if (ch.read(h, h.position()) < 0) return null;
+        }
+        h.flip();
+        return h.getLong(0) == MAGIC && h.getInt(8) == VERSION && h.getInt(12) == RECORD ? h : null;
+    }
+
+    /** CRC32C del archivo completo, leído mapeado por ventanas. */
+    static long checksum(Path archivo) throws IOException {
+        var crc = new CRC32C();
+        try (var ch = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long p = 0; p < size; p += MappedCsvParser.DEFAULT_WINDOW) {
+                crc.update(ch.map(FileChannel.MapMode.READ_ONLY, p, Math.min(MappedCsvParser.DEFAULT_WINDOW, size - p)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Escribe el snapshot en archivos temporales (filas y textos sueltos por separado) y lo
+     * publica con un move al {@link #terminar}; cerrado sin terminar (lectura interrumpida, error)
+     * descarta los temporales. El CRC se calcula al final, y si el CSV cambió de tamaño o fecha
+     * durante la lectura el snapshot también se descarta.
+     */
+    static final class Escritor implements Closeable {
+        private final Path csv, destino, temporal, temporalSueltos;
+        private final long size, mtime;
+        private final FileChannel out, outSueltos;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(RECORD << 14).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer bufSueltos = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        /** Id de diccionario de cada texto, por columna de {@code TEXTOS}. */
+        private final List<Map<String, Integer>> ids = new ArrayList<>(TEXTOS.length);
+        private final List<String> diccionario = new ArrayList<>();
+        private long filas;
+        private boolean terminado;
+
+        private Escritor(Path csv, Path destino) throws IOException {
+            this.csv = csv;
+            this.destino = destino;
+            this.size = Files.size(csv);
+            this.mtime = Files.getLastModifiedTime(csv).toMillis();
+            for (int i = 0; i < TEXTOS.length; i++) ids.add(new HashMap<>());
+            this.temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+            this.temporalSueltos = destino.resolveSibling(destino.getFileName() + ".txt.tmp");
+            this.out = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                this.outSueltos = FileChannel.open(temporalSueltos, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException ex) {
+                out.close();
+                Files.deleteIfExists(temporal);
+                throw ex;
+            }
+            out.position(HEADER);
+        }
+
+        void agregar(MappedCsvRow r) {
+            try {
+                if (buf.remaining() < RECORD) vaciar(buf, out);
+                buf.putInt(r.presentMask() | r.listPriceScale() << 24).putInt(r.getNumReviews())
+                        .putLong(r.getLineNumber()).putLong(r.getStartOffset()).putLong(r.getEndOffset())
+                        .putLong(r.listPriceUnscaled()).putDouble(r.getPlayStarRating())
+                        .putDouble(r.getStarRating()).putDouble(r.getValStarRating())
+                        .putInt(r.getPieceCount()).putInt(r.getProdId())
+                        .putInt(ref(0, r.getAges())).putInt(ref(1, r.getProdDesc()))
+                        .putInt(ref(2, r.getReviewDifficulty())).putInt(ref(3, r.getSetName()))
+                        .putInt(ref(4, r.getThemeName())).putInt(ref(5, r.getCountry()));
+                filas++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error escribiendo " + temporal, e);
+            }
+        }
+
+        /** Id de diccionario de {@code s} en la columna {@code col}, o SUELTO si el diccionario ya está lleno. */
+        private int ref(int col, String s) throws IOException {
+            if (s == null) return NULO;
+            var porTexto = ids.get(col);
+            Integer id = porTexto.get(s);
+            if (id != null) return id;
+            if (porTexto.size() < MAX_DICCIONARIO) {
+                id = diccionario.size();
+                porTexto.put(s, id);
+                diccionario.add(s);
+                return id;
+            }
+            escribirTexto(s, bufSueltos, outSueltos);
+            return SUELTO;
+        }
+
+        private static void escribirTexto(String s, ByteBuffer buf, FileChannel ch) throws IOException {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (buf.remaining() < 4 + b.length) {
+                vaciar(buf, ch);
+                if (buf.capacity() < 4 + b.length) {
+                    ch.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, b.length));
+                    ch.write(ByteBuffer.wrap(b));
+                    return;
+                }
+            }
+            buf.putInt(b.length).put(b);
+        }
+
+        private static void vaciar(ByteBuffer buf, FileChannel ch) throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        /**
+         * Escribe diccionario, textos sueltos y encabezado y publica el snapshot;
+         * false (y nada publicado) si el CSV cambió mientras se leía.
+         */
+        boolean terminar() throws IOException {
+            vaciar(buf, out);
+            long dicOffset = out.position();
+            for (String s : diccionario) escribirTexto(s, buf, out);
+            vaciar(buf, out);
+
+            long sueltosOffset = out.position();
+            vaciar(bufSueltos, outSueltos);
+            long n = outSueltos.size();
+            for (long p = 0; p < n; ) p += outSueltos.transferTo(p, n - p, out);
+
+            if (Files.size(csv) != size || Files.getLastModifiedTime(csv).toMillis() != mtime) return false;
+            buf.putLong(MAGIC).putInt(VERSION).putInt(RECORD)
+                    .putLong(size).putLong(mtime).putLong(checksum(csv))
+                    .putLong(filas).putLong(dicOffset).putInt(diccionario.size()).putInt(0)
+                    .putLong(sueltosOffset).putLong(0);
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf, buf.position());
+            buf.clear();
+            out.force(false);
+            out.close();
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            terminado = true;
+            close();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            outSueltos.close();
+            Files.deleteIfExists(temporalSueltos);
+            if (terminado) return;
+            out.close();
+            Files.deleteIfExists(temporal);
+        }
+    }
+}
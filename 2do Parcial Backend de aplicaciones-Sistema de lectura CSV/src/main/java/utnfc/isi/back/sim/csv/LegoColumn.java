@@ -0,0 +1,57 @@
+package utnfc.isi.back.sim.csv;
+
+import lombok.Getter;
+
+/**
+ * Columnas conocidas del CSV de LEGO (mismos nombres que los {@code @CsvBindByName} de {@link CsvLegoRow})
+ * y el tipo primitivo al que se decodifica cada una. Las de texto con pocos valores distintos
+ * se marcan como codificadas: pasan por un {@link ColumnDictionary} al leerlas. El precio es
+ * {@link Kind#MONEY}: se guarda exacto, como valor sin escala y cantidad de decimales.
+ */
+@Getter
+public enum LegoColumn {
+    AGES("ages", Kind.TEXT, true),
+    LIST_PRICE("list_price", Kind.MONEY),
+    NUM_REVIEWS("num_reviews", Kind.INTEGER),
+    PIECE_COUNT("piece_count", Kind.INTEGER),
+    PLAY_STAR_RATING("play_star_rating", Kind.DECIMAL),
+    PROD_DESC("prod_desc", Kind.TEXT),
+    PROD_ID("prod_id", Kind.INTEGER),
+    REVIEW_DIFFICULTY("review_difficulty", Kind.TEXT, true),
+    SET_NAME("set_name", Kind.TEXT),
+    STAR_RATING("star_rating", Kind.DECIMAL),
+    THEME_NAME("theme_name", Kind.TEXT, true),
+    VAL_STAR_RATING("val_star_rating", Kind.DECIMAL),
+    COUNTRY("country", Kind.TEXT, true);
+
+    public enum Kind { TEXT, DECIMAL, MONEY, INTEGER }
+
+    private static final LegoColumn[] VALUES = values();
+
+    private final String header;
+    private final Kind kind;
+    /** Texto de baja cardinalidad que se lee a través del diccionario de la importación. */
+    private final boolean codificada;
+
+    LegoColumn(String header, Kind kind) {
+        this(header, kind, false);
+    }
+
+    LegoColumn(String header, Kind kind, boolean codificada) {
+        this.header = header;
+        this.kind = kind;
+        this.codificada = codificada;
+    }
+
+    /** Busca la columna por nombre de encabezado (sin distinguir mayúsculas); null si no es conocida. */
+    public static LegoColumn fromHeader(String name) {
+        if (name == null) return null;
+        var n = name.trim();
+        for (var c : VALUES) {
+            if (c.header.equalsIgnoreCase(n)) return c;
+        }
+        return null;
+    }
+
+    int bit() { return 1 << ordinal(); }
+}
@@ -0,0 +1,40 @@
+package utnfc.isi.back.sim.csv;
+
+/**
+ * Diccionarios de una importación, uno por cada columna codificada del CSV (edades,
+ * dificultad, temática y país; ver {@link LegoColumn#isCodificada()}). Todas las filas leídas
+ * con el mismo LegoDictionary comparten las instancias de esos textos, y
+ * {@link MappedCsvRow#codigo} da el código de cada uno. Es thread-safe.
+ */
+public final class LegoDictionary {
+
+    private final ColumnDictionary[] columnas = new ColumnDictionary[LegoColumn.values().length];
+
+    public LegoDictionary() {
+        for (var c : LegoColumn.values()) {
+            if (c.isCodificada()) columnas[c.ordinal()] = new ColumnDictionary();
+        }
+    }
+
+    /** Diccionario de {@code c}; null si la columna no se codifica. */
+    public ColumnDictionary columna(LegoColumn c) {
+        return columnas[c.ordinal()];
+    }
+
+    /** Valor del código {@code codigo} en la columna {@code c}. */
+    public String valor(LegoColumn c, int codigo) {
+        return columnas[c.ordinal()].valor(codigo);
+    }
+
+    /**
+     * Reemplaza los textos codificados de una fila leída por OpenCSV (que crea un String por
+     * campo) por las instancias compartidas.
+     */
+    public CsvLegoRow canonicalizar(CsvLegoRow r) {
+        r.setAges(columna(LegoColumn.AGES).canonico(r.getAges()));
+        r.setReviewDifficulty(columna(LegoColumn.REVIEW_DIFFICULTY).canonico(r.getReviewDifficulty()));
+        r.setThemeName(columna(LegoColumn.THEME_NAME).canonico(r.getThemeName()));
+        r.setCountry(columna(LegoColumn.COUNTRY).canonico(r.getCountry()));
+        return r;
+    }
+}
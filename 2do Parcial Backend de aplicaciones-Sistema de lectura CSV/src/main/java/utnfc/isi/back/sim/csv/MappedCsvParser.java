@@ -0,0 +1,506 @@
+package utnfc.isi.back.sim.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Parser propio del CSV de LEGO (separador {@code ;}, comillas {@code "}) que lee el archivo
+ * mapeado en memoria por ventanas ({@link FileChannel#map}) en lugar de pasar por un Reader.
+ *
+ * Las columnas numéricas se decodifican directamente de los bytes a {@code double}/{@code int},
+ * sin Strings intermedios ni boxing; el precio, a su valor exacto (sin escala + decimales) sin
+ * pasar por un double. Sólo se crea un String por columna de texto. Las columnas
+ * de texto codificadas (edades, dificultad, temática, país) se buscan por sus bytes en el
+ * {@link LegoDictionary} del parser y la fila recibe el código y la instancia compartida.
+ * Soporta campos entre comillas con {@code ;}, saltos de línea y comillas escapadas ({@code ""}).
+ * Igual que {@link CsvLoader} ({@code EMPTY_SEPARATORS}), un campo vacío sin comillas queda ausente
+ * (texto null); uno de texto entre comillas vacías ({@code ""}) es la cadena vacía.
+ *
+ * Con {@link #open(InputStream, String)} lee de un flujo (por ejemplo un CSV descomprimido al
+ * vuelo) en lugar de un archivo: la ventana pasa a ser un buffer que avanza con la lectura, el
+ * tamaño se conoce recién al llegar al final y no se puede volver atrás ({@link #seek}).
+ *
+ * No es thread-safe: cada hilo debe abrir su propia instancia.
+ */
+public final class MappedCsvParser implements Closeable {
+
+    static final int DEFAULT_WINDOW = 64 << 20;
+    /** Ventana (buffer en heap) al leer de un flujo. */
+    static final int STREAM_WINDOW = 8 << 20;
+    private static final int MAX_RECORD = 1 << 20;
+
+    private static final int SEP = 0, EOL = 1, EOF = 2;
+    /** Potencias de 10 exactas en double hasta 10^{@value MappedCsvRow#MAX_PRICE_SCALE}. */
+    static final double[] POW10 = new double[MappedCsvRow.MAX_PRICE_SCALE + 1];
+    static {
+        POW10[0] = 1d;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10d;
+    }
+
+    private final String path;
+    private final FileChannel ch;
+    /** Flujo de origen con {@link #open(InputStream, String)}; null si el archivo está mapeado. */
+    private final ReadableByteChannel flujo;
+    /** Tamaño en bytes; leyendo de un flujo es {@code Long.MAX_VALUE} hasta llegar al final. */
+    private long size;
+    private final int window;
+    private final int maxRecord;
+
+    /** Columna destino por posición en el archivo (null = columna ignorada). */
+    private final LegoColumn[] columns;
+    /** Offset del primer registro de datos (después del encabezado). */
+    private final long dataStart;
+
+    private ByteBuffer buf;
+    private long winStart, winEnd;
+    private long pos;
+    private long limit;
+    private long line;
+    private byte[] scratch = new byte[512];
+    private int scratchLen;
+    /** Resultado del último {@link #digitos}: mantisa sin signo, signo y cantidad de decimales. */
+    private long mantisa;
+    private boolean negativo;
+    private int escala;
+    /** Diccionario de las columnas codificadas; propio, o compartido con otros parsers de la misma importación. */
+    private LegoDictionary diccionario = new LegoDictionary();
+
+    private MappedCsvParser(Path path, int window) throws IOException {
+        this.path = path.toString();
+        this.ch = FileChannel.open(path, StandardOpenOption.READ);
+        this.flujo = null;
+        try {
+            this.size = ch.size();
+            this.window = window;
+            this.maxRecord = Math.min(MAX_RECORD, window / 2);
+            this.columns = readHeader();
+            this.dataStart = pos;
+            this.limit = size;
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+
+    private MappedCsvParser(InputStream in, String nombre, int window) throws IOException {
+        this.path = nombre;
+        this.ch = null;
+        this.flujo = Channels.newChannel(in);
+        try {
+            this.size = Long.MAX_VALUE;
+            this.window = window;
+            this.maxRecord = Math.min(MAX_RECORD, window / 2);
+            // Un byte más que la ventana: se guarda como anticipo para saber si el flujo terminó
+            this.buf = ByteBuffer.allocate(window + 1);
+            buf.limit(0);
+            this.winStart = this.winEnd = 0;
+            remap(0);
+            this.columns = readHeader();
+            this.dataStart = pos;
+            this.limit = size;
+        } catch (IOException | RuntimeException ex) {
+            flujo.close();
+            throw ex;
+        }
+    }
+
+    public static MappedCsvParser open(Path path) throws IOException {
+        return new MappedCsvParser(path, DEFAULT_WINDOW);
+    }
+
+    static MappedCsvParser open(Path path, int window) throws IOException {
+        return new MappedCsvParser(path, window);
+    }
+
+    /**
+     * Parser sobre un flujo de bytes (el CSV completo, con encabezado); {@code nombre} sólo se
+     * usa en los mensajes de error. Cerrar el parser cierra el flujo.
+     */
+    public static MappedCsvParser open(InputStream in, String nombre) throws IOException {
+        return new MappedCsvParser(in, nombre, STREAM_WINDOW);
+    }
+
+    static MappedCsvParser open(InputStream in, String nombre, int window) throws IOException {
+        return new MappedCsvParser(in, nombre, window);
+    }
+
+    /** Tamaño en bytes; leyendo de un flujo, {@code Long.MAX_VALUE} hasta que se llegó al final. */
+    public long size() { return size; }
+
+    public long dataStart() { return dataStart; }
+
+    /** Diccionario con el que se codifican las filas de este parser. */
+    public LegoDictionary diccionario() { return diccionario; }
+
+    /** Usa {@code d} (por ejemplo, el de los demás tramos de un parseo en paralelo) en lugar del propio. */
+    void usarDiccionario(LegoDictionary d) {
+        this.diccionario = Objects.requireNonNull(d, "diccionario");
+    }
+
+    /** Recorre todos los registros de datos; devuelve la cantidad de filas entregadas. */
+    public long forEach(Consumer<? super MappedCsvRow> action) {
+        return scan(dataStart, size, 2, action);
+    }
+
+    /**
+     * Recorre los registros que empiezan en [from, to). {@code from} debe ser un inicio de registro
+     * y {@code firstLine} su número de línea física (sólo se usa para informar errores y filas).
+     */
+    public long scan(long from, long to, long firstLine, Consumer<? super MappedCsvRow> action) {
+        seek(from, to, firstLine);
+        var row = new MappedCsvRow();
+        long count = 0;
+        while (next(row)) {
+            action.accept(row);
+            count++;
+        }
+        return count;
+    }
+
+    /** Posiciona el cursor para que {@link #next} recorra los registros que empiezan en [from, to). */
+    public void seek(long from, long to, long firstLine) {
+        if (flujo != null && from != pos) {
+            throw new UnsupportedOperationException("No se puede reposicionar un parser sobre un flujo: " + path);
+        }
+        if (from < dataStart || to > size || from > to) {
+            throw new IllegalArgumentException("Rango inválido [" + from + ", " + to + ") en " + path);
+        }
+        pos = from;
+        limit = to;
+        line = firstLine;
+    }
+
+    /**
+     * Lee el próximo registro en {@code row} (estilo cursor). Recién abierto, el parser queda
+     * posicionado en el primer registro de datos. Devuelve false al llegar al final del rango.
+     */
+    public boolean next(MappedCsvRow row) {
+        while (pos < limit) {
+            ensureWindow(pos);
+            if (isBlankLine()) continue;
+            row.begin(line, pos);
+            parseRecord(row);
+            row.end(pos);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buf = null;
+        if (flujo != null) flujo.close();
+        else ch.close();
+    }
+
+    // ---------- Encabezado ----------
+    private LegoColumn[] readHeader() throws IOException {
+        if (size == 0) throw new IllegalStateException("Archivo vacío: " + path);
+        pos = 0;
+        line = 1;
+        ensureWindow(0);
+        if (size >= 3 && at(0) == (byte) 0xEF && at(1) == (byte) 0xBB && at(2) == (byte) 0xBF) pos = 3; // BOM
+        var cols = new LegoColumn[16];
+        int n = 0;
+        while (true) {
+            int term = readRaw();
+            var name = new String(scratch, 0, scratchLen, StandardCharsets.UTF_8);
+            if (n == cols.length) cols = Arrays.copyOf(cols, n * 2);
+            cols[n++] = LegoColumn.fromHeader(name);
+            if (term != SEP) break;
+        }
+        if (n == 1 && cols[0] == null) throw new IllegalStateException("Encabezado vacío o desconocido en " + path);
+        return Arrays.copyOf(cols, n);
+    }
+
+    // ---------- Registros ----------
+    private void parseRecord(MappedCsvRow row) {
+        int col = 0;
+        while (true) {
+            var c = col < columns.length ? columns[col] : null;
+            int term = (c == null) ? skipField() : readField(c, row);
+            col++;
+            if (term != SEP) return;
+        }
+    }
+
+    /** Saltea líneas vacías (como las del final del archivo). */
+    private boolean isBlankLine() {
+        byte b = at(pos);
+        if (b == '\n') { pos++; line++; return true; }
+        if (b == '\r' && (pos + 1 >= size || at(pos + 1) == '\n')) { pos = Math.min(size, pos + 2); line++; return true; }
+        return false;
+    }
+
+    private int readField(LegoColumn c, MappedCsvRow row) {
+        if (pos < size && at(pos) == '"') {
+            int term = readQuoted();
+            decodeScratch(c, row);
+            return term;
+        }
+        long start = pos;
+        long end = scanUnquoted();
+        int term = terminate(end);
+        if (end > start && at(end - 1) == '\r' && term != SEP) end--;
+        if (end == start) return term; // vacío sin comillas: ausente (null), como EMPTY_SEPARATORS de OpenCSV
+
+        if (c.isCodificada()) {
+            copyToScratch(start, end);
+            setCodificado(c, row);
+            return term;
+        }
+        switch (c.getKind()) {
+            case TEXT -> row.setText(c, text(start, end));
+            case DECIMAL -> row.setDecimal(c, number(start, end, c));
+            case MONEY -> money(start, end, c, row);
+            case INTEGER -> row.setInteger(c, (int) number(start, end, c));
+        }
+        return term;
+    }
+
+    private int skipField() {
+        if (pos < size && at(pos) == '"') return readQuoted();
+        return terminate(scanUnquoted());
+    }
+
+    /** Lee un campo (con o sin comillas) copiando sus bytes a {@code scratch}. */
+    private int readRaw() {
+        if (pos < size && at(pos) == '"') return readQuoted();
+        long start = pos;
+        long end = scanUnquoted();
+        int term = terminate(end);
+        if (end > start && at(end - 1) == '\r' && term != SEP) end--;
+        copyToScratch(start, end);
+        return term;
+    }
+
+    /** Avanza hasta el próximo {@code ;} o salto de línea; devuelve la posición del terminador. */
+    private long scanUnquoted() {
+        long p = pos;
+        while (p < size) {
+            byte b = at(p);
+            if (b == ';' || b == '\n') break;
+            p++;
+        }
+        return p;
+    }
+
+    /** Consume el terminador ubicado en {@code p} y deja {@code pos} al inicio del próximo campo/registro. */
+    private int terminate(long p) {
+        if (p >= size) { pos = size; return EOF; }
+        pos = p + 1;
+        if (at(p) == ';') return SEP;
+        line++;
+        return EOL;
+    }
+
+    /** Lee un campo entre comillas (pos en la comilla inicial), desescapando {@code ""} en {@code scratch}. */
+    private int readQuoted() {
+        long p = pos + 1;
+        scratchLen = 0;
+        while (true) {
+            if (p >= size) throw error("comillas sin cerrar", pos);
+            byte b = at(p);
+            if (b == '"') {
+                if (p + 1 < size && at(p + 1) == '"') { append(b); p += 2; continue; }
+                p++;
+                break;
+            }
+            if (b == '\r' && p + 1 < size && at(p + 1) == '\n') { p++; continue; } // CRLF → LF, como OpenCSV
+            if (b == '\n') line++;
+            append(b);
+            p++;
+        }
+        // Tras la comilla de cierre se ignora cualquier resto hasta el separador
+        pos = p;
+        long end = scanUnquoted();
+        return terminate(end);
+    }
+
+    // ---------- Decodificación ----------
+    private String text(long start, long end) {
+        copyToScratch(start, end);
+        return new String(scratch, 0, scratchLen, StandardCharsets.UTF_8);
+    }
+
+    /** Texto de una columna codificada desde {@code scratch}: sólo se decodifica si es un valor nuevo. */
+    private void setCodificado(LegoColumn c, MappedCsvRow row) {
+        var d = diccionario.columna(c);
+        int codigo = d.codigo(scratch, 0, scratchLen);
+        row.setText(c, codigo, codigo != ColumnDictionary.SIN_CODIGO ? d.valor(codigo)
+                : new String(scratch, 0, scratchLen, StandardCharsets.UTF_8));
+    }
+
+    private void decodeScratch(LegoColumn c, MappedCsvRow row) {
+        if (c.isCodificada()) {
+            setCodificado(c, row);
+            return;
+        }
+        var s = new String(scratch, 0, scratchLen, StandardCharsets.UTF_8);
+        switch (c.getKind()) {
+            case TEXT -> row.setText(c, s);
+            case DECIMAL -> { if (!s.isBlank()) row.setDecimal(c, parseFallback(s, c)); }
+            case MONEY -> { if (!s.isBlank()) setMoneyFallback(s, c, row); }
+            case INTEGER -> { if (!s.isBlank()) row.setInteger(c, (int) parseFallback(s, c)); }
+        }
+    }
+
+    /**
+     * Decodifica un número decimal simple ({@code -123.45}) sin crear objetos.
+     * La división {@code mantisa / 10^escala} es exacta en redondeo mientras la mantisa
+     * quepa en 53 bits, así que coincide con {@link Double#parseDouble}; otros formatos
+     * (exponentes, muchos dígitos) caen al parseo estándar.
+     */
+    private double number(long start, long end, LegoColumn c) {
+        while (start < end && at(start) == ' ') start++;
+        while (end > start && at(end - 1) == ' ') end--;
+        if (!digitos(start, end, 15)) return parseFallback(text(start, end), c);
+        double v = escala == 0 ? mantisa : mantisa / POW10[escala];
+        return negativo ? -v : v;
+    }
+
+    /**
+     * Precio exacto: los mismos dígitos que {@link #number}, pero la mantisa (hasta 18 dígitos)
+     * y la escala van tal cual a la fila, sin redondeo binario. Otros formatos pasan por BigDecimal.
+     */
+    private void money(long start, long end, LegoColumn c, MappedCsvRow row) {
+        while (start < end && at(start) == ' ') start++;
+        while (end > start && at(end - 1) == ' ') end--;
+        if (!digitos(start, end, MappedCsvRow.MAX_PRICE_SCALE)) {
+            setMoneyFallback(text(start, end), c, row);
+            return;
+        }
+        row.setMoney(c, negativo ? -mantisa : mantisa, escala);
+    }
+
+    /**
+     * Decodifica en {@link #mantisa} / {@link #negativo} / {@link #escala} un decimal simple
+     * ({@code -123.45}) de hasta {@code maxDigitos} dígitos significativos, sin crear objetos;
+     * false si el campo tiene otro formato (exponente, más dígitos, vacío).
+     */
+    private boolean digitos(long start, long end, int maxDigitos) {
+        long p = start;
+        negativo = false;
+        if (p < end && (at(p) == '-' || at(p) == '+')) { negativo = at(p) == '-'; p++; }
+        long mant = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, any = false;
+        for (; p < end; p++) {
+            byte b = at(p);
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (mant == 0 && b == '0' && !dot) continue;
+                if (++digits > maxDigitos) return false;
+                mant = mant * 10 + (b - '0');
+                if (dot) scale++;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return false;
+            }
+        }
+        mantisa = mant;
+        escala = scale;
+        return any;
+    }
+
+    private double parseFallback(String s, LegoColumn c) {
+        try { return Double.parseDouble(s.trim()); }
+        catch (NumberFormatException e) {
+            throw invalido(s, c, e);
+        }
+    }
+
+    private void setMoneyFallback(String s, LegoColumn c, MappedCsvRow row) {
+        try { row.setMoney(c, new BigDecimal(s.trim())); }
+        catch (NumberFormatException | ArithmeticException e) {
+            throw invalido(s, c, e);
+        }
+    }
+
+    private IllegalArgumentException invalido(String s, LegoColumn c, RuntimeException causa) {
+        return new IllegalArgumentException("Valor numérico inválido en " + path + " línea " + line
+                + ", columna " + c.getHeader() + ": '" + s + "'", causa);
+    }
+
+    // ---------- Acceso al archivo mapeado ----------
+    private byte at(long p) {
+        if (p < winStart || p >= winEnd) remap(p);
+        return buf.get((int) (p - winStart));
+    }
+
+    /** Garantiza que el registro que empieza en {@code p} entra completo en la ventana mapeada. */
+    private void ensureWindow(long p) {
+        if (p < winStart || p >= winEnd || (winEnd - p < maxRecord && winEnd < size)) remap(p);
+    }
+
+    private void remap(long p) {
+        if (flujo != null) {
+            avanzar(p);
+            return;
+        }
+        try {
+            long len = Math.min(window, size - p);
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, p, Math.max(0, len));
+            winStart = p;
+            winEnd = p + len;
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException("No se pudo mapear " + path + " en offset " + p, e);
+        }
+    }
+
+    /**
+     * Flujo: descarta lo anterior a {@code p} y completa el buffer leyendo. Si se llena, el último
+     * byte queda como anticipo fuera de la ventana; si el flujo termina antes, se fija el tamaño.
+     * Así toda posición menor que el tamaño (todavía desconocido) tiene al menos un byte legible.
+     */
+    private void avanzar(long p) {
+        if (p < winStart || p > winStart + buf.limit()) {
+            throw new IllegalStateException("Acceso fuera de orden al flujo " + path + " (offset " + p + ")");
+        }
+        int conservar = (int) Math.max(0, winStart + buf.limit() - p);
+        buf.position(buf.limit() - conservar).compact();
+        winStart = p;
+        try {
+            while (buf.hasRemaining() && flujo.read(buf) >= 0) { }
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException("Error leyendo " + path + " (ventana desde el offset " + p + ")", e);
+        }
+        boolean fin = buf.hasRemaining();
+        buf.flip();
+        winEnd = winStart + (fin ? buf.limit() : buf.limit() - 1);
+        if (fin) {
+            if (limit == size) limit = winEnd;
+            size = winEnd;
+        }
+    }
+
+    private void copyToScratch(long start, long end) {
+        int len = (int) (end - start);
+        if (len > scratch.length) scratch = Arrays.copyOf(scratch, Math.max(len, scratch.length * 2));
+        if (start < winStart || end > winEnd) remap(start);
+        buf.get((int) (start - winStart), scratch, 0, len);
+        scratchLen = len;
+    }
+
+    private void append(byte b) {
+        if (scratchLen == scratch.length) scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        scratch[scratchLen++] = b;
+    }
+
+    private IllegalStateException error(String msg, long offset) {
+        return new IllegalStateException("CSV inválido en " + path + " (línea " + line + ", offset " + offset + "): " + msg);
+    }
+}
@@ -0,0 +1,243 @@
+package utnfc.isi.back.sim.csv;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fila decodificada por {@link MappedCsvParser}: las columnas numéricas quedan en primitivos
+ * y la presencia de cada columna se guarda en una máscara de bits (columna vacía = ausente).
+ * El precio se guarda exacto, como lo escribe el CSV: valor sin escala y cantidad de decimales
+ * ({@link #getListPriceDecimal()}), sin pasar por un double. Es la fila que consume el importador.
+ *
+ * La instancia es reutilizada por el parser en cada registro: si hay que conservarla
+ * después del callback, copiarla con {@link #copy()} o {@link #toCsvLegoRow()}.
+ */
+@Getter
+public final class MappedCsvRow {
+
+    /** Decimales que admite el precio; uno con más se redondea (HALF_EVEN). */
+    static final int MAX_PRICE_SCALE = 18;
+
+    /** Bit inicial del código de cada columna codificada en {@code codigos} (16 bits c/u); -1 si no se codifica. */
+    private static final int[] SHIFT = new int[LegoColumn.values().length];
+    static {
+        int n = 0;
+        for (var c : LegoColumn.values()) SHIFT[c.ordinal()] = c.isCodificada() ? 16 * n++ : -1;
+        if (n > 4) throw new ExceptionInInitializerError("Más de 4 columnas codificadas");
+    }
+    private static final int SIN_CODIGO_16 = 0xFFFF;
+
+    /** Línea física (1 = encabezado) donde empieza el registro. */
+    private long lineNumber;
+    /** Offset en bytes del inicio del registro. */
+    private long startOffset;
+    /** Offset en bytes inmediatamente posterior al fin del registro (incluye el salto de línea). */
+    private long endOffset;
+
+    private String ages;
+    private String prodDesc;
+    private String reviewDifficulty;
+    private String setName;
+    private String themeName;
+    private String country;
+
+    /** list_price sin escala: el precio es {@code listPriceUnscaled / 10^listPriceScale}. */
+    @Getter(lombok.AccessLevel.NONE)
+    private long listPriceUnscaled;
+    @Getter(lombok.AccessLevel.NONE)
+    private int listPriceScale;
+    private double playStarRating;
+    private double starRating;
+    private double valStarRating;
+
+    private int numReviews;
+    private int pieceCount;
+    private int prodId;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private int presentMask;
+
+    /**
+     * Código de cada columna codificada en el diccionario del parser, de a 16 bits
+     * ({@code 0xFFFF} = sin código): así la copia de una fila es un solo objeto.
+     */
+    @Getter(lombok.AccessLevel.NONE)
+    private long codigos = -1L;
+
+    public boolean isPresent(LegoColumn c) { return (presentMask & c.bit()) != 0; }
+
+    /**
+     * Código del texto de {@code c} (una columna codificada) en el {@link LegoDictionary} del
+     * parser que leyó la fila; {@link ColumnDictionary#SIN_CODIGO} si está ausente o no entró.
+     */
+    public int codigo(LegoColumn c) {
+        int shift = SHIFT[c.ordinal()];
+        if (shift < 0) return ColumnDictionary.SIN_CODIGO;
+        int v = (int) (codigos >>> shift) & SIN_CODIGO_16;
+        return v == SIN_CODIGO_16 ? ColumnDictionary.SIN_CODIGO : v;
+    }
+
+    /** list_price exacto; null si la columna está ausente. */
+    public BigDecimal getListPriceDecimal() {
+        return isPresent(LegoColumn.LIST_PRICE) ? BigDecimal.valueOf(listPriceUnscaled, listPriceScale) : null;
+    }
+
+    /** list_price como double (el más cercano al valor exacto); 0 si está ausente. */
+    public double getListPrice() {
+        if (listPriceScale == 0) return listPriceUnscaled;
+        if (Math.abs(listPriceUnscaled) < 1L << 53) return listPriceUnscaled / MappedCsvParser.POW10[listPriceScale];
+        return BigDecimal.valueOf(listPriceUnscaled, listPriceScale).doubleValue();
+    }
+
+    int presentMask() { return presentMask; }
+
+    long listPriceUnscaled() { return listPriceUnscaled; }
+
+    int listPriceScale() { return listPriceScale; }
+
+    void begin(long lineNumber, long startOffset) {
+        this.lineNumber = lineNumber;
+        this.startOffset = startOffset;
+        this.endOffset = startOffset;
+        this.presentMask = 0;
+        ages = prodDesc = reviewDifficulty = setName = themeName = country = null;
+        codigos = -1L;
+        listPriceUnscaled = 0;
+        listPriceScale = 0;
+        playStarRating = starRating = valStarRating = 0d;
+        numReviews = pieceCount = prodId = 0;
+    }
+
+    void end(long endOffset) { this.endOffset = endOffset; }
+
+    void setText(LegoColumn c, String v) {
+        switch (c) {
+            case AGES -> ages = v;
+            case PROD_DESC -> prodDesc = v;
+            case REVIEW_DIFFICULTY -> reviewDifficulty = v;
+            case SET_NAME -> setName = v;
+            case THEME_NAME -> themeName = v;
+            case COUNTRY -> country = v;
+            default -> throw new IllegalArgumentException("La columna " + c + " no es de texto");
+        }
+        presentMask |= c.bit();
+    }
+
+    /** Texto de una columna codificada, con su código en el diccionario. */
+    void setText(LegoColumn c, int codigo, String v) {
+        setText(c, v);
+        int shift = SHIFT[c.ordinal()];
+        if (shift < 0) throw new IllegalArgumentException("La columna " + c + " no es codificada");
+        long v16 = codigo == ColumnDictionary.SIN_CODIGO ? SIN_CODIGO_16 : codigo;
+        codigos = (codigos & ~((long) SIN_CODIGO_16 << shift)) | (v16 << shift);
+    }
+
+    void setDecimal(LegoColumn c, double v) {
+        switch (c) {
+            case PLAY_STAR_RATING -> playStarRating = v;
+            case STAR_RATING -> starRating = v;
+            case VAL_STAR_RATING -> valStarRating = v;
+            default -> throw new IllegalArgumentException("La columna " + c + " no es decimal");
+        }
+        presentMask |= c.bit();
+    }
+
+    /** Importe exacto {@code unscaled / 10^scale}, con 0 ≤ scale ≤ {@value #MAX_PRICE_SCALE}. */
+    void setMoney(LegoColumn c, long unscaled, int scale) {
+        if (c != LegoColumn.LIST_PRICE) throw new IllegalArgumentException("La columna " + c + " no es un importe");
+        if (scale < 0 || scale > MAX_PRICE_SCALE) throw new IllegalArgumentException("Escala fuera de rango: " + scale);
+        listPriceUnscaled = unscaled;
+        listPriceScale = scale;
+        presentMask |= c.bit();
+    }
+
+    /**
+     * Importe desde un BigDecimal: sin exponente negativo y con a lo sumo
+     * {@value #MAX_PRICE_SCALE} decimales. ArithmeticException si no entra en 64 bits.
+     */
+    void setMoney(LegoColumn c, BigDecimal v) {
+        if (v.scale() < 0) v = v.setScale(0);
+        if (v.scale() > MAX_PRICE_SCALE) v = v.setScale(MAX_PRICE_SCALE, RoundingMode.HALF_EVEN);
+        setMoney(c, v.unscaledValue().longValueExact(), v.scale());
+    }
+
+    void setInteger(LegoColumn c, int v) {
+        switch (c) {
+            case NUM_REVIEWS -> numReviews = v;
+            case PIECE_COUNT -> pieceCount = v;
+            case PROD_ID -> prodId = v;
+            default -> throw new IllegalArgumentException("La columna " + c + " no es entera");
+        }
+        presentMask |= c.bit();
+    }
+
+    /** Copia independiente de la fila actual. */
+    public MappedCsvRow copy() {
+        var c = new MappedCsvRow();
+        c.lineNumber = lineNumber;
+        c.startOffset = startOffset;
+        c.endOffset = endOffset;
+        c.ages = ages;
+        c.prodDesc = prodDesc;
+        c.reviewDifficulty = reviewDifficulty;
+        c.setName = setName;
+        c.themeName = themeName;
+        c.country = country;
+        c.listPriceUnscaled = listPriceUnscaled;
+        c.listPriceScale = listPriceScale;
+        c.playStarRating = playStarRating;
+        c.starRating = starRating;
+        c.valStarRating = valStarRating;
+        c.numReviews = numReviews;
+        c.pieceCount = pieceCount;
+        c.prodId = prodId;
+        c.presentMask = presentMask;
+        c.codigos = codigos;
+        return c;
+    }
+
+    /** Adapta la fila al bean de OpenCSV (con boxing). */
+    public CsvLegoRow toCsvLegoRow() {
+        return CsvLegoRow.builder()
+                .ages(ages)
+                .listPrice(isPresent(LegoColumn.LIST_PRICE) ? getListPrice() : null)
+                .numReviews(isPresent(LegoColumn.NUM_REVIEWS) ? (double) numReviews : null)
+                .pieceCount(isPresent(LegoColumn.PIECE_COUNT) ? (double) pieceCount : null)
+                .playStarRating(isPresent(LegoColumn.PLAY_STAR_RATING) ? playStarRating : null)
+                .prodDesc(prodDesc)
+                .prodId(isPresent(LegoColumn.PROD_ID) ? (double) prodId : null)
+                .reviewDifficulty(reviewDifficulty)
+                .setName(setName)
+                .starRating(isPresent(LegoColumn.STAR_RATING) ? starRating : null)
+                .themeName(themeName)
+                .valStarRating(isPresent(LegoColumn.VAL_STAR_RATING) ? valStarRating : null)
+                .country(country)
+                .lineNumber(lineNumber)
+                .build();
+    }
+
+    /**
+     * Fila del importador a partir de una leída por OpenCSV: los enteros se truncan y el precio
+     * sale del double (su representación decimal más corta). Sin códigos de diccionario.
+     */
+    public static MappedCsvRow of(CsvLegoRow r) {
+        var m = new MappedCsvRow();
+        m.lineNumber = r.getLineNumber();
+        if (r.getAges() != null) m.setText(LegoColumn.AGES, r.getAges());
+        if (r.getProdDesc() != null) m.setText(LegoColumn.PROD_DESC, r.getProdDesc());
+        if (r.getReviewDifficulty() != null) m.setText(LegoColumn.REVIEW_DIFFICULTY, r.getReviewDifficulty());
+        if (r.getSetName() != null) m.setText(LegoColumn.SET_NAME, r.getSetName());
+        if (r.getThemeName() != null) m.setText(LegoColumn.THEME_NAME, r.getThemeName());
+        if (r.getCountry() != null) m.setText(LegoColumn.COUNTRY, r.getCountry());
+        if (r.getListPrice() != null) m.setMoney(LegoColumn.LIST_PRICE, BigDecimal.valueOf(r.getListPrice()));
+        if (r.getPlayStarRating() != null) m.setDecimal(LegoColumn.PLAY_STAR_RATING, r.getPlayStarRating());
+        if (r.getStarRating() != null) m.setDecimal(LegoColumn.STAR_RATING, r.getStarRating());
+        if (r.getValStarRating() != null) m.setDecimal(LegoColumn.VAL_STAR_RATING, r.getValStarRating());
+        if (r.getNumReviews() != null) m.setInteger(LegoColumn.NUM_REVIEWS, r.getNumReviews().intValue());
+        if (r.getPieceCount() != null) m.setInteger(LegoColumn.PIECE_COUNT, r.getPieceCount().intValue());
+        if (r.getProdId() != null) m.setInteger(LegoColumn.PROD_ID, r.getProdId().intValue());
+        return m;
+    }
+}
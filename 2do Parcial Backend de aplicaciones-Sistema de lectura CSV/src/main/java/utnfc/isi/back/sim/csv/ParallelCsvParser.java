@@ -0,0 +1,214 @@
+package utnfc.isi.back.sim.csv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parseo en paralelo del CSV de LEGO: divide el archivo en rangos de bytes alineados a
+ * inicios de registro, parsea cada rango con su propio {@link MappedCsvParser} en un
+ * {@link ForkJoinPool} y entrega las filas en el mismo orden del archivo. Los parsers de los
+ * tramos comparten un {@link LegoDictionary}, así los códigos valen para todo el archivo.
+ *
+ * La alineación respeta los saltos de línea dentro de campos entre comillas (p. ej. prod_desc):
+ *  1️⃣ en paralelo se cuentan comillas y saltos de línea de cada tramo nominal;
+ *  2️⃣ la suma prefija da la paridad de comillas al inicio de cada tramo;
+ *  3️⃣ desde cada corte nominal se avanza hasta el primer '\n' fuera de comillas.
+ * Supone comillas al estilo RFC 4180 (sólo como delimitador de campo o escapadas como {@code ""}).
+ */
+public final class ParallelCsvParser {
+    private ParallelCsvParser() {}
+
+    /** Tamaño nominal de cada tramo: acota la memoria de las filas en vuelo. */
+    static final long DEFAULT_CHUNK_BYTES = 8L << 20;
+    private static final int SCAN_WINDOW = 8 << 20;
+
+    public static List<MappedCsvRow> read(Path path) throws IOException {
+        return read(path, ForkJoinPool.commonPool());
+    }
+
+    public static List<MappedCsvRow> read(Path path, ForkJoinPool pool) throws IOException {
+        try (var s = stream(path, pool)) { return s.toList(); }
+    }
+
+    /**
+     * Stream ordenado de filas: se mantienen a lo sumo {@code 2 × paralelismo} tramos en vuelo,
+     * así que la memoria no depende del tamaño del archivo.
+     */
+    public static Stream<MappedCsvRow> stream(Path path, ForkJoinPool pool) throws IOException {
+        return stream(path, pool, DEFAULT_CHUNK_BYTES);
+    }
+
+    static Stream<MappedCsvRow> stream(Path path, ForkJoinPool pool, long chunkBytes) throws IOException {
+        var ranges = split(path, pool, chunkBytes);
+        var it = new OrderedChunkIterator(path, pool, ranges, Math.max(2, pool.getParallelism() * 2), new LegoDictionary());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(it::cancel);
+    }
+
+    /** Rango [from, to) alineado a registros, con el número de línea física de su primer registro. */
+    record Range(long from, long to, long firstLine) {}
+
+    // ---------- División en tramos ----------
+    static List<Range> split(Path path, ForkJoinPool pool, long chunkBytes) throws IOException {
+        long dataStart, size;
+        try (var p = MappedCsvParser.open(path)) {
+            dataStart = p.dataStart();
+            size = p.size();
+        }
+        if (dataStart >= size) return List.of();
+
+        long span = size - dataStart;
+        int n = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (span + chunkBytes - 1) / chunkBytes));
+        long step = (span + n - 1) / n;
+        long[] nominal = new long[n + 1];
+        for (int i = 0; i <= n; i++) nominal[i] = Math.min(size, dataStart + i * step);
+
+        try (var ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 1️⃣ comillas y saltos de línea por tramo nominal
+            long[][] counts = pool.submit(() -> IntStream.range(0, n).parallel()
+                    .mapToObj(i -> count(ch, nominal[i], nominal[i + 1]))
+                    .toArray(long[][]::new)).join();
+
+            // 2️⃣ paridad de comillas y líneas acumuladas al inicio de cada tramo
+            boolean[] inQuotes = new boolean[n];
+            long[] lines = new long[n];
+            long quotes = 0, nl = 2; // el encabezado ocupa la línea 1
+            for (int i = 0; i < n; i++) {
+                inQuotes[i] = (quotes & 1) == 1;
+                lines[i] = nl;
+                quotes += counts[i][0];
+                nl += counts[i][1];
+            }
+
+            // 3️⃣ cada corte nominal se corre hasta el próximo inicio de registro
+            long[][] aligned = pool.submit(() -> IntStream.range(0, n).parallel()
+                    .mapToObj(i -> i == 0 ? new long[]{dataStart, 2} : align(ch, nominal[i], size, inQuotes[i], lines[i]))
+                    .toArray(long[][]::new)).join();
+
+            var ranges = new ArrayList<Range>(n);
+            for (int i = 0; i < n; i++) {
+                long from = aligned[i][0];
+                long to = (i + 1 < n) ? aligned[i + 1][0] : size;
+                if (to > from) ranges.add(new Range(from, to, aligned[i][1]));
+            }
+            return ranges;
+        }
+    }
+
+    /** Cuenta comillas y '\n' en [from, to). */
+    private static long[] count(FileChannel ch, long from, long to) {
+        long quotes = 0, nl = 0;
+        for (long w = from; w < to; w += SCAN_WINDOW) {
+            var buf = map(ch, w, Math.min(SCAN_WINDOW, to - w));
+            for (int i = 0, lim = buf.limit(); i < lim; i++) {
+                byte b = buf.get(i);
+                if (b == '"') quotes++;
+                else if (b == '\n') nl++;
+            }
+        }
+        return new long[]{quotes, nl};
+    }
+
+    /** Primer inicio de registro en o después de {@code from}; devuelve {offset, línea}. */
+    private static long[] align(FileChannel ch, long from, long size, boolean inQuotes, long line) {
+        boolean quoted = inQuotes;
+        for (long w = from; w < size; w += SCAN_WINDOW) {
+            var buf = map(ch, w, Math.min(SCAN_WINDOW, size - w));
+            for (int i = 0, lim = buf.limit(); i < lim; i++) {
+                byte b = buf.get(i);
+                if (b == '"') quoted = !quoted;
+                else if (b == '\n') {
+                    line++;
+                    if (!quoted) return new long[]{w + i + 1, line};
+                }
+            }
+        }
+        return new long[]{size, line};
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long from, long len) {
+        try { return ch.map(FileChannel.MapMode.READ_ONLY, from, len); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    // ---------- Parseo ordenado ----------
+    private static List<MappedCsvRow> parseRange(Path path, Range r, LegoDictionary diccionario) {
+        try (var p = MappedCsvParser.open(path)) {
+            p.usarDiccionario(diccionario);
+            var out = new ArrayList<MappedCsvRow>();
+            p.scan(r.from(), r.to(), r.firstLine(), row -> out.add(row.copy()));
+            return out;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Entrega las filas tramo por tramo en orden, manteniendo una ventana acotada de tramos en parseo. */
+    private static final class OrderedChunkIterator implements Iterator<MappedCsvRow> {
+        private final Path path;
+        private final ForkJoinPool pool;
+        private final List<Range> ranges;
+        private final int maxInFlight;
+        private final LegoDictionary diccionario;
+        private final ArrayDeque<ForkJoinTask<List<MappedCsvRow>>> inFlight = new ArrayDeque<>();
+        private int nextRange;
+        private Iterator<MappedCsvRow> current = Collections.emptyIterator();
+
+        OrderedChunkIterator(Path path, ForkJoinPool pool, List<Range> ranges, int maxInFlight,
+                             LegoDictionary diccionario) {
+            this.path = path;
+            this.pool = pool;
+            this.ranges = ranges;
+            this.maxInFlight = maxInFlight;
+            this.diccionario = diccionario;
+            fill();
+        }
+
+        private void fill() {
+            while (inFlight.size() < maxInFlight && nextRange < ranges.size()) {
+                var r = ranges.get(nextRange++);
+                inFlight.add(pool.submit(() -> parseRange(path, r, diccionario)));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                var head = inFlight.poll();
+                if (head == null) return false;
+                current = head.join().iterator();
+                fill();
+            }
+            return true;
+        }
+
+        @Override
+        public MappedCsvRow next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        void cancel() {
+            inFlight.forEach(t -> t.cancel(false));
+            inFlight.clear();
+            nextRange = ranges.size();
+        }
+    }
+}
@@ -14,41 +14,22 @@ public class AgeGroup {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_age_group")
-    @SequenceGenerator(name = "seq_age_group", sequenceName = "SEQ_AGE_GROUP_ID", allocationSize = 1)
+    @SequenceGenerator(name = "seq_age_group", sequenceName = "SEQ_AGE_GROUP_ID", allocationSize = 50)
     @Column(name = "ID_AGE_GROUP")
     private Integer id;
 
     @Column(name = "CODE", nullable = false, unique = true)
     private String code;
 
-    // --- Campos derivados (no persistidos en BD)
-    @Transient
-    private Integer minAge;
-
-    @Transient
-    private Integer maxAge;
-
-    @PostLoad
-    @PostPersist
-    private void deriveRange() {
-        if (code == null) return;
-
-        if (code.endsWith("+")) {
-            minAge = Integer.parseInt(code.replace("+", ""));
-            maxAge = null;
-        } else if (code.contains("-")) {
-            var parts = code.split("-");
-            minAge = Integer.parseInt(parts[0]);
-            maxAge = Integer.parseInt(parts[1]);
-        } else {
-            minAge = maxAge = Integer.parseInt(code);
-        }
+    /**
+     * Rango interpretado del código (compartido por todos los grupos con el mismo código).
+     * No se guarda en la base: el filtro por edad usa {@link AgeRangeIndex} en memoria.
+     */
+    public AgeRange rango() {
+        return AgeRange.of(code);
     }
 
     public boolean matchesAge(int age) {
-        if (minAge == null && maxAge == null) return false;
-        if (maxAge == null) return age >= minAge;
-        if (minAge.equals(maxAge)) return age == minAge;
-        return age >= minAge && age <= maxAge;
+        return code != null && rango().contiene(age);
     }
 }
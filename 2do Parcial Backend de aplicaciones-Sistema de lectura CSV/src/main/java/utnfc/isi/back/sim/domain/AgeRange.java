@@ -0,0 +1,36 @@
+package utnfc.isi.back.sim.domain;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rango de edades de un código de AGE_GROUPS ("4-7", "12+", "10"); {@code max} null = sin tope.
+ * Es inmutable y se comparte: hay pocas decenas de códigos distintos, así que cada uno se
+ * interpreta una sola vez y después se toma de la caché.
+ */
+public record AgeRange(int min, Integer max) {
+
+    private static final Map<String, AgeRange> CACHE = new ConcurrentHashMap<>();
+
+    /** Rango del código; lanza NumberFormatException si el código no tiene formato de edades. */
+    public static AgeRange of(String code) {
+        return CACHE.computeIfAbsent(code, AgeRange::parse);
+    }
+
+    private static AgeRange parse(String code) {
+        if (code.endsWith("+")) {
+            return new AgeRange(Integer.parseInt(code.substring(0, code.length() - 1)), null);
+        }
+        int guion = code.indexOf('-');
+        if (guion >= 0) {
+            return new AgeRange(Integer.parseInt(code.substring(0, guion)),
+                    Integer.parseInt(code.substring(guion + 1)));
+        }
+        int edad = Integer.parseInt(code);
+        return new AgeRange(edad, edad);
+    }
+
+    public boolean contiene(int edad) {
+        return edad >= min && (max == null || edad <= max);
+    }
+}
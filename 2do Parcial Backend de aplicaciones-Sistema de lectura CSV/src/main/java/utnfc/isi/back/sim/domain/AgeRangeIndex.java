@@ -0,0 +1,67 @@
+package utnfc.isi.back.sim.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Índice inmutable de intervalos sobre los rangos de AGE_GROUPS para responder
+ * "qué grupos cubren la edad X" con una búsqueda binaria.
+ *
+ * Los extremos de todos los rangos parten la recta en tramos elementales; dentro de un tramo
+ * el conjunto de grupos que lo cubren no cambia, así que se precalcula una vez por tramo
+ * (O(n²) al construir, con n en las decenas) y la consulta es O(log n) sin recorrer los grupos.
+ */
+public final class AgeRangeIndex {
+
+    /** Inicio de cada tramo elemental; el tramo i es [inicios[i], inicios[i + 1]). */
+    private final int[] inicios;
+    /** Ids de los grupos que cubren cada tramo (listas inmutables, compartidas entre consultas). */
+    private final List<List<Integer>> cubren;
+    private final int grupos;
+
+    private AgeRangeIndex(int[] inicios, List<List<Integer>> cubren, int grupos) {
+        this.inicios = inicios;
+        this.cubren = cubren;
+        this.grupos = grupos;
+    }
+
+    /** Construye el índice a partir de id → código de cada grupo de edad. */
+    public static AgeRangeIndex of(Map<Integer, String> codigosPorId) {
+        List<Integer> ids = new ArrayList<>(codigosPorId.keySet());
+        ids.sort(null);
+        List<AgeRange> rangos = new ArrayList<>(ids.size());
+        TreeSet<Integer> extremos = new TreeSet<>();
+        for (Integer id : ids) {
+            var r = AgeRange.of(codigosPorId.get(id));
+            rangos.add(r);
+            extremos.add(r.min());
+            if (r.max() != null && r.max() < Integer.MAX_VALUE) extremos.add(r.max() + 1);
+        }
+
+        int[] inicios = extremos.stream().mapToInt(Integer::intValue).toArray();
+        List<List<Integer>> cubren = new ArrayList<>(inicios.length);
+        for (int inicio : inicios) {
+            List<Integer> tramo = new ArrayList<>();
+            for (int i = 0; i < rangos.size(); i++) {
+                if (rangos.get(i).contiene(inicio)) tramo.add(ids.get(i));
+            }
+            cubren.add(List.copyOf(tramo));
+        }
+        return new AgeRangeIndex(inicios, List.copyOf(cubren), ids.size());
+    }
+
+    /** Ids (ascendentes) de los grupos cuyo rango incluye {@code edad}; lista vacía si ninguno. */
+    public List<Integer> cubren(int edad) {
+        int i = Arrays.binarySearch(inicios, edad);
+        if (i < 0) i = -i - 2;              // tramo que empieza antes de la edad
+        return i < 0 ? List.of() : cubren.get(i);
+    }
+
+    /** Cantidad de grupos indexados. */
+    public int size() {
+        return grupos;
+    }
+}
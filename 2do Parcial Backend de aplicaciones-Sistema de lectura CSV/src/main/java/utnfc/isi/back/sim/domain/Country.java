@@ -14,7 +14,7 @@ public class Country {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_country")
-    @SequenceGenerator(name = "seq_country", sequenceName = "SEQ_COUNTRY_ID", allocationSize = 1)
+    @SequenceGenerator(name = "seq_country", sequenceName = "SEQ_COUNTRY_ID", allocationSize = 50)
     @Column(name = "ID_COUNTRY")
     private Integer id;
 
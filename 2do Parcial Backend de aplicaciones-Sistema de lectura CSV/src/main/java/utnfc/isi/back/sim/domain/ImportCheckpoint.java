@@ -0,0 +1,59 @@
+package utnfc.isi.back.sim.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progreso de una importación reanudable: hasta dónde se confirmó el archivo {@code source}.
+ * El tamaño y la fecha de modificación identifican la versión del archivo importada.
+ */
+@Entity
+@Table(name = "IMPORT_CHECKPOINTS")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportCheckpoint {
+
+    @Id
+    @Column(name = "SOURCE", length = 1024)
+    private String source;
+
+    @Column(name = "FILE_SIZE", nullable = false)
+    private Long fileSize;
+
+    @Column(name = "FILE_MTIME", nullable = false)
+    private Long fileMtime;
+
+    /** Offset del próximo registro a leer. */
+    @Column(name = "BYTE_OFFSET", nullable = false)
+    private Long byteOffset;
+
+    /** Línea física del próximo registro a leer. */
+    @Column(name = "NEXT_LINE", nullable = false)
+    private Long nextLine;
+
+    /** Filas de datos ya consumidas (válidas o no). */
+    @Column(name = "ROWS_READ", nullable = false)
+    private Long rowsRead;
+
+    @Column(name = "COMPLETED", nullable = false)
+    private Boolean completed;
+
+    @Column(name = "UPDATED_AT")
+    private LocalDateTime updatedAt;
+
+    /** Reinicia el checkpoint para una importación nueva desde el primer registro de datos. */
+    public void start(long fileSize, long fileMtime, long dataStart) {
+        this.fileSize = fileSize;
+        this.fileMtime = fileMtime;
+        this.byteOffset = dataStart;
+        this.nextLine = 2L;
+        this.rowsRead = 0L;
+        this.completed = false;
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -15,7 +15,7 @@ public class LegoSet {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_set")
-    @SequenceGenerator(name = "seq_set", sequenceName = "SEQ_LEGO_SET_ID", allocationSize = 1)
+    @SequenceGenerator(name = "seq_set", sequenceName = "SEQ_LEGO_SET_ID", allocationSize = 50)
     @Column(name = "ID_SET")
     private Integer id;
 
@@ -51,4 +51,13 @@ public class LegoSet {
     @ManyToOne(optional = false)
     @JoinColumn(name = "COUNTRY_ID", nullable = false)
     private Country country;
+
+    /** Hash del contenido de la fila del CSV (ver importación delta); null si nunca se calculó. */
+    @Column(name = "ROW_HASH")
+    private Long rowHash;
+
+    /** Baja lógica: el set dejó de venir en el archivo (tombstone de la importación delta). */
+    @Column(name = "DELETED", nullable = false)
+    @Builder.Default
+    private Boolean deleted = false;
 }
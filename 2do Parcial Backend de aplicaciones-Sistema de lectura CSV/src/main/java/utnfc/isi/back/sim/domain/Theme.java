@@ -14,7 +14,7 @@ public class Theme {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_theme")
-    @SequenceGenerator(name = "seq_theme", sequenceName = "SEQ_THEME_ID", allocationSize = 1)
+    @SequenceGenerator(name = "seq_theme", sequenceName = "SEQ_THEME_ID", allocationSize = 50)
     @Column(name = "ID_THEME")
     private Integer id;
 
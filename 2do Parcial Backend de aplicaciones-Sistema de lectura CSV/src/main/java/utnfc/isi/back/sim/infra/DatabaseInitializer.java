@@ -1,27 +1,104 @@
 package utnfc.isi.back.sim.infra;
 
+import org.h2.jdbcx.JdbcConnectionPool;
 import org.h2.tools.RunScript;
+import utnfc.isi.back.sim.service.LegoRollups;
+
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
- * Ejecuta el DDL provisto (SIN MODIFICAR) desde resources/sql/ddl_legos.sql
- * contra la misma URL H2 que usa JPA/Hibernate.
+ * Ejecuta el DDL de resources/sql/ddl.sql contra la misma URL H2 que usa JPA/Hibernate.
+ * Parte del DDL provisto, extendido para el importador:
+ * ROW_HASH/DELETED en LEGO_SETS (importación delta), las tablas THEME_ROLLUP y COUNTRY_ROLLUP,
+ * IMPORT_CHECKPOINTS, SCHEMA_VERSION y secuencias con INCREMENT BY 50 (el allocationSize
+ * de las entidades).
+ *
+ * Con una base en archivo ({@code -Dbackdb.file=ruta}) el esquema sobrevive entre corridas:
+ * {@link #prepararEsquema} sólo ejecuta el DDL si la base no tiene la versión actual
+ * (tabla SCHEMA_VERSION) o si se pide recrearla.
  */
 public final class DatabaseInitializer {
     private DatabaseInitializer(){}
 
     // Debe coincidir EXACTO con persistence.xml
-    private static final String URL  = "jdbc:h2:mem:backdb;DB_CLOSE_DELAY=-1;MODE=LEGACY";
+    private static final String DEFAULT_URL = "jdbc:h2:mem:backdb;DB_CLOSE_DELAY=-1;MODE=LEGACY";
+    /** Propiedad de sistema para reemplazar la URL (por ejemplo, settings de H2 en benchmarks). */
+    public static final String URL_PROPERTY = "backdb.url";
+    /** Propiedad de sistema con la ruta (sin extensión) de una base H2 en archivo. */
+    public static final String FILE_PROPERTY = "backdb.file";
+    /** Propiedad de sistema que fuerza a recrear el esquema aunque la base ya tenga la versión actual. */
+    public static final String RECREATE_PROPERTY = "backdb.recreate";
+    /** Versión de resources/sql/ddl.sql; tiene que coincidir con la fila de SCHEMA_VERSION. */
+    public static final int SCHEMA_VERSION = 3;
     private static final String USER = "sa";
     private static final String PASS = "";
 
     private static final String DDL_CLASSPATH = "/sql/ddl.sql";
 
+    /**
+     * URL de la base: la de {@link #URL_PROPERTY} si está definida; si no, una base en archivo
+     * en la ruta de {@link #FILE_PROPERTY}; si no, la de persistence.xml (en memoria).
+     */
+    public static String url() {
+        String url = System.getProperty(URL_PROPERTY);
+        if (url != null) return url;
+        String archivo = System.getProperty(FILE_PROPERTY);
+        return archivo != null ? "jdbc:h2:file:" + archivo + ";MODE=LEGACY" : DEFAULT_URL;
+    }
+
+    /** Pool de conexiones sobre {@link #url()} para el EntityManagerFactory. */
+    static JdbcConnectionPool pool(int maxConexiones) {
+        var pool = JdbcConnectionPool.create(url(), USER, PASS);
+        pool.setMaxConnections(maxConexiones);
+        return pool;
+    }
+
+    /**
+     * Deja la base lista para JPA: si ya tiene el esquema de {@link #SCHEMA_VERSION} y no se pidió
+     * recrearlo ({@code recrear} o {@link #RECREATE_PROPERTY}) conserva los datos; si no, ejecuta el DDL.
+     * En los dos casos reconstruye THEME_ROLLUP / COUNTRY_ROLLUP si no cuadran con LEGO_SETS
+     * (por ejemplo, sets escritos con el repositorio en una corrida anterior).
+     *
+     * @return true si se reutilizó el esquema existente (con sus datos)
+     */
+    public static boolean prepararEsquema(boolean recrear) {
+        boolean reutilizar = !recrear && !Boolean.getBoolean(RECREATE_PROPERTY) && versionActual() == SCHEMA_VERSION;
+        if (!reutilizar) recreateSchemaFromDdl();
+        asegurarAgregados();
+        return reutilizar;
+    }
+
+    /** Reconstruye los agregados de los reportes si no cuadran con los sets activos. */
+    static void asegurarAgregados() {
+        try (Connection cn = DriverManager.getConnection(url(), USER, PASS)) {
+            if (!LegoRollups.consistentes(cn)) LegoRollups.reconstruir(cn);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error verificando los agregados en " + url(), e);
+        }
+    }
+
+    /** Versión del esquema guardada en la base; 0 si la base está vacía o no tiene SCHEMA_VERSION. */
+    static int versionActual() {
+        try (Connection cn = DriverManager.getConnection(url(), USER, PASS);
+             ResultSet rs = cn.getMetaData().getTables(null, "PUBLIC", "SCHEMA_VERSION", null)) {
+            if (!rs.next()) return 0;
+            try (Statement st = cn.createStatement();
+                 ResultSet v = st.executeQuery("SELECT MAX(VERSION) FROM SCHEMA_VERSION")) {
+                return v.next() ? v.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo la versión del esquema en " + url(), e);
+        }
+    }
+
     public static void recreateSchemaFromDdl() {
-        try (Connection cn = DriverManager.getConnection(URL, USER, PASS)) {
+        try (Connection cn = DriverManager.getConnection(url(), USER, PASS)) {
             var in = DatabaseInitializer.class.getResourceAsStream(DDL_CLASSPATH);
             if (in == null) {
                 throw new IllegalStateException("No se encontró " + DDL_CLASSPATH + " en el classpath.");
@@ -3,18 +3,48 @@ package utnfc.isi.back.sim.infra;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.AvailableSettings;
 
-/** Proveedor local de EntityManager. */
+import java.util.Map;
+
+/**
+ * Proveedor local de EntityManager. Las conexiones salen de un pool (H2 JdbcConnectionPool)
+ * para que varios hilos puedan consultar a la vez; el tamaño máximo se puede cambiar con
+ * {@code -Dbackdb.pool=N}.
+ *
+ * Al arrancar prepara el esquema con {@link DatabaseInitializer#prepararEsquema}: en memoria
+ * siempre lo crea; con una base en archivo ya inicializada lo reutiliza junto con los datos
+ * (ver {@link #esquemaReutilizado()}).
+ */
 public final class LocalEntityManagerProvider {
     private static final String PU = "pu-backend";
+    /** Propiedad de sistema con el máximo de conexiones del pool. */
+    public static final String POOL_PROPERTY = "backdb.pool";
+    private static final JdbcConnectionPool POOL;
     private static final EntityManagerFactory EMF;
+    private static final boolean ESQUEMA_REUTILIZADO;
 
     static {
-        DatabaseInitializer.recreateSchemaFromDdl();
-        EMF = Persistence.createEntityManagerFactory(PU);
+        ESQUEMA_REUTILIZADO = DatabaseInitializer.prepararEsquema(false);
+        POOL = DatabaseInitializer.pool(Integer.getInteger(POOL_PROPERTY,
+                Math.max(10, 2 * Runtime.getRuntime().availableProcessors())));
+        EMF = Persistence.createEntityManagerFactory(PU, Map.of(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, POOL));
     }
     private LocalEntityManagerProvider(){}
 
     public static EntityManager em() { return EMF.createEntityManager(); }
-    public static void close() { EMF.close(); }
+    /** Sesión sin estado (sin contexto de persistencia) para consultas de sólo lectura; cerrarla al terminar. */
+    public static StatelessSession lectura() { return EMF.unwrap(SessionFactory.class).openStatelessSession(); }
+    /** Acceso a ids / estado de carga vía metamodelo, sin reflexión por llamada. */
+    public static PersistenceUnitUtil util() { return EMF.getPersistenceUnitUtil(); }
+    /** true si al arrancar la base ya tenía el esquema actual y no se ejecutó el DDL (arranque en caliente). */
+    public static boolean esquemaReutilizado() { return ESQUEMA_REUTILIZADO; }
+    public static void close() {
+        EMF.close();
+        POOL.dispose();
+    }
 }
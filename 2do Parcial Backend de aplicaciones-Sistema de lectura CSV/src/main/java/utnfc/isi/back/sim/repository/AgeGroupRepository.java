@@ -1,6 +1,9 @@
 package utnfc.isi.back.sim.repository;
 import utnfc.isi.back.sim.domain.AgeGroup;
+import utnfc.isi.back.sim.domain.AgeRangeIndex;
 import java.util.Optional;
 public interface AgeGroupRepository extends CrudRepository<AgeGroup, Integer> {
   Optional<AgeGroup> findByCode(String code);
-}
\ No newline at end of file
+  /** Índice de intervalos sobre todos los grupos de edad ("qué grupos cubren la edad X"). */
+  AgeRangeIndex indiceDeEdades();
+}
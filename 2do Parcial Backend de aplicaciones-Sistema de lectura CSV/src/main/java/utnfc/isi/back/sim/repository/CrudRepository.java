@@ -2,6 +2,7 @@ package utnfc.isi.back.sim.repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CrudRepository<T, ID> {
     T save(T entity);
@@ -11,4 +12,18 @@ public interface CrudRepository<T, ID> {
     void delete(T entity);
     void deleteById(ID id);
     List<T> findAll(int offset, int limit);
+
+    /**
+     * Recorre todas las entidades en orden de id sin materializarlas: se leen de a
+     * {@code fetchSize} filas y el contexto de persistencia se vacía cada {@code fetchSize}
+     * entidades (quedan desacopladas). Hay que cerrar el Stream (try-with-resources).
+     */
+    Stream<T> streamAll(int fetchSize);
+
+    /**
+     * Paginación por clave: hasta {@code limit} entidades con id mayor a {@code lastId}
+     * ({@code null} = primera página), en orden de id. A diferencia de {@link #findAll(int, int)}
+     * el costo no crece con la posición de la página.
+     */
+    List<T> findAllAfter(ID lastId, int limit);
 }
@@ -0,0 +1,52 @@
+package utnfc.isi.back.sim.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Caché de lectura (read-through) para las maestras chicas y casi estáticas: COUNTRIES,
+ * THEMES y AGE_GROUPS. La usan los repositorios de dimensiones construidos con
+ * {@code cache = true}; los valores son entidades desacopladas compartidas, que no se
+ * deben modificar.
+ *
+ * Invalidar reemplaza el mapa entero: una carga que empezó antes de la invalidación guarda
+ * su resultado en el mapa descartado y no puede reintroducir un valor viejo.
+ */
+public final class DimensionCache<K, V> {
+
+    private static final List<DimensionCache<?, ?>> TODAS = new CopyOnWriteArrayList<>();
+
+    private volatile Map<K, V> valores = new ConcurrentHashMap<>();
+
+    DimensionCache() {
+        TODAS.add(this);
+    }
+
+    /**
+     * Valor de {@code clave}, cargándolo con {@code cargar} si no está (que no puede devolver null).
+     * La carga va fuera del lock del mapa porque consulta la base; dos lecturas simultáneas
+     * de la misma clave pueden cargarla las dos, y queda la primera.
+     */
+    V get(K clave, Function<K, V> cargar) {
+        var mapa = valores;
+        V v = mapa.get(clave);
+        if (v == null) {
+            v = cargar.apply(clave);
+            V previo = mapa.putIfAbsent(clave, v);
+            if (previo != null) v = previo;
+        }
+        return v;
+    }
+
+    void invalidar() {
+        valores = new ConcurrentHashMap<>();
+    }
+
+    /** Descarta todas las cachés de dimensiones (por ejemplo, después de que una importación agregó filas). */
+    public static void invalidarTodas() {
+        TODAS.forEach(DimensionCache::invalidar);
+    }
+}
@@ -2,13 +2,47 @@
 package utnfc.isi.back.sim.repository;
 
 import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.hibernate.query.QueryProducer;
 import utnfc.isi.back.sim.domain.AgeGroup;
+import utnfc.isi.back.sim.domain.AgeRangeIndex;
+
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public class JpaAgeGroupRepository extends JpaRepositoryBase<AgeGroup, Integer> implements AgeGroupRepository {
-  public JpaAgeGroupRepository(){ super(AgeGroup.class); }
+  /**
+   * Índice compartido; null hasta la próxima consulta después de {@link #invalidarIndice()}.
+   * {@code generacion} evita que un armado que empezó antes de invalidar guarde un índice viejo.
+   */
+  private static volatile AgeRangeIndex indice;
+  private static volatile int generacion;
+
+  private static final DimensionCache<String, Optional<AgeGroup>> POR_CODIGO = new DimensionCache<>();
+
+  private final boolean cache;
+
+  public JpaAgeGroupRepository(){ this(false); }
+  /** Con {@code cache = true} las búsquedas por código pasan por {@link DimensionCache}. */
+  public JpaAgeGroupRepository(boolean cache){ super(AgeGroup.class); this.cache = cache; }
+
+  @Override protected void alModificar(){
+    POR_CODIGO.invalidar();
+    invalidarIndice();
+  }
+
+  /** Descarta el índice de rangos de edad: AGE_GROUPS cambió (alta, baja o código modificado). */
+  public static synchronized void invalidarIndice(){
+    indice = null;
+    generacion++;
+  }
 
   @Override public Optional<AgeGroup> findByCode(String code){
+    return cache ? POR_CODIGO.get(code, this::buscarPorCodigo) : buscarPorCodigo(code);
+  }
+
+  private Optional<AgeGroup> buscarPorCodigo(String code){
     var em = em();
     try {
       TypedQuery<AgeGroup> q = em.createQuery("select a from AgeGroup a where a.code = :c", AgeGroup.class);
@@ -17,4 +51,27 @@ public class JpaAgeGroupRepository extends JpaRepositoryBase<AgeGroup, Integer>
       return list.isEmpty()? Optional.empty(): Optional.of(list.get(0));
     } finally { em.close(); }
   }
+
+  @Override public AgeRangeIndex indiceDeEdades(){
+    var em = em();
+    try { return indiceDeEdades(em.unwrap(Session.class)); }
+    finally { em.close(); }
+  }
+
+  /** Igual que {@link #indiceDeEdades()} pero con una sesión ya abierta (lo usan otros repositorios). */
+  static AgeRangeIndex indiceDeEdades(QueryProducer em){
+    var actual = indice;
+    if (actual != null) return actual;
+    int g = generacion;
+
+    Map<Integer, String> codigos = new HashMap<>();
+    for (Object[] r : em.createQuery("select a.id, a.code from AgeGroup a", Object[].class).getResultList()) {
+      codigos.put((Integer) r[0], (String) r[1]);
+    }
+    actual = AgeRangeIndex.of(codigos);
+    synchronized (JpaAgeGroupRepository.class) {
+      if (generacion == g) indice = actual;
+    }
+    return actual;
+  }
 }
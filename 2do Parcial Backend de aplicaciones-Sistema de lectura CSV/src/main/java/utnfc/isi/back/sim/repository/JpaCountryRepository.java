@@ -7,9 +7,26 @@ import java.util.List;
 import java.util.Optional;
 
 public class JpaCountryRepository extends JpaRepositoryBase<Country, Integer> implements CountryRepository {
-  public JpaCountryRepository(){ super(Country.class); }
+  private static final DimensionCache<String, Optional<Country>> POR_CODIGO = new DimensionCache<>();
+  private static final DimensionCache<String, List<Country>> TODOS = new DimensionCache<>();
+
+  private final boolean cache;
+
+  public JpaCountryRepository(){ this(false); }
+  /** Con {@code cache = true} las búsquedas pasan por {@link DimensionCache}. */
+  public JpaCountryRepository(boolean cache){ super(Country.class); this.cache = cache; }
+
+  @Override protected void alModificar(){ POR_CODIGO.invalidar(); TODOS.invalidar(); }
 
   @Override public Optional<Country> findByCode(String code){
+    return cache ? POR_CODIGO.get(code, this::buscarPorCodigo) : buscarPorCodigo(code);
+  }
+
+  @Override public List<Country> findAll(){
+    return cache ? TODOS.get("", k -> List.copyOf(buscarTodos())) : buscarTodos();
+  }
+
+  private Optional<Country> buscarPorCodigo(String code){
     var em = em();
     try {
       TypedQuery<Country> q = em.createQuery("select c from Country c where c.code = :c", Country.class);
@@ -19,7 +36,7 @@ public class JpaCountryRepository extends JpaRepositoryBase<Country, Integer> im
     } finally { em.close(); }
   }
 
-  @Override public List<Country> findAll(){
+  private List<Country> buscarTodos(){
     var em = em();
     try { return em.createQuery("select c from Country c order by c.code", Country.class).getResultList(); }
     finally { em.close(); }
@@ -1,66 +1,174 @@
 package utnfc.isi.back.sim.repository;
 
-import jakarta.persistence.EntityManager;
+import org.hibernate.StatelessSession;
+import utnfc.isi.back.sim.domain.AgeRangeIndex;
 import utnfc.isi.back.sim.domain.LegoSet;
 import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
 
+import java.math.BigDecimal;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
-public class JpaLegoSetRepository {
+/**
+ * Consultas de reportes sobre LEGO_SETS. No guarda estado: cada consulta abre una sesión
+ * sin estado (StatelessSession, sin contexto de persistencia) del pool de conexiones y la
+ * cierra al terminar, así que una misma instancia se puede compartir entre hilos y las
+ * entidades devueltas quedan desacopladas.
+ */
+public class JpaLegoSetRepository implements AutoCloseable {
 
-    private final EntityManager em = LocalEntityManagerProvider.em();
+    /** No retiene recursos (cada consulta usa su propia sesión); se mantiene por compatibilidad. */
+    @Override
+    public void close() {
+    }
+
+    private static <R> R leer(Function<StatelessSession, R> consulta) {
+        try (var sesion = LocalEntityManagerProvider.lectura()) {
+            return consulta.apply(sesion);
+        }
+    }
+
+    // Tres rankings leen THEME_ROLLUP / COUNTRY_ROLLUP (una fila por temática o por país), que
+    // ImportService mantiene al importar: no recorren LEGO_SETS. El de "al menos N piezas" no se
+    // puede responder con una fila por temática y filtra LEGO_SETS por IX_LEGOSET_PIECES.
 
     /**
      * Retorna los 5 países con menor relación costo/valoración promedio.
      * Se calcula como promedio(list_price / star_rating) agrupado por país.
      */
     public List<Object[]> rankingPaisesPorCostoValoracion() {
-        return em.createQuery("""
-            SELECT s.country.code, AVG(s.listPrice / s.starRating)
-            FROM LegoSet s
-            WHERE s.starRating IS NOT NULL AND s.listPrice IS NOT NULL
-            GROUP BY s.country.code
-            HAVING COUNT(s.id) > 0
-            ORDER BY AVG(s.listPrice / s.starRating) ASC
+        return leer(sesion -> sesion.createNativeQuery("""
+            SELECT c.CODE, CAST(r.SUM_PRICE_RATING / r.PRICED AS DOUBLE PRECISION)
+            FROM COUNTRY_ROLLUP r JOIN COUNTRIES c ON c.ID_COUNTRY = r.COUNTRY_ID
+            WHERE r.PRICED > 0
+            ORDER BY r.SUM_PRICE_RATING / r.PRICED ASC, c.CODE
         """, Object[].class)
         .setMaxResults(5)
-        .getResultList();
+        .getResultList());
     }
 
+    /** Las 5 temáticas con más piezas en total: (themeName, sumPieces). */
+    public List<Object[]> top5ThemesPorPiezas() {
+        return leer(sesion -> sesion.createNativeQuery("""
+            SELECT t.NAME, r.SUM_PIECES
+            FROM THEME_ROLLUP r JOIN THEMES t ON t.ID_THEME = r.THEME_ID
+            WHERE r.PIECED > 0
+            ORDER BY r.SUM_PIECES DESC, t.NAME
+        """, Object[].class)
+        .setMaxResults(5)
+        .getResultList());
+    }
+
+    /** Países con más de {@code n} sets, de mayor a menor cantidad: (countryCode, countSets). */
+    public List<Object[]> countriesConMasDeN(int n) {
+        return leer(sesion -> sesion.createNativeQuery("""
+            SELECT c.CODE, r.SETS
+            FROM COUNTRY_ROLLUP r JOIN COUNTRIES c ON c.ID_COUNTRY = r.COUNTRY_ID
+            WHERE r.SETS > :n
+            ORDER BY r.SETS DESC, c.CODE
+        """, Object[].class)
+        .setParameter("n", (long) n)
+        .getResultList());
+    }
+
+    /**
+     * Temáticas ordenadas por valoración promedio (mayor primero), considerando sólo
+     * los sets con al menos {@code minPieces} piezas: (themeName, avgRating).
+     */
+    public List<Object[]> rankingThemesPorRatingPromedio(int minPieces) {
+        return leer(sesion -> sesion.createQuery("""
+            SELECT s.theme.name, AVG(s.starRating)
+            FROM LegoSet s
+            WHERE s.deleted = false AND s.starRating IS NOT NULL AND s.pieceCount >= :minPieces
+            GROUP BY s.theme.name
+            ORDER BY AVG(s.starRating) DESC, s.theme.name
+        """, Object[].class)
+        .setParameter("minPieces", minPieces)
+        .getResultList());
+    }
+
+    /** Valoración mínima del listado por edad/precio. */
+    private static final double RATING_MINIMO = 4.8;
+
     /**
      * Lista de sets disponibles para una edad específica,
-     * con precio menor a un valor máximo y valoración >= 4.8.
-     * El filtrado por rango de edad se hace en memoria usando matchesAge().
+     * con precio menor a un valor máximo y valoración >= 4.8, de mayor a menor precio.
+     * Los grupos de edad que cubren la edad salen del índice de intervalos en memoria
+     * ({@link AgeRangeIndex}); el resto del filtro corre en SQL sobre
+     * IX_LEGOSET_AGE_RATING_PRICE (AGE_GROUP_ID, STAR_RATING, LIST_PRICE).
      */
     public List<LegoSet> findByEdadPrecioValoracion(int edad, double precioMax) {
-        // Trae todos los sets con referencias
-        var all = em.createQuery("""
+        return leer(sesion -> {
+            List<Integer> grupos = JpaAgeGroupRepository.indiceDeEdades(sesion).cubren(edad);
+            if (grupos.isEmpty()) return List.<LegoSet>of();
+
+            return sesion.createQuery("""
+                SELECT s FROM LegoSet s
+                JOIN FETCH s.ageGroup a
+                JOIN FETCH s.country
+                JOIN FETCH s.theme
+                WHERE s.deleted = false
+                  AND a.id IN :grupos
+                  AND s.listPrice < :precioMax
+                  AND s.starRating >= :rating
+                ORDER BY s.listPrice DESC, s.id
+            """, LegoSet.class)
+            .setParameter("grupos", grupos)
+            .setParameter("precioMax", BigDecimal.valueOf(precioMax))
+            .setParameter("rating", RATING_MINIMO)
+            .getResultList();
+        });
+    }
+
+    private static final String FIND_ALL_WITH_REFS = """
             SELECT s FROM LegoSet s
-            JOIN FETCH s.ageGroup
             JOIN FETCH s.country
             JOIN FETCH s.theme
-        """, LegoSet.class).getResultList();
-
-        // Filtra en memoria usando matchesAge y condiciones del enunciado
-        return all.stream()
-                .filter(s -> s.getAgeGroup() != null && s.getAgeGroup().matchesAge(edad))
-                .filter(s -> s.getListPrice() != null && s.getListPrice().doubleValue() < precioMax)
-                .filter(s -> s.getStarRating() != null && s.getStarRating() >= 4.8)
-                .sorted((a, b) -> b.getListPrice().compareTo(a.getListPrice())) // mayor a menor precio
-                .collect(Collectors.toList());
-    }
+            JOIN FETCH s.ageGroup
+            WHERE s.deleted = false
+        """;
 
     /**
-     * Devuelve todos los sets con sus relaciones cargadas.
+     * Devuelve todos los sets (sin los dados de baja) con sus relaciones cargadas.
      * Útil para pruebas o verificación general.
      */
     public List<LegoSet> findAllWithRefs() {
-        return em.createQuery("""
-            SELECT s FROM LegoSet s
-            JOIN FETCH s.country
-            JOIN FETCH s.theme
-            JOIN FETCH s.ageGroup
-        """, LegoSet.class).getResultList();
+        return leer(sesion -> sesion.createQuery(FIND_ALL_WITH_REFS, LegoSet.class).getResultList());
+    }
+
+    /**
+     * Como {@link #findAllWithRefs()} pero en streaming, en orden de id y con memoria acotada:
+     * para exportaciones y procesos batch. La sesión sin estado no acumula entidades y se
+     * cierra con el Stream (try-with-resources).
+     */
+    public Stream<LegoSet> streamAllWithRefs(int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize debe ser > 0");
+        StatelessSession sesion = LocalEntityManagerProvider.lectura();
+        try {
+            return sesion.createQuery(FIND_ALL_WITH_REFS + """
+                ORDER BY s.id
+            """, LegoSet.class)
+            .setFetchSize(fetchSize)
+            .getResultStream()
+            .onClose(sesion::close);
+        } catch (RuntimeException ex) {
+            sesion.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Página de sets (sin los dados de baja) con id mayor a {@code lastId} ({@code null} = primera),
+     * en orden de id.
+     */
+    public List<LegoSet> findAllWithRefsAfter(Integer lastId, int limit) {
+        return leer(sesion -> sesion.createQuery(FIND_ALL_WITH_REFS + """
+              AND s.id > :last
+            ORDER BY s.id
+        """, LegoSet.class)
+        .setParameter("last", lastId != null ? lastId : Integer.MIN_VALUE)
+        .setMaxResults(limit)
+        .getResultList());
     }
 }
@@ -3,14 +3,17 @@ package utnfc.isi.back.sim.repository;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
 import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public abstract class JpaRepositoryBase<T, ID> implements CrudRepository<T, ID> {
     private final Class<T> entityClass;
+    private volatile String idAttribute;
     protected JpaRepositoryBase(Class<T> entityClass) { this.entityClass = entityClass; }
 
     protected EntityManager em() { return LocalEntityManagerProvider.em(); }
@@ -30,12 +33,17 @@ public abstract class JpaRepositoryBase<T, ID> implements CrudRepository<T, ID>
     }
     protected void txVoid(java.util.function.Consumer<EntityManager> work) { tx(em -> { work.accept(em); return null; }); }
 
+    /** Se llama después de confirmar un save / delete; los repositorios con caché la invalidan acá. */
+    protected void alModificar() {}
+
     @Override public T save(T entity) {
-        return tx(em -> {
+        T saved = tx(em -> {
             Object id = getId(entity);
             if (id == null) { em.persist(entity); return entity; }
             else { return em.merge(entity); }
         });
+        alModificar();
+        return saved;
     }
     @Override public Optional<T> findById(ID id) {
         EntityManager em = em();
@@ -65,8 +73,12 @@ public abstract class JpaRepositoryBase<T, ID> implements CrudRepository<T, ID>
             }
             if (managed != null) em.remove(managed);
         });
+        alModificar();
+    }
+    @Override public void deleteById(ID id) {
+        txVoid(em -> { T m = em.find(entityClass, id); if (m != null) em.remove(m); });
+        alModificar();
     }
-    @Override public void deleteById(ID id) { txVoid(em -> { T m = em.find(entityClass, id); if (m != null) em.remove(m); }); }
     @Override public List<T> findAll(int offset, int limit) {
         EntityManager em = em();
         try {
@@ -77,8 +89,55 @@ public abstract class JpaRepositoryBase<T, ID> implements CrudRepository<T, ID>
         } finally { em.close(); }
     }
 
+    @Override public Stream<T> streamAll(int fetchSize) {
+        EntityManager em = em();
+        try {
+            TypedQuery<T> q = em.createQuery("select e from " + entityClass.getSimpleName()
+                    + " e order by e." + idAttribute(em), entityClass);
+            return stream(em, q, fetchSize);
+        } catch (RuntimeException ex) {
+            em.close();
+            throw ex;
+        }
+    }
+    @Override public List<T> findAllAfter(ID lastId, int limit) {
+        EntityManager em = em();
+        try {
+            String id = idAttribute(em);
+            TypedQuery<T> q = em.createQuery("select e from " + entityClass.getSimpleName() + " e"
+                    + (lastId != null ? " where e." + id + " > :last" : "") + " order by e." + id, entityClass);
+            if (lastId != null) q.setParameter("last", lastId);
+            return q.setMaxResults(limit).getResultList();
+        } finally { em.close(); }
+    }
+
+    /**
+     * Stream de solo lectura sobre {@code q} que cierra {@code em} al cerrarse y vacía su
+     * contexto de persistencia cada {@code fetchSize} filas, para recorrer tablas enteras con
+     * memoria acotada. Lo usan también los repositorios que no extienden esta clase.
+     */
+    static <R> Stream<R> stream(EntityManager em, TypedQuery<R> q, int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize debe ser > 0");
+        q.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+        q.setHint(HibernateHints.HINT_READ_ONLY, true);
+        long[] leidas = {0};
+        return q.getResultStream()
+                .peek(e -> { if (++leidas[0] % fetchSize == 0) em.clear(); })
+                .onClose(em::close);
+    }
+
+    /** Nombre del atributo id según el metamodelo (se resuelve una vez por repositorio). */
+    private String idAttribute(EntityManager em) {
+        String id = idAttribute;
+        if (id == null) {
+            var type = em.getMetamodel().entity(entityClass);
+            idAttribute = id = type.getId(type.getIdType().getJavaType()).getName();
+        }
+        return id;
+    }
+
+    /** Id de la entidad según el metamodelo JPA (null si todavía no tiene). */
     protected Object getId(T entity) {
-        try { return entity.getClass().getMethod("getId").invoke(entity); }
-        catch (Exception e) { return null; }
+        return LocalEntityManagerProvider.util().getIdentifier(entity);
     }
 }
@@ -7,9 +7,26 @@ import java.util.List;
 import java.util.Optional;
 
 public class JpaThemeRepository extends JpaRepositoryBase<Theme, Integer> implements ThemeRepository {
-  public JpaThemeRepository(){ super(Theme.class); }
+  private static final DimensionCache<String, Optional<Theme>> POR_NOMBRE = new DimensionCache<>();
+  private static final DimensionCache<String, List<Theme>> ORDENADOS = new DimensionCache<>();
+
+  private final boolean cache;
+
+  public JpaThemeRepository(){ this(false); }
+  /** Con {@code cache = true} las búsquedas pasan por {@link DimensionCache}. */
+  public JpaThemeRepository(boolean cache){ super(Theme.class); this.cache = cache; }
+
+  @Override protected void alModificar(){ POR_NOMBRE.invalidar(); ORDENADOS.invalidar(); }
 
   @Override public Optional<Theme> findByName(String name){
+    return cache ? POR_NOMBRE.get(name, this::buscarPorNombre) : buscarPorNombre(name);
+  }
+
+  @Override public List<Theme> findAllOrderByName(){
+    return cache ? ORDENADOS.get("", k -> List.copyOf(buscarOrdenados())) : buscarOrdenados();
+  }
+
+  private Optional<Theme> buscarPorNombre(String name){
     var em = em();
     try {
       TypedQuery<Theme> q = em.createQuery("select t from Theme t where t.name = :n", Theme.class);
@@ -19,7 +36,7 @@ public class JpaThemeRepository extends JpaRepositoryBase<Theme, Integer> implem
     } finally { em.close(); }
   }
 
-  @Override public List<Theme> findAllOrderByName(){
+  private List<Theme> buscarOrdenados(){
     var em = em();
     try { return em.createQuery("select t from Theme t order by t.name", Theme.class).getResultList(); }
     finally { em.close(); }
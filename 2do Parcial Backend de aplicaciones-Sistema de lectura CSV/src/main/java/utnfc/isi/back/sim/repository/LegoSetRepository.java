@@ -4,6 +4,12 @@ import utnfc.isi.back.sim.domain.*;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Los reportes por temática y país leen THEME_ROLLUP / COUNTRY_ROLLUP, que sólo mantiene
+ * {@code ImportService}. Quien guarde, modifique o borre sets por este repositorio (o por
+ * {@link CrudRepository}) tiene que llamar después a {@code ImportService.reconstruirAgregados()};
+ * si no, los agregados se corrigen recién al preparar el esquema en el próximo arranque.
+ */
 public interface LegoSetRepository extends CrudRepository<LegoSet, Integer> {
   Optional<LegoSet> findByProdId(Integer prodId);
   List<LegoSet> findByTheme(Theme t);
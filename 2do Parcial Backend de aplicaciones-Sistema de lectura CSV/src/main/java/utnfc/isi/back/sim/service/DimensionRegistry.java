@@ -0,0 +1,76 @@
+package utnfc.isi.back.sim.service;
+
+import jakarta.persistence.EntityManager;
+import utnfc.isi.back.sim.domain.AgeGroup;
+import utnfc.isi.back.sim.domain.Country;
+import utnfc.isi.back.sim.domain.Theme;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maestras (Country / Theme / AgeGroup) compartidas por los hilos de una importación de
+ * varios archivos ({@link ImportService#importarArchivos}).
+ *
+ * Las claves ya conocidas se leen sin lock de los mapas concurrentes. Las nuevas se insertan
+ * de a una resolución por vez, en una transacción propia que se confirma enseguida: así cada
+ * maestra se inserta una sola vez aunque varios archivos la traigan, y los sets de cualquier
+ * hilo pueden referenciarla sin esperar al commit de otro archivo. Las entidades quedan
+ * detached y sólo se usan como referencia (FK).
+ */
+final class DimensionRegistry {
+
+    private static final int[] SIN_INSERCIONES = new int[3];
+
+    final Map<String, Country> countries = new ConcurrentHashMap<>();
+    final Map<String, Theme> themes = new ConcurrentHashMap<>();
+    final Map<String, AgeGroup> ages = new ConcurrentHashMap<>();
+
+    /** Asegura que todas las claves estén en el registro; devuelve las insertadas por esta llamada. */
+    int[] resolver(Set<String> ctyCodes, Set<String> themeNames, Set<String> ageCodes) {
+        if (faltantes(countries, ctyCodes).isEmpty() && faltantes(themes, themeNames).isEmpty()
+                && faltantes(ages, ageCodes).isEmpty()) {
+            return SIN_INSERCIONES;
+        }
+        synchronized (this) {
+            var cty = faltantes(countries, ctyCodes);
+            var th = faltantes(themes, themeNames);
+            var ag = faltantes(ages, ageCodes);
+            if (cty.isEmpty() && th.isEmpty() && ag.isEmpty()) return SIN_INSERCIONES;
+
+            // Se resuelve sobre mapas nuevos y se publica recién después del commit
+            Map<String, Country> nuevosCty = new HashMap<>();
+            Map<String, Theme> nuevosTh = new HashMap<>();
+            Map<String, AgeGroup> nuevosAg = new HashMap<>();
+            EntityManager em = LocalEntityManagerProvider.em();
+            try {
+                em.getTransaction().begin();
+                int[] ins = DimensionResolver.resolve(em, nuevosCty, nuevosTh, nuevosAg, cty, th, ag);
+                em.getTransaction().commit();
+                countries.putAll(nuevosCty);
+                themes.putAll(nuevosTh);
+                ages.putAll(nuevosAg);
+                return ins;
+            } catch (RuntimeException e) {
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                throw e;
+            } finally {
+                em.close();
+            }
+        }
+    }
+
+    private static Set<String> faltantes(Map<String, ?> conocidas, Set<String> claves) {
+        Set<String> f = null;
+        for (var k : claves) {
+            if (conocidas.containsKey(k)) continue;
+            if (f == null) f = new HashSet<>();
+            f.add(k);
+        }
+        return f == null ? Set.of() : f;
+    }
+}
@@ -0,0 +1,108 @@
+package utnfc.isi.back.sim.service;
+
+import jakarta.persistence.EntityManager;
+import utnfc.isi.back.sim.domain.AgeGroup;
+import utnfc.isi.back.sim.domain.Country;
+import utnfc.isi.back.sim.domain.Theme;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Resolución por conjuntos de las maestras (Country / Theme / AgeGroup) de una importación.
+ *
+ * Por cada bloque se juntan las claves todavía desconocidas y se resuelven con un único
+ * {@code SELECT ... WHERE clave IN (...)} por maestra; las que no existen se persisten
+ * juntas (viajan en el mismo lote JDBC que los sets del bloque). Los mapas clave → entidad
+ * se comparten con la fase de inserción de sets durante toda la corrida.
+ *
+ * Construido sobre un {@link DimensionRegistry} (importación de varios archivos en paralelo)
+ * los mapas son los del registro y las claves nuevas las inserta él, una sola vez para todos
+ * los hilos; los contadores de insertadas quedan en el resolver del hilo que las insertó.
+ */
+final class DimensionResolver {
+
+    /** Tope de parámetros por IN para no armar sentencias gigantes. */
+    static final int MAX_IN = 500;
+
+    private final Map<String, Country> countries;
+    private final Map<String, Theme> themes;
+    private final Map<String, AgeGroup> ages;
+    /** Registro compartido entre hilos; null si las maestras son propias de esta corrida. */
+    private final DimensionRegistry registro;
+
+    private int insCountries, insThemes, insAges;
+
+    DimensionResolver() { this(null); }
+
+    DimensionResolver(DimensionRegistry registro) {
+        this.registro = registro;
+        this.countries = registro != null ? registro.countries : new HashMap<>();
+        this.themes = registro != null ? registro.themes : new HashMap<>();
+        this.ages = registro != null ? registro.ages : new HashMap<>();
+    }
+
+    void resolve(EntityManager em, Set<String> ctyCodes, Set<String> themeNames, Set<String> ageCodes) {
+        int[] ins = registro != null
+                ? registro.resolver(ctyCodes, themeNames, ageCodes)
+                : resolve(em, countries, themes, ages, ctyCodes, themeNames, ageCodes);
+        insCountries += ins[0];
+        insThemes += ins[1];
+        insAges += ins[2];
+    }
+
+    /** Resuelve las tres maestras sobre los mapas dados; devuelve las insertadas de cada una. */
+    static int[] resolve(EntityManager em, Map<String, Country> countries, Map<String, Theme> themes,
+                         Map<String, AgeGroup> ages, Set<String> ctyCodes, Set<String> themeNames,
+                         Set<String> ageCodes) {
+        return new int[]{
+                resolve(em, countries, ctyCodes, Country.class, "code", Country::getCode,
+                        c -> Country.builder().code(c).name(c).build()),
+                resolve(em, themes, themeNames, Theme.class, "name", Theme::getName,
+                        n -> Theme.builder().name(n).build()),
+                resolve(em, ages, ageCodes, AgeGroup.class, "code", AgeGroup::getCode,
+                        c -> AgeGroup.builder().code(c).build())
+        };
+    }
+
+    Country country(String code) { return required(countries, code, "Country"); }
+    Theme theme(String name) { return required(themes, name, "Theme"); }
+    AgeGroup ageGroup(String code) { return required(ages, code, "AgeGroup"); }
+
+    int getInsCountries() { return insCountries; }
+    int getInsThemes() { return insThemes; }
+    int getInsAges() { return insAges; }
+    int getInsertadas() { return insCountries + insThemes + insAges; }
+
+    private static <T> int resolve(EntityManager em, Map<String, T> known, Set<String> keys,
+                                   Class<T> type, String keyAttr, Function<T, String> keyOf,
+                                   Function<String, T> factory) {
+        List<String> missing = new ArrayList<>();
+        for (var k : keys) if (!known.containsKey(k)) missing.add(k);
+        if (missing.isEmpty()) return 0;
+
+        var jpql = "SELECT e FROM " + type.getSimpleName() + " e WHERE e." + keyAttr + " IN :keys";
+        for (int i = 0; i < missing.size(); i += MAX_IN) {
+            var part = missing.subList(i, Math.min(missing.size(), i + MAX_IN));
+            for (T e : em.createQuery(jpql, type).setParameter("keys", part).getResultList()) {
+                known.put(keyOf.apply(e), e);
+            }
+        }
+
+        int created = 0;
+        for (var k : missing) {
+            if (known.containsKey(k)) continue;
+            T e = factory.apply(k);
+            em.persist(e);
+            known.put(k, e);
+            created++;
+        }
+        return created;
+    }
+
+    private static <T> T required(Map<String, T> map, String key, String what) {
+        T v = map.get(key);
+        if (v == null) throw new IllegalStateException(what + " no resuelto: " + key);
+        return v;
+    }
+}
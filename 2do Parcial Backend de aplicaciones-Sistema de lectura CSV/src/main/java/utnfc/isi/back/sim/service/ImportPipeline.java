@@ -0,0 +1,190 @@
+package utnfc.isi.back.sim.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Infraestructura del pipeline de importación: etapas en hilos propios conectadas por colas
+ * acotadas ({@link ArrayBlockingQueue}). Un productor se bloquea cuando su cola está llena
+ * (backpressure), así la memoria queda acotada a {@code capacidad × lote} por cola.
+ *
+ * Si una etapa falla, el error se guarda y la etapa igual cierra su cola de salida para que
+ * las siguientes terminen; {@link #close()} interrumpe y espera a las que sigan vivas.
+ */
+final class ImportPipeline implements AutoCloseable {
+
+    private static final Object FIN = new Object();
+
+    @FunctionalInterface
+    interface Cuerpo {
+        void run() throws Exception;
+    }
+
+    private final ThreadFactory hilos;
+    private final long inicio = System.nanoTime();
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<Medidor> medidores = new ArrayList<>();
+    private final List<Canal<?>> canales = new ArrayList<>();
+    private final AtomicReference<Throwable> fallo = new AtomicReference<>();
+
+    ImportPipeline(ThreadFactory hilos) {
+        this.hilos = hilos;
+    }
+
+    <T> Canal<T> canal(String nombre, int capacidad) {
+        var c = new Canal<T>(nombre, capacidad);
+        canales.add(c);
+        return c;
+    }
+
+    Medidor medidor(String nombre) {
+        var m = new Medidor(nombre);
+        medidores.add(m);
+        return m;
+    }
+
+    /** Arranca una etapa; al terminar (bien o mal) cierra {@code salida}. */
+    void iniciar(Medidor m, Canal<?> salida, Cuerpo cuerpo) {
+        Thread t = hilos.newThread(() -> {
+            m.iniciar();
+            try {
+                cuerpo.run();
+            } catch (Throwable ex) {
+                fallo.compareAndSet(null, ex);
+            } finally {
+                m.terminar();
+                salida.cerrar();
+            }
+        });
+        t.setName("import-" + m.nombre);
+        threads.add(t);
+        t.start();
+    }
+
+    /** Relanza el primer error de una etapa, si lo hubo. */
+    void verificar() {
+        Throwable ex = fallo.get();
+        if (ex == null) return;
+        if (ex instanceof RuntimeException re) throw re;
+        if (ex instanceof Error err) throw err;
+        throw new IllegalStateException("Falló una etapa del pipeline de importación", ex);
+    }
+
+    /** Métricas; llamar después de {@link #close()} (el join publica los contadores de cada etapa). */
+    PipelineStats stats() {
+        long wall = System.nanoTime() - inicio;
+        var etapas = medidores.stream()
+                .map(m -> new PipelineStats.Etapa(m.nombre, m.filas, m.ocupado(), m.esperaNs))
+                .toList();
+        var colas = canales.stream()
+                .map(c -> new PipelineStats.Cola(c.nombre, c.capacidad,
+                        c.tomas == 0 ? 0 : (double) c.sumaProfundidad / c.tomas, c.maxProfundidad))
+                .toList();
+        return new PipelineStats(wall, etapas, colas);
+    }
+
+    @Override
+    public void close() {
+        for (Thread t : threads) t.interrupt();
+        boolean interrumpido = false;
+        for (Thread t : threads) {
+            while (true) {
+                try { t.join(); break; }
+                catch (InterruptedException e) { interrumpido = true; }
+            }
+        }
+        if (interrumpido) Thread.currentThread().interrupt();
+    }
+
+    // ---------- Hilos ----------
+
+    /** Hilos de plataforma daemon (no impiden que termine la JVM si el llamador aborta). */
+    static ThreadFactory hilosPlataforma() {
+        var n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "import-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Hilos virtuales si la JVM los soporta (Java 21+, se obtienen por reflexión porque el
+     * proyecto compila con release 17); si no, hilos de plataforma.
+     */
+    static ThreadFactory hilosVirtuales() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException ex) {
+            return hilosPlataforma();
+        }
+    }
+
+    // ---------- Colas y métricas ----------
+
+    /** Cola acotada entre dos etapas; la profundidad la muestrea el consumidor en cada toma. */
+    static final class Canal<T> {
+        final String nombre;
+        final int capacidad;
+        private final ArrayBlockingQueue<Object> q;
+        private long tomas, sumaProfundidad;
+        private int maxProfundidad;
+
+        private Canal(String nombre, int capacidad) {
+            this.nombre = nombre;
+            this.capacidad = capacidad;
+            this.q = new ArrayBlockingQueue<>(capacidad);
+        }
+
+        void put(T item, Medidor m) throws InterruptedException {
+            long t0 = System.nanoTime();
+            q.put(item);
+            m.esperaNs += System.nanoTime() - t0;
+        }
+
+        /** Próximo elemento, o null si el productor cerró la cola. */
+        @SuppressWarnings("unchecked")
+        T take(Medidor m) throws InterruptedException {
+            int d = q.size();
+            tomas++;
+            sumaProfundidad += d;
+            if (d > maxProfundidad) maxProfundidad = d;
+            long t0 = System.nanoTime();
+            Object o = q.take();
+            m.esperaNs += System.nanoTime() - t0;
+            if (o == FIN) {
+                q.offer(FIN);   // por si hay más de un consumidor
+                return null;
+            }
+            return (T) o;
+        }
+
+        /** Si el hilo fue interrumpido (cancelación) no se bloquea: nadie va a consumir. */
+        private void cerrar() {
+            try { q.put(FIN); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    /** Contadores de una etapa; los escribe sólo su hilo. */
+    static final class Medidor {
+        final String nombre;
+        long filas;
+        private long desde, hasta, esperaNs;
+
+        private Medidor(String nombre) { this.nombre = nombre; }
+
+        void iniciar() { desde = System.nanoTime(); }
+        void terminar() { hasta = System.nanoTime(); }
+
+        private long ocupado() {
+            long fin = hasta == 0 ? System.nanoTime() : hasta;
+            return Math.max(0, fin - desde - esperaNs);
+        }
+    }
+}
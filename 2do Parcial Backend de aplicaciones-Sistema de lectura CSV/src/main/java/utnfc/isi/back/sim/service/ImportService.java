@@ -1,23 +1,112 @@
 package utnfc.isi.back.sim.service;
 
+import utnfc.isi.back.sim.csv.CompressedInput;
 import utnfc.isi.back.sim.csv.CsvLegoRow;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.csv.LegoColumn;
+import utnfc.isi.back.sim.csv.LegoDictionary;
+import utnfc.isi.back.sim.csv.MappedCsvParser;
+import utnfc.isi.back.sim.csv.MappedCsvRow;
 import utnfc.isi.back.sim.domain.*;
+import utnfc.isi.back.sim.infra.DatabaseInitializer;
 import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.repository.DimensionCache;
+import utnfc.isi.back.sim.repository.JpaAgeGroupRepository;
+import utnfc.isi.back.sim.service.ImportTelemetry.Fase;
+import utnfc.isi.back.sim.service.ImportTelemetry.MotivoRechazo;
 
 import jakarta.persistence.EntityManager;
 import lombok.*;
+import org.hibernate.Session;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
- * Importa filas del CSV de LEGO en dos fases:
- *  1️⃣ Parseo y acumulación en memoria (Maps)
- *  2️⃣ Persistencia transaccional en BD (primero maestras, luego sets)
+ * Importa filas del CSV de LEGO procesándolas por bloques (chunks):
+ *  1️⃣ Validación y acumulación de un bloque de sets pendientes
+ *  2️⃣ Resolución por conjuntos de maestras (country/theme/age) e inserción del bloque,
+ *     con flush + clear del contexto de persistencia entre bloques
+ *
+ * Con {@link #importar(Stream)} todo ocurre dentro de una única transacción, pero la memoria
+ * usada queda acotada al tamaño del bloque más los mapas de maestras (pocas decenas de claves);
+ * {@link #importarReanudable(Path)} además confirma cada bloque y guarda un checkpoint.
+ * {@link #importarDelta(Stream, boolean)} compara contra lo ya importado (clave PROD_ID + país)
+ * y sólo escribe las filas nuevas o modificadas. {@link #importarPipeline(Stream, boolean)}
+ * reparte parseo, validación y escritura en etapas concurrentes conectadas por colas acotadas.
+ * {@link #importarArchivos(List, int)} importa varios CSV en paralelo, uno por hilo y transacción.
+ * Cada bloque se envía como lote JDBC (batch) del mismo tamaño y los ids salen de
+ * secuencias con asignación "pooled" (allocationSize = 50), sin ida a la BD por fila.
+ * Los agregados de los reportes ({@link LegoRollups}) se actualizan en la misma transacción.
+ * Las filas llegan como {@link MappedCsvRow} (primitivos con máscara de presencia y precio
+ * exacto): no hay boxing por campo entre el parser y la entidad.
+ * Las filas que no pasan la validación se cuentan por motivo en la telemetría y, con
+ * {@link #registrarRechazos}, se graban en un {@link RejectedRowSink}.
  *
  * Basado en la estructura del simulacro.
  */
 public class ImportService {
 
+    /** Filas por bloque: tamaño del lote JDBC y cada cuánto se vacía el contexto de persistencia. */
+    public static final int DEFAULT_CHUNK_SIZE = 1_000;
+
+    /** Lotes que entran en cada cola del pipeline antes de frenar a la etapa productora. */
+    public static final int PIPELINE_QUEUE_CAPACITY = 4;
+
+    private final int chunkSize;
+    private final List<Consumer<ImportResult>> listeners = new ArrayList<>();
+    private RejectedRowSink rechazos;
+
+    public ImportService() { this(DEFAULT_CHUNK_SIZE); }
+
+    public ImportService(int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize debe ser > 0");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Registra un callback que se ejecuta después de cada importación confirmada (en el hilo
+     * que importó), por ejemplo para refrescar cachés o el motor analítico.
+     */
+    public void alImportar(Consumer<ImportResult> listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    /**
+     * Graba en {@code sink} cada fila rechazada por la validación (con su línea y motivo), en
+     * todos los modos de importación; null deja de grabarlas. El servicio no cierra la salida.
+     */
+    public void registrarRechazos(RejectedRowSink sink) {
+        this.rechazos = sink;
+    }
+
+    /**
+     * Recalcula desde cero THEME_ROLLUP / COUNTRY_ROLLUP (los agregados de los reportes) sobre
+     * LEGO_SETS. Las importaciones los mantienen solas; quien escriba sets por otro medio
+     * (por ejemplo {@code LegoSetRepository}) tiene que llamarlo después.
+     */
+    public void reconstruirAgregados() {
+        EntityManager em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            LegoRollups.reconstruir(em);
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
     // ---------- Resultado de la importación ----------
     @Getter
     @Setter
@@ -32,104 +121,348 @@ public class ImportService {
         private int themesInsertados;
         private int ageGroupsInsertados;
         private int setsInsertados;
+        /** Importación delta: sets existentes cuyo contenido cambió (o que estaban dados de baja). */
+        private int setsActualizados;
+        /** Importación delta: sets existentes con el mismo hash de contenido (no se escriben). */
+        private int setsSinCambios;
+        /** Importación delta: sets que no vinieron en el archivo y se marcaron como baja. */
+        private int setsEliminados;
+        /** Importación delta: filas válidas con una clave PROD_ID + país ya vista en el archivo. */
+        private int filasDuplicadas;
+        /** Métricas por etapa y cola de {@code importarPipeline}; null en los otros modos. */
+        private PipelineStats pipeline;
+        /** Tiempos por fase, asignación, latencias de flush y rechazos por motivo. */
+        private ImportTelemetry telemetria;
+        /** Filas ya consumidas por corridas anteriores (0 si la importación empezó de cero). */
+        private long reanudadoDesdeFila;
+        /** Archivo importado, en los resultados por archivo de {@code importarArchivos}. */
+        private String archivo;
+        /** {@code importarArchivos}: un resultado por archivo, en el orden recibido; null en los otros modos. */
+        private List<ImportResult> porArchivo;
     }
 
-    // ---------- Método principal ----------
+    // ---------- Métodos principales ----------
+    /** Filas leídas con OpenCSV ({@code CsvLoader.read}): se adaptan con {@link MappedCsvRow#of}. */
     public ImportResult importar(List<CsvLegoRow> rows) {
         Objects.requireNonNull(rows, "rows");
+        return importar(rows.stream().map(MappedCsvRow::of));
+    }
 
-        Map<String, Country> countries = new LinkedHashMap<>();
-        Map<String, Theme> themes = new LinkedHashMap<>();
-        Map<String, AgeGroup> ages = new LinkedHashMap<>();
-        List<PendingSet> pendings = new ArrayList<>();
-
-        int validas = 0;
-
-        for (var r : rows) {
-            String themeName = trimOrNull(r.getThemeName());
-            String ageCode = trimOrNull(r.getAges());
-            String ctyCode = trimOrNull(r.getCountry());
-
-            if (isBlank(themeName) || isBlank(ageCode) || isBlank(ctyCode) || r.getProdId() == null)
-                continue;
-
-            validas++;
-
-            // Acumular maestras en memoria
-            themes.computeIfAbsent(themeName, n -> Theme.builder().name(n).build());
-            ages.computeIfAbsent(ageCode, c -> AgeGroup.builder().code(c).build());
-            countries.computeIfAbsent(ctyCode, c -> Country.builder().code(c).name(c).build());
-
-            // Buffer de sets pendientes
-            pendings.add(PendingSet.builder()
-                    .prodId(r.getProdId().intValue())
-                    .setName(nvl(r.getSetName(), "(sin nombre)"))
-                    .prodDesc(nvl(r.getProdDesc(), ""))
-                    .reviewDifficulty(trimOrNull(r.getReviewDifficulty()))
-                    .pieceCount(r.getPieceCount() != null ? r.getPieceCount().intValue() : null)
-                    .starRating(r.getStarRating())
-                    .listPrice(r.getListPrice() != null ? new java.math.BigDecimal(r.getListPrice()) : null)
-                    .theme(themeName)
-                    .ageGroup(ageCode)
-                    .country(ctyCode)
-                    .build());
-        }
-
-        // ---------- Persistencia ----------
-        int insCountries, insThemes, insAges, insSets;
-        EntityManager em = LocalEntityManagerProvider.em();
+    /**
+     * Consume las filas de a una (por ejemplo desde {@code CsvLoader.streamMapped}) sin retenerlas:
+     * sólo se guarda en memoria el bloque en curso. No cierra el Stream recibido.
+     */
+    public ImportResult importar(Stream<MappedCsvRow> rows) {
+        Objects.requireNonNull(rows, "rows");
+
+        EntityManager em = openEm();
+        var state = new ImportState(chunkSize, false, rechazos, null);
 
         try {
             em.getTransaction().begin();
+            consumir(em, rows.iterator(), state);
+            commit(em, state);
+
+        } catch (RuntimeException ex) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw ex;
+        } finally {
+            em.close();
+        }
+
+        return notificar(state.toResult().build());
+    }
+
+    /**
+     * Importación en pipeline: tres etapas concurrentes conectadas por colas acotadas
+     * ({@link #PIPELINE_QUEUE_CAPACITY} lotes de {@code chunkSize} filas cada una):
+     *  1️⃣ parseo: consume {@code rows} (el parseo ocurre al avanzar el Stream) y arma lotes
+     *  2️⃣ validación: normaliza las filas y junta las claves de maestras del lote
+     *  3️⃣ escritura: en el hilo llamador, resuelve maestras e inserta cada lote (una transacción)
+     * Cuando una cola se llena la etapa anterior se bloquea (backpressure). Con
+     * {@code hilosVirtuales} las etapas 1 y 2 corren en hilos virtuales si la JVM los tiene.
+     * El resultado incluye {@link PipelineStats} para ubicar el cuello de botella.
+     */
+    public ImportResult importarPipeline(Stream<MappedCsvRow> rows, boolean hilosVirtuales) {
+        Objects.requireNonNull(rows, "rows");
 
-            insCountries = persistMapValues(em, countries);
-            insThemes = persistMapValues(em, themes);
-            insAges = persistMapValues(em, ages);
-
-            // Reemplazar con entidades persistentes ya existentes
-            for (var entry : countries.entrySet()) {
-                var code = entry.getKey();
-                var existing = em.createQuery("SELECT c FROM Country c WHERE c.code = :code", Country.class)
-                        .setParameter("code", code)
-                        .getResultStream().findFirst().orElse(null);
-                if (existing != null) countries.put(code, existing);
-            }
-            for (var entry : themes.entrySet()) {
-                var name = entry.getKey();
-                var existing = em.createQuery("SELECT t FROM Theme t WHERE t.name = :name", Theme.class)
-                        .setParameter("name", name)
-                        .getResultStream().findFirst().orElse(null);
-                if (existing != null) themes.put(name, existing);
-            }
-            for (var entry : ages.entrySet()) {
-                var code = entry.getKey();
-                var existing = em.createQuery("SELECT a FROM AgeGroup a WHERE a.code = :code", AgeGroup.class)
-                        .setParameter("code", code)
-                        .getResultStream().findFirst().orElse(null);
-                if (existing != null) ages.put(code, existing);
-            }
-
-            // Insertar los sets usando entidades gestionadas
-            insSets = 0;
-            for (var p : pendings) {
-                var set = LegoSet.builder()
-                        .prodId(p.getProdId())
-                        .setName(p.getSetName())
-                        .prodDesc(p.getProdDesc())
-                        .reviewDifficulty(p.getReviewDifficulty())
-                        .pieceCount(p.getPieceCount())
-                        .starRating(p.getStarRating())
-                        .listPrice(p.getListPrice())
-                        .theme(themes.get(p.getTheme()))
-                        .ageGroup(ages.get(p.getAgeGroup()))
-                        .country(countries.get(p.getCountry()))
-                        .build();
-                em.persist(set);
-                insSets++;
+        EntityManager em = openEm();
+        var state = new ImportState(chunkSize, false, rechazos, null);
+        var hilos = hilosVirtuales ? ImportPipeline.hilosVirtuales() : ImportPipeline.hilosPlataforma();
+        PipelineStats stats;
+
+        try (var pipe = new ImportPipeline(hilos)) {
+            ImportPipeline.Canal<List<MappedCsvRow>> crudas = pipe.canal("parseo", PIPELINE_QUEUE_CAPACITY);
+            ImportPipeline.Canal<LoteValido> validas = pipe.canal("validación", PIPELINE_QUEUE_CAPACITY);
+            var parseo = pipe.medidor("parseo");
+            var validacion = pipe.medidor("validación");
+            var escritura = pipe.medidor("escritura");
+
+            var tel = state.tel;
+            pipe.iniciar(parseo, crudas, () -> {
+                var crono = tel.cronometro();
+                crono.iniciar();
+                List<MappedCsvRow> lote = new ArrayList<>(chunkSize);
+                for (Iterator<MappedCsvRow> it = rows.iterator(); it.hasNext(); ) {
+                    lote.add(it.next());
+                    if (lote.size() < chunkSize) continue;
+                    parseo.filas += lote.size();
+                    crono.cortar(Fase.PARSEO);
+                    crudas.put(lote, parseo);
+                    crono.iniciar();
+                    lote = new ArrayList<>(chunkSize);
+                }
+                parseo.filas += lote.size();
+                crono.cortar(Fase.PARSEO);
+                if (!lote.isEmpty()) crudas.put(lote, parseo);
+            });
+            pipe.iniciar(validacion, validas, () -> {
+                var crono = tel.cronometro();
+                for (List<MappedCsvRow> lote; (lote = crudas.take(validacion)) != null; ) {
+                    long primera = validacion.filas + 1;
+                    validacion.filas += lote.size();
+                    crono.iniciar();
+                    var valido = LoteValido.of(lote, primera, state);
+                    crono.cortar(Fase.VALIDACION);
+                    validas.put(valido, validacion);
+                }
+            });
+
+            escritura.iniciar();
+            em.getTransaction().begin();
+            for (LoteValido lote; (lote = validas.take(escritura)) != null; ) {
+                state.leidas += lote.leidas();
+                state.validas += lote.sets().size();
+                escritura.filas += lote.sets().size();
+                if (!lote.sets().isEmpty()) insertChunk(em, lote.sets(), lote.claves(), state);
             }
+            escritura.terminar();
+            pipe.verificar();
+            commit(em, state);
+            stats = pipe.stats();
 
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw new IllegalStateException("Importación interrumpida", ex);
+        } catch (RuntimeException ex) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw ex;
+        } finally {
+            em.close();
+        }
+
+        return notificar(state.toResult().pipeline(stats).build());
+    }
+
+    /**
+     * Importa varios CSV (por ejemplo, uno por región) en {@code hilos} hilos: cada archivo se
+     * parsea con {@code CsvLoader.streamMapped} y se escribe en su propia transacción.
+     * Las maestras pasan por un {@link DimensionRegistry} compartido, así que cada una se
+     * inserta una sola vez aunque aparezca en varios archivos. La escritura de los agregados
+     * de los reportes y el commit de cada archivo se serializan entre hilos (dos archivos
+     * pueden tocar la misma fila de THEME_ROLLUP / COUNTRY_ROLLUP); lo demás corre en paralelo.
+     *
+     * El resultado suma los de todos los archivos, con la telemetría de pared de toda la corrida
+     * (filas/s totales), y trae en {@code porArchivo} el resultado y las filas/s de cada uno.
+     * Si algún archivo falla se espera al resto y se lanza la excepción: los archivos ya
+     * confirmados (y las maestras registradas) quedan en la base.
+     */
+    public ImportResult importarArchivos(List<Path> archivos, int hilos) throws IOException {
+        Objects.requireNonNull(archivos, "archivos");
+        if (hilos <= 0) throw new IllegalArgumentException("hilos debe ser > 0");
+
+        var total = new ImportTelemetry();
+        var registro = new DimensionRegistry();
+        var commitLock = new Object();
+        List<ImportResult> resultados = new ArrayList<>(archivos.size());
+        RuntimeException error = null;
+
+        var pool = Executors.newFixedThreadPool(Math.min(hilos, Math.max(1, archivos.size())));
+        try {
+            List<Future<ImportResult>> tareas = new ArrayList<>(archivos.size());
+            for (var csv : archivos) {
+                tareas.add(pool.submit(() -> importarArchivo(csv, registro, commitLock)));
+            }
+            for (int i = 0; i < tareas.size(); i++) {
+                try {
+                    resultados.add(tareas.get(i).get());
+                } catch (ExecutionException ex) {
+                    var e = new IllegalStateException("Falló la importación de " + archivos.get(i), ex.getCause());
+                    if (error == null) error = e;
+                    else error.addSuppressed(e);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new IllegalStateException("Importación interrumpida", ex);
+        } finally {
+            pool.shutdown();
+        }
+        if (error != null) throw error;
+
+        int leidas = 0;
+        for (var r : resultados) {
+            leidas += r.getFilasLeidas();
+            total.acumular(r.getTelemetria());
+        }
+        return notificar(ImportResult.builder()
+                .filasLeidas(leidas)
+                .filasValidas(resultados.stream().mapToInt(ImportResult::getFilasValidas).sum())
+                .countriesInsertados(resultados.stream().mapToInt(ImportResult::getCountriesInsertados).sum())
+                .themesInsertados(resultados.stream().mapToInt(ImportResult::getThemesInsertados).sum())
+                .ageGroupsInsertados(resultados.stream().mapToInt(ImportResult::getAgeGroupsInsertados).sum())
+                .setsInsertados(resultados.stream().mapToInt(ImportResult::getSetsInsertados).sum())
+                .telemetria(total.finalizar(leidas))
+                .porArchivo(List.copyOf(resultados))
+                .build());
+    }
+
+    /** Un archivo de {@link #importarArchivos}: mismo recorrido que {@link #importar(Stream)}. */
+    private ImportResult importarArchivo(Path csv, DimensionRegistry registro, Object commitLock) throws IOException {
+        EntityManager em = openEm();
+        var state = new ImportState(chunkSize, false, registro, commitLock, rechazos, csv.toString());
+
+        try (var rows = CsvLoader.streamMapped(csv.toString())) {
+            em.getTransaction().begin();
+            consumir(em, rows.iterator(), state);
+            commit(em, state);
+
+        } catch (RuntimeException ex) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw ex;
+        } finally {
+            em.close();
+        }
+
+        return state.toResult().archivo(csv.toString()).build();
+    }
+
+    /**
+     * Importación incremental (delta) en una única transacción. Cada fila se identifica por
+     * PROD_ID + país y se compara por hash de contenido con lo que ya está en LEGO_SETS:
+     * las nuevas se insertan, las modificadas se actualizan y las iguales no se escriben.
+     * Los existentes de cada bloque se buscan con un {@code IN} por PROD_ID (no fila a fila),
+     * así el costo de escritura es proporcional a los cambios.
+     *
+     * Si la clave se repite dentro del archivo vale la primera aparición (las demás se cuentan
+     * en {@code filasDuplicadas}); si se repite en LEGO_SETS (la importación completa no filtra
+     * claves) se compara contra la fila de menor id y las otras quedan como están. Con
+     * {@code marcarBajas} los sets activos cuya clave no vino en el archivo se marcan DELETED
+     * (baja lógica): sólo tiene sentido con el catálogo completo.
+     */
+    public ImportResult importarDelta(Stream<MappedCsvRow> rows, boolean marcarBajas) {
+        Objects.requireNonNull(rows, "rows");
+
+        EntityManager em = openEm();
+        var state = new ImportState(chunkSize, true, rechazos, null);
+
+        try {
+            em.getTransaction().begin();
+            consumir(em, rows.iterator(), state);
+            if (marcarBajas) {
+                state.crono.iniciar();
+                marcarBajas(em, state);
+                state.crono.cortar(Fase.INSERCION);
+            }
+            commit(em, state);
+
+        } catch (RuntimeException ex) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw ex;
+        } finally {
+            em.close();
+        }
+
+        return notificar(state.toResult().build());
+    }
+
+    /**
+     * Importación reanudable de un archivo: confirma (commit) cada bloque junto con un
+     * checkpoint en IMPORT_CHECKPOINTS (offset en bytes, línea y filas consumidas).
+     * Si una corrida anterior del mismo archivo quedó a medias, continúa desde el último
+     * checkpoint; como el checkpoint se guarda en la misma transacción que los sets de su
+     * bloque, no se duplican filas de LEGO_SETS. El contexto de persistencia y la
+     * transacción abierta quedan acotados a un bloque.
+     *
+     * Si el archivo cambió (tamaño o fecha) respecto de un checkpoint incompleto, se rechaza
+     * la importación: lo ya confirmado corresponde a otro contenido. Un checkpoint completo del
+     * mismo archivo (base en archivo reutilizada) no importa nada; uno completo de otra versión
+     * del archivo también se rechaza, porque volver a insertar duplicaría los sets: para aplicar
+     * la versión nueva está {@link #importarDelta}. Lo mismo si la base en archivo ya estaba cargada
+     * y no hay checkpoint para esta ruta: el checkpoint se busca por ruta, así que el mismo CSV
+     * movido de lugar se importaría entero otra vez.
+     *
+     * Los checkpoints son offsets en el archivo, así que un CSV comprimido no se puede reanudar:
+     * se importa con {@link #importar(Stream)}.
+     */
+    public ImportResult importarReanudable(Path csv) throws IOException {
+        if (CompressedInput.comprimido(csv)) {
+            throw new IllegalArgumentException("El archivo " + csv + " está comprimido: la importación reanudable"
+                    + " necesita acceso al azar; importarlo con importar(CsvLoader.streamMapped(...)).");
+        }
+        var source = csv.toAbsolutePath().normalize().toString();
+        long fileSize = Files.size(csv);
+        long mtime = Files.getLastModifiedTime(csv).toMillis();
+
+        EntityManager em = openEm();
+        var state = new ImportState(chunkSize, false, rechazos, source);
+
+        try (var parser = MappedCsvParser.open(csv)) {
+            em.getTransaction().begin();
+            var cp = em.find(ImportCheckpoint.class, source);
+            boolean mismoArchivo = cp != null && cp.getFileSize() == fileSize && cp.getFileMtime() == mtime;
+            if (cp != null && !cp.getCompleted() && !mismoArchivo) {
+                throw new IllegalStateException("El archivo " + source + " cambió desde el checkpoint incompleto"
+                        + " de " + cp.getUpdatedAt() + "; descartar el checkpoint antes de reimportar.");
+            }
+            if (cp != null && cp.getCompleted() && !mismoArchivo) {
+                throw new IllegalStateException("Otra versión de " + source + " ya se importó completa el "
+                        + cp.getUpdatedAt() + "; aplicarla con importarDelta o recrear la base.");
+            }
+            if (cp != null && cp.getCompleted()) {
+                em.getTransaction().commit();
+                state.reanudadoDesdeFila = cp.getRowsRead();
+                return notificar(state.toResult().build());
+            }
+            if (cp == null && LocalEntityManagerProvider.esquemaReutilizado()) {
+                // El checkpoint se busca por ruta: el mismo CSV en otra ruta (o uno nuevo) sobre una
+                // base ya cargada volvería a insertar todos sus sets
+                throw new IllegalStateException("La base " + DatabaseInitializer.url() + " ya tiene datos importados"
+                        + " y no hay checkpoint de " + source + "; aplicarlo con importarDelta o recrear la base.");
+            }
+            if (cp == null) {
+                cp = ImportCheckpoint.builder().source(source).build();
+                cp.start(fileSize, mtime, parser.dataStart());
+                em.persist(cp);
+            } else {
+                state.reanudadoDesdeFila = cp.getRowsRead();
+            }
+            parser.seek(cp.getByteOffset(), fileSize, cp.getNextLine());
             em.getTransaction().commit();
 
+            var row = new MappedCsvRow();
+            var crono = state.crono;
+            em.getTransaction().begin();
+            crono.abrirLectura();
+            crono.iniciarLiviano();
+            while (parser.next(row)) {
+                crono.cortarLiviano(Fase.PARSEO);
+                if (add(em, row, state)) {
+                    crono.cerrarLectura();
+                    checkpoint(em, source, row, state, false);
+                    commit(em, state);
+                    em.getTransaction().begin();
+                    crono.abrirLectura();
+                }
+                crono.iniciarLiviano();
+            }
+            crono.cortarLiviano(Fase.PARSEO);
+            flushChunk(em, state);
+            checkpoint(em, source, row, state, true);
+            commit(em, state);
+
         } catch (RuntimeException ex) {
             if (em.getTransaction().isActive()) em.getTransaction().rollback();
             throw ex;
@@ -137,53 +470,347 @@ public class ImportService {
             em.close();
         }
 
-        return ImportResult.builder()
-                .filasLeidas(rows.size())
-                .filasValidas(validas)
-                .countriesInsertados(insCountries)
-                .themesInsertados(insThemes)
-                .ageGroupsInsertados(insAges)
-                .setsInsertados(insSets)
+        return notificar(state.toResult().build());
+    }
+
+    // ---------- Fases ----------
+
+    private ImportResult notificar(ImportResult result) {
+        for (var l : listeners) l.accept(result);
+        return result;
+    }
+
+    private EntityManager openEm() {
+        EntityManager em = LocalEntityManagerProvider.em();
+        em.unwrap(Session.class).setJdbcBatchSize(chunkSize);
+        return em;
+    }
+
+    /**
+     * Consume todas las filas de {@code it} y vacía el último bloque. El tiempo dentro del
+     * iterador (donde ocurre el parseo de los Streams de {@code CsvLoader}) se mide como PARSEO.
+     */
+    private static void consumir(EntityManager em, Iterator<MappedCsvRow> it, ImportState state) {
+        var crono = state.crono;
+        crono.abrirLectura();
+        while (true) {
+            crono.iniciarLiviano();
+            if (!it.hasNext()) break;
+            var r = it.next();
+            crono.cortarLiviano(Fase.PARSEO);
+            add(em, r, state);
+        }
+        crono.cortarLiviano(Fase.PARSEO);
+        flushChunk(em, state);
+    }
+
+    /**
+     * Escribe los deltas pendientes de los agregados de los reportes ({@link LegoRollups}) y
+     * confirma la transacción; si el bloque agregó maestras nuevas invalida las cachés de los
+     * repositorios de dimensiones ({@link DimensionCache}) y el índice de rangos de edad, recién
+     * cuando ya son visibles.
+     * Con {@code commitLock} (varios archivos en paralelo) agregados y commit van bajo ese lock.
+     */
+    private static void commit(EntityManager em, ImportState state) {
+        state.crono.iniciar();
+        if (state.commitLock == null) {
+            aplicarYConfirmar(em, state);
+        } else {
+            synchronized (state.commitLock) {
+                aplicarYConfirmar(em, state);
+            }
+        }
+        if (state.dims.getInsertadas() != state.dimsPublicadas) {
+            state.dimsPublicadas = state.dims.getInsertadas();
+            DimensionCache.invalidarTodas();
+            JpaAgeGroupRepository.invalidarIndice();
+        }
+    }
+
+    private static void aplicarYConfirmar(EntityManager em, ImportState state) {
+        state.agregados.aplicar(em);
+        state.crono.cortar(Fase.AGREGADOS);
+        em.getTransaction().commit();
+        state.crono.cortar(Fase.COMMIT);
+    }
+
+    /** Agrega una fila al bloque en curso; devuelve true si el bloque se completó y se insertó. */
+    private static boolean add(EntityManager em, MappedCsvRow r, ImportState state) {
+        state.leidas++;
+        var p = toPending(r, state.reanudadoDesdeFila + state.leidas, state);
+        state.crono.cortarLiviano(Fase.VALIDACION);
+        if (p == null) return false;
+
+        state.validas++;
+        state.chunk.add(p);
+        if (state.chunk.size() < state.chunkSize) return false;
+        flushChunk(em, state);
+        return true;
+    }
+
+    /** Inserta el bloque en curso (si hay) y reabre la ventana de lectura de la telemetría. */
+    private static void flushChunk(EntityManager em, ImportState state) {
+        state.crono.cerrarLectura();
+        if (state.rechazos != null) state.rechazos.vaciar();
+        if (!state.chunk.isEmpty()) {
+            var claves = DimKeys.of(state.chunk);
+            if (state.delta) upsertChunk(em, state.chunk, claves, state);
+            else insertChunk(em, state.chunk, claves, state);
+            state.chunk.clear();
+        }
+        state.crono.abrirLectura();
+    }
+
+    /**
+     * Avanza el checkpoint hasta el fin de {@code last} (la última fila consumida).
+     * Se consulta por id y sin caché: el contexto se vacía después de cada bloque.
+     */
+    private static void checkpoint(EntityManager em, String source, MappedCsvRow last, ImportState state, boolean completed) {
+        var cp = em.find(ImportCheckpoint.class, source);
+        if (state.leidas > 0) {
+            cp.setByteOffset(last.getEndOffset());
+            cp.setNextLine(last.getLineNumber() + 1);
+            cp.setRowsRead(state.reanudadoDesdeFila + state.leidas);
+        }
+        cp.setCompleted(completed);
+        cp.setUpdatedAt(LocalDateTime.now());
+    }
+
+    /**
+     * Valida y normaliza una fila; devuelve null si debe saltearse, después de contar el motivo
+     * y de anotarla (con {@code fila}, su número de fila de datos) para la salida de rechazos.
+     * En el pipeline corre en el hilo de validación, el único que usa {@code state.rechazos}.
+     * Los números pasan de la fila al PendingSet como primitivos; el precio, ya exacto.
+     */
+    private static PendingSet toPending(MappedCsvRow r, long fila, ImportState state) {
+        String themeName = recortar(r.getThemeName(), LegoColumn.THEME_NAME, state);
+        String ageCode = recortar(r.getAges(), LegoColumn.AGES, state);
+        String ctyCode = recortar(r.getCountry(), LegoColumn.COUNTRY, state);
+
+        MotivoRechazo motivo = isBlank(themeName) ? MotivoRechazo.THEME_VACIO
+                : isBlank(ageCode) ? MotivoRechazo.EDAD_VACIA
+                : isBlank(ctyCode) ? MotivoRechazo.PAIS_VACIO
+                : !r.isPresent(LegoColumn.PROD_ID) ? MotivoRechazo.PROD_ID_NULO
+                : null;
+        if (motivo != null) {
+            state.tel.rechazo(motivo);
+            if (state.rechazos != null) state.rechazos.registrar(r.getLineNumber(), fila, motivo, r);
+            return null;
+        }
+
+        var p = PendingSet.builder()
+                .prodId(r.getProdId())
+                .setName(nvl(r.getSetName(), "(sin nombre)"))
+                .prodDesc(nvl(r.getProdDesc(), ""))
+                .reviewDifficulty(recortar(r.getReviewDifficulty(), LegoColumn.REVIEW_DIFFICULTY, state))
+                .pieceCount(r.getPieceCount())
+                .starRating(r.getStarRating())
+                .nulos((r.isPresent(LegoColumn.PIECE_COUNT) ? 0 : PendingSet.SIN_PIEZAS)
+                        | (r.isPresent(LegoColumn.STAR_RATING) ? 0 : PendingSet.SIN_RATING))
+                .listPrice(r.getListPriceDecimal())
+                .theme(themeName)
+                .ageGroup(ageCode)
+                .country(ctyCode)
                 .build();
+        p.setRowHash(contentHash(p));
+        return p;
     }
 
-    // ---------- Helpers ----------
-    private static <T> int persistMapValues(EntityManager em, Map<String, T> map) {
-        int count = 0;
-        for (var e : map.entrySet()) {
-            var value = e.getValue();
-
-            // Evitar duplicados por código o nombre
-            if (value instanceof Country c) {
-                var exists = em.createQuery("SELECT COUNT(c) FROM Country c WHERE c.code = :code", Long.class)
-                        .setParameter("code", c.getCode())
-                        .getSingleResult();
-                if (exists > 0) continue;
-            }
-            if (value instanceof Theme t) {
-                var exists = em.createQuery("SELECT COUNT(t) FROM Theme t WHERE t.name = :name", Long.class)
-                        .setParameter("name", t.getName())
-                        .getSingleResult();
-                if (exists > 0) continue;
-            }
-            if (value instanceof AgeGroup a) {
-                var exists = em.createQuery("SELECT COUNT(a) FROM AgeGroup a WHERE a.code = :code", Long.class)
-                        .setParameter("code", a.getCode())
-                        .getSingleResult();
-                if (exists > 0) continue;
-            }
-
-            em.persist(value);
-            count++;
+    /**
+     * Hash FNV-1a de 64 bits de los campos que se guardan del set (sin la clave PROD_ID + país).
+     * Cada campo termina con un separador y los nulos tienen su propia marca.
+     */
+    private static long contentHash(PendingSet p) {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, p.getSetName());
+        h = mix(h, p.getProdDesc());
+        h = mix(h, p.getReviewDifficulty());
+        h = mix(h, p.pieceCountOrNull() == null ? null : Integer.toString(p.getPieceCount()));
+        h = mix(h, p.starRatingOrNull() == null ? null : Double.toString(p.getStarRating()));
+        h = mix(h, p.getListPrice() == null ? null : p.getListPrice().toPlainString());
+        h = mix(h, p.getTheme());
+        h = mix(h, p.getAgeGroup());
+        return h;
+    }
+
+    private static long mix(long h, String s) {
+        if (s == null) return (h ^ 0xFFFF) * 0x100000001b3L;
+        for (int i = 0; i < s.length(); i++) h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        return (h ^ 0x1F) * 0x100000001b3L;
+    }
+
+    /**
+     * Resuelve las maestras del bloque por conjuntos (ver {@link DimensionResolver}), inserta
+     * sus sets y vacía el contexto de persistencia. Las maestras quedan detached en los mapas,
+     * pero sólo se usan como referencia (FK).
+     */
+    private static void insertChunk(EntityManager em, List<PendingSet> chunk, DimKeys claves, ImportState state) {
+        var crono = state.crono;
+        crono.iniciar();
+        var dims = resolveDims(em, claves, state);
+        crono.cortar(Fase.DIMENSIONES);
+
+        for (var p : chunk) {
+            var set = toLegoSet(p, dims);
+            em.persist(set);
+            state.agregados.sumar(set, 1);
+            state.insSets++;
         }
+        crono.cortar(Fase.INSERCION);
+        flushAndClear(em, state);
+    }
+
+    /** Envía el lote JDBC pendiente y vacía el contexto; la latencia va al histograma. */
+    private static void flushAndClear(EntityManager em, ImportState state) {
         em.flush();
-        return count;
+        em.clear();
+        state.tel.registrarFlush(state.crono.cortar(Fase.FLUSH));
     }
 
+    /**
+     * Variante delta de {@link #insertChunk}: una consulta por cada {@code MAX_IN} PROD_ID del
+     * bloque trae id + hash de los existentes; después se insertan los nuevos y se cargan
+     * (también con IN) sólo los modificados para actualizarlos. Los iguales no generan escrituras.
+     */
+    private static void upsertChunk(EntityManager em, List<PendingSet> chunk, DimKeys claves, ImportState state) {
+        var crono = state.crono;
+        crono.iniciar();
+        var dims = resolveDims(em, claves, state);
+        crono.cortar(Fase.DIMENSIONES);
+
+        Set<Integer> prodIds = new HashSet<>();
+        for (var p : chunk) prodIds.add(p.getProdId());
+        Map<Long, Existente> existentes = new HashMap<>();
+        // filas repetidas de una misma clave (las deja la importación completa): vale la de menor id
+        Map<Long, List<Integer>> hermanos = new HashMap<>();
+        forEachPart(new ArrayList<>(prodIds), part -> {
+            for (Object[] r : em.createQuery("""
+                    SELECT s.id, s.prodId, s.country.id, s.rowHash, s.deleted
+                    FROM LegoSet s WHERE s.prodId IN :ids ORDER BY s.id
+                    """, Object[].class).setParameter("ids", part).getResultList()) {
+                long key = naturalKey((Integer) r[1], (Integer) r[2]);
+                if (existentes.putIfAbsent(key, new Existente((Integer) r[0], (Long) r[3], (Boolean) r[4])) != null) {
+                    hermanos.computeIfAbsent(key, k -> new ArrayList<>()).add((Integer) r[0]);
+                }
+            }
+        });
+
+        Map<Integer, PendingSet> cambios = new HashMap<>();
+        for (var p : chunk) {
+            long key = naturalKey(p.getProdId(), dims.country(p.getCountry()).getId());
+            var ex = existentes.get(key);
+            if (ex == null) {
+                var set = toLegoSet(p, dims);
+                em.persist(set);   // el id sale de la secuencia en el persist
+                existentes.put(key, new Existente(set.getId(), p.getRowHash(), false));
+                state.agregados.sumar(set, 1);
+                state.vistos.set(set.getId());
+                state.insSets++;
+            } else if (state.vistos.get(ex.id())) {
+                state.duplicadas++;
+            } else {
+                state.vistos.set(ex.id());
+                // la clave vino: sus filas repetidas no se dan de baja
+                for (int id : hermanos.getOrDefault(key, List.of())) state.vistos.set(id);
+                if (!ex.deleted() && ex.rowHash() != null && ex.rowHash() == p.getRowHash()) state.sinCambios++;
+                else cambios.put(ex.id(), p);
+            }
+        }
+
+        forEachPart(new ArrayList<>(cambios.keySet()), part -> {
+            for (var set : em.createQuery("SELECT s FROM LegoSet s WHERE s.id IN :ids", LegoSet.class)
+                    .setParameter("ids", part).getResultList()) {
+                var p = cambios.get(set.getId());
+                if (!set.getDeleted()) state.agregados.sumar(set, -1);   // sale con los valores anteriores
+                set.setSetName(p.getSetName());
+                set.setProdDesc(p.getProdDesc());
+                set.setReviewDifficulty(p.getReviewDifficulty());
+                set.setPieceCount(p.pieceCountOrNull());
+                set.setStarRating(p.starRatingOrNull());
+                set.setListPrice(p.getListPrice());
+                set.setTheme(dims.theme(p.getTheme()));
+                set.setAgeGroup(dims.ageGroup(p.getAgeGroup()));
+                set.setRowHash(p.getRowHash());
+                set.setDeleted(false);
+                state.agregados.sumar(set, 1);
+                state.updSets++;
+            }
+        });
+        crono.cortar(Fase.INSERCION);
+        flushAndClear(em, state);
+    }
+
+    /**
+     * Marca como baja los sets activos que no aparecieron en la corrida. Recorre sólo los ids
+     * (en streaming) y actualiza con {@code UPDATE ... WHERE id IN} de a {@code MAX_IN},
+     * restando antes cada parte de los agregados.
+     */
+    private static void marcarBajas(EntityManager em, ImportState state) {
+        List<Integer> bajas = new ArrayList<>();
+        try (Stream<Integer> ids = em.createQuery(
+                "SELECT s.id FROM LegoSet s WHERE s.deleted = false", Integer.class).getResultStream()) {
+            ids.filter(id -> !state.vistos.get(id)).forEach(bajas::add);
+        }
+        forEachPart(bajas, part -> {
+            for (Object[] r : em.createQuery("""
+                    SELECT s.theme.id, s.country.id, s.pieceCount, s.starRating, s.listPrice
+                    FROM LegoSet s WHERE s.id IN :ids
+                    """, Object[].class).setParameter("ids", part).getResultList()) {
+                state.agregados.sumar((Integer) r[0], (Integer) r[1], (Integer) r[2], (Double) r[3],
+                        (java.math.BigDecimal) r[4], -1);
+            }
+            state.eliminados += em.createQuery("UPDATE LegoSet s SET s.deleted = true WHERE s.id IN :ids")
+                    .setParameter("ids", part).executeUpdate();
+        });
+    }
+
+    private static DimensionResolver resolveDims(EntityManager em, DimKeys claves, ImportState state) {
+        state.dims.resolve(em, claves.countries(), claves.themes(), claves.ages());
+        return state.dims;
+    }
+
+    private static LegoSet toLegoSet(PendingSet p, DimensionResolver dims) {
+        return LegoSet.builder()
+                .prodId(p.getProdId())
+                .setName(p.getSetName())
+                .prodDesc(p.getProdDesc())
+                .reviewDifficulty(p.getReviewDifficulty())
+                .pieceCount(p.pieceCountOrNull())
+                .starRating(p.starRatingOrNull())
+                .listPrice(p.getListPrice())
+                .theme(dims.theme(p.getTheme()))
+                .ageGroup(dims.ageGroup(p.getAgeGroup()))
+                .country(dims.country(p.getCountry()))
+                .rowHash(p.getRowHash())
+                .build();
+    }
+
+    // ---------- Helpers ----------
     private static String trimOrNull(String s) {
         return (s == null) ? null : (s.trim().isEmpty() ? null : s.trim());
     }
 
+    /**
+     * {@link #trimOrNull} de una columna codificada. Los textos de las filas ya son instancias
+     * compartidas (ver {@code LegoDictionary}) y {@code trim} las devuelve tal cual; si recortó,
+     * el resultado pasa por el diccionario de la importación para que PendingSet no guarde una
+     * copia por fila.
+     */
+    private static String recortar(String s, LegoColumn c, ImportState state) {
+        String t = trimOrNull(s);
+        return t == s || t == null ? t : state.textos.columna(c).canonico(t);
+    }
+
+    private static long naturalKey(int prodId, int countryId) {
+        return ((long) prodId << 32) | (countryId & 0xFFFFFFFFL);
+    }
+
+    private static <T> void forEachPart(List<T> keys, Consumer<List<T>> action) {
+        for (int i = 0; i < keys.size(); i += DimensionResolver.MAX_IN) {
+            action.accept(keys.subList(i, Math.min(keys.size(), i + DimensionResolver.MAX_IN)));
+        }
+    }
+
     private static boolean isBlank(String s) {
         return s == null || s.isBlank();
     }
@@ -193,20 +820,117 @@ public class ImportService {
     }
 
     // ---------- Modelo temporal ----------
+
+    /** Estado de una corrida: bloque en curso, contadores y maestras ya resueltas (code → entidad). */
+    private static class ImportState {
+        final int chunkSize;
+        final boolean delta;
+        final List<PendingSet> chunk;
+        final DimensionResolver dims;
+        /** Lock de agregados + commit compartido entre archivos paralelos; null si la corrida es única. */
+        final Object commitLock;
+        /** Deltas de THEME_ROLLUP / COUNTRY_ROLLUP pendientes hasta el próximo commit. */
+        final LegoRollups agregados = new LegoRollups();
+        /** Maestras insertadas hasta el último commit que invalidó las cachés. */
+        int dimsPublicadas;
+        final ImportTelemetry tel = new ImportTelemetry();
+        /** Cronómetro del hilo que importa (en el pipeline, el de escritura). */
+        final ImportTelemetry.Cronometro crono = tel.cronometro();
+        /** Importación delta: ids de LEGO_SETS ya vistos en esta corrida (insertados o existentes). */
+        final BitSet vistos = new BitSet();
+        /** Instancias compartidas de los textos codificados que hubo que recortar. */
+        final LegoDictionary textos = new LegoDictionary();
+        /** Rechazos pendientes de pasar a la salida; null si no se graban. */
+        final RejectedRowSink.Tanda rechazos;
+        int leidas, validas, insSets, updSets, sinCambios, eliminados, duplicadas;
+        long reanudadoDesdeFila;
+
+        ImportState(int chunkSize, boolean delta, RejectedRowSink rechazos, String archivo) {
+            this(chunkSize, delta, null, null, rechazos, archivo);
+        }
+
+        ImportState(int chunkSize, boolean delta, DimensionRegistry registro, Object commitLock,
+                    RejectedRowSink rechazos, String archivo) {
+            this.chunkSize = chunkSize;
+            this.delta = delta;
+            this.chunk = new ArrayList<>(chunkSize);
+            this.dims = new DimensionResolver(registro);
+            this.commitLock = commitLock;
+            this.rechazos = rechazos == null ? null : rechazos.tanda(archivo);
+        }
+
+        ImportResult.ImportResultBuilder toResult() {
+            return ImportResult.builder()
+                    .filasLeidas(leidas)
+                    .filasValidas(validas)
+                    .countriesInsertados(dims.getInsCountries())
+                    .themesInsertados(dims.getInsThemes())
+                    .ageGroupsInsertados(dims.getInsAges())
+                    .setsInsertados(insSets)
+                    .setsActualizados(updSets)
+                    .setsSinCambios(sinCambios)
+                    .setsEliminados(eliminados)
+                    .filasDuplicadas(duplicadas)
+                    .telemetria(tel.finalizar(leidas))
+                    .reanudadoDesdeFila(reanudadoDesdeFila);
+        }
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
     @Builder
     private static class PendingSet {
-        private Integer prodId;
+        /** Bits de {@code nulos}: columnas opcionales que vinieron vacías. */
+        static final int SIN_PIEZAS = 1, SIN_RATING = 1 << 1;
+
+        private int prodId;
         private String setName;
         private String prodDesc;
         private String reviewDifficulty;
-        private Integer pieceCount;
-        private Double starRating;
+        private int pieceCount;
+        private double starRating;
+        private int nulos;
+        /** Exacto, tal como vino en el CSV; null si no vino. */
         private java.math.BigDecimal listPrice;
         private String theme;
         private String ageGroup;
         private String country;
+        private long rowHash;
+
+        /** piece_count para la entidad (el boxing queda en la frontera con JPA). */
+        Integer pieceCountOrNull() { return (nulos & SIN_PIEZAS) != 0 ? null : pieceCount; }
+
+        Double starRatingOrNull() { return (nulos & SIN_RATING) != 0 ? null : starRating; }
+    }
+
+    /** Claves de maestras que aparecen en un bloque. */
+    private record DimKeys(Set<String> countries, Set<String> themes, Set<String> ages) {
+        static DimKeys of(List<PendingSet> chunk) {
+            var k = new DimKeys(new HashSet<>(), new HashSet<>(), new HashSet<>());
+            for (var p : chunk) {
+                k.countries.add(p.getCountry());
+                k.themes.add(p.getTheme());
+                k.ages.add(p.getAgeGroup());
+            }
+            return k;
+        }
     }
+
+    /** Salida de la etapa de validación del pipeline: sets válidos del lote y sus claves. */
+    private record LoteValido(List<PendingSet> sets, int leidas, DimKeys claves) {
+        static LoteValido of(List<MappedCsvRow> rows, long primeraFila, ImportState state) {
+            List<PendingSet> sets = new ArrayList<>(rows.size());
+            long fila = primeraFila;
+            for (var r : rows) {
+                var p = toPending(r, fila++, state);
+                if (p != null) sets.add(p);
+            }
+            if (state.rechazos != null) state.rechazos.vaciar();
+            return new LoteValido(sets, rows.size(), DimKeys.of(sets));
+        }
+    }
+
+    /** Fila ya existente en LEGO_SETS para una clave PROD_ID + país. */
+    private record Existente(int id, Long rowHash, boolean deleted) {}
 }
@@ -0,0 +1,270 @@
+package utnfc.isi.back.sim.service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Telemetría de una corrida de {@link ImportService}: tiempo de pared, CPU y bytes asignados
+ * por fase, filas por segundo, histograma de latencias de flush y rechazos por motivo.
+ *
+ * Parseo y validación se intercalan fila a fila: se mide pared y asignación por fila
+ * (unos 100 ns), pero la CPU del hilo se lee una vez por bloque (cada lectura cuesta
+ * ~0,4 µs) y se reparte entre ambas en proporción a su tiempo de pared. En el pipeline
+ * cada etapa mide su propia CPU. Cada fase la actualiza un único hilo, y se lee al final
+ * de la corrida (después del join / de la última toma de las colas).
+ */
+public class ImportTelemetry {
+
+    public enum Fase { PARSEO, VALIDACION, DIMENSIONES, INSERCION, FLUSH, AGREGADOS, COMMIT }
+
+    /** Motivo por el que se saltea una fila; si hay varios se cuenta el primero (en este orden). */
+    public enum MotivoRechazo { THEME_VACIO, EDAD_VACIA, PAIS_VACIO, PROD_ID_NULO }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final boolean CPU = THREADS.isCurrentThreadCpuTimeSupported();
+    private static final boolean ALLOC = THREADS.isThreadAllocatedMemorySupported()
+            && THREADS.isThreadAllocatedMemoryEnabled();
+
+    private final long inicio = System.nanoTime();
+    private final long[] wall = new long[Fase.values().length];
+    private final long[] cpu = new long[Fase.values().length];
+    private final long[] bytes = new long[Fase.values().length];
+    private final long[] rechazos = new long[MotivoRechazo.values().length];
+    private final Histograma flush = new Histograma();
+    private long wallTotal = -1;
+    private long filas;
+
+    // ---------- Lectura de resultados ----------
+
+    public long getWallNanos(Fase f) { return wall[f.ordinal()]; }
+    public long getCpuNanos(Fase f) { return cpu[f.ordinal()]; }
+    public long getBytesAsignados(Fase f) { return bytes[f.ordinal()]; }
+    public long getRechazos(MotivoRechazo m) { return rechazos[m.ordinal()]; }
+    public Histograma getFlushLatencias() { return flush; }
+    public long getFilas() { return filas; }
+
+    /** Pared de toda la corrida (hasta que se armó el resultado). */
+    public long getWallTotalNanos() { return wallTotal >= 0 ? wallTotal : System.nanoTime() - inicio; }
+
+    public double filasPorSegundo() {
+        long w = getWallTotalNanos();
+        return w == 0 ? 0 : filas * 1e9 / w;
+    }
+
+    public long bytesAsignadosTotal() {
+        long t = 0;
+        for (long b : bytes) t += b;
+        return t;
+    }
+
+    /** Bytes asignados por segundo de pared (todas las fases). */
+    public double tasaAsignacion() {
+        long w = getWallTotalNanos();
+        return w == 0 ? 0 : bytesAsignadosTotal() * 1e9 / w;
+    }
+
+    // ---------- Registro (ImportService) ----------
+
+    Cronometro cronometro() { return new Cronometro(); }
+
+    void rechazo(MotivoRechazo m) { rechazos[m.ordinal()]++; }
+
+    ImportTelemetry finalizar(long filasLeidas) {
+        filas = filasLeidas;
+        wallTotal = System.nanoTime() - inicio;
+        return this;
+    }
+
+    /**
+     * Suma a esta telemetría las fases, rechazos y flushes de {@code otra} (una por archivo en
+     * la importación de varios archivos). La pared de cada fase queda sumada entre hilos;
+     * la pared total sigue siendo la de esta corrida.
+     */
+    void acumular(ImportTelemetry otra) {
+        for (int i = 0; i < wall.length; i++) {
+            wall[i] += otra.wall[i];
+            cpu[i] += otra.cpu[i];
+            bytes[i] += otra.bytes[i];
+        }
+        for (int i = 0; i < rechazos.length; i++) rechazos[i] += otra.rechazos[i];
+        flush.acumular(otra.flush);
+    }
+
+    private void sumar(Fase f, long dw, long dc, long da) {
+        int i = f.ordinal();
+        wall[i] += dw;
+        cpu[i] += dc;
+        bytes[i] += da;
+    }
+
+    private static long cpuAhora() { return CPU ? THREADS.getCurrentThreadCpuTime() : 0; }
+    private static long allocAhora() { return ALLOC ? THREADS.getCurrentThreadAllocatedBytes() : 0; }
+
+    /**
+     * Mide tramos consecutivos en un hilo: {@link #cortar} suma lo transcurrido desde la marca
+     * anterior a una fase y deja la marca en el instante actual. Las variantes "livianas" no
+     * leen la CPU (para la medición por fila); esa CPU se asigna con {@link #cerrarLectura()}.
+     */
+    final class Cronometro {
+        private long w, c, a;
+        private boolean lecturaAbierta;
+        private long lecCpu, lecParseo, lecValidacion;
+
+        private Cronometro() {}
+
+        void iniciar() {
+            w = System.nanoTime();
+            c = cpuAhora();
+            a = allocAhora();
+        }
+
+        /** Suma el tramo a {@code f}; devuelve su duración de pared en nanos. */
+        long cortar(Fase f) {
+            long w1 = System.nanoTime(), c1 = cpuAhora(), a1 = allocAhora();
+            long dw = w1 - w;
+            sumar(f, dw, c1 - c, a1 - a);
+            w = w1;
+            c = c1;
+            a = a1;
+            return dw;
+        }
+
+        void iniciarLiviano() {
+            w = System.nanoTime();
+            a = allocAhora();
+        }
+
+        void cortarLiviano(Fase f) {
+            long w1 = System.nanoTime(), a1 = allocAhora();
+            sumar(f, w1 - w, 0, a1 - a);
+            w = w1;
+            a = a1;
+        }
+
+        /** Empieza una ventana de parseo + validación fila a fila. */
+        void abrirLectura() {
+            if (lecturaAbierta) return;
+            lecturaAbierta = true;
+            lecCpu = cpuAhora();
+            lecParseo = wall[Fase.PARSEO.ordinal()];
+            lecValidacion = wall[Fase.VALIDACION.ordinal()];
+        }
+
+        /** Reparte la CPU de la ventana entre parseo y validación según su tiempo de pared. */
+        void cerrarLectura() {
+            if (!lecturaAbierta) return;
+            lecturaAbierta = false;
+            long dc = cpuAhora() - lecCpu;
+            long dp = wall[Fase.PARSEO.ordinal()] - lecParseo;
+            long dv = wall[Fase.VALIDACION.ordinal()] - lecValidacion;
+            if (dp + dv == 0) return;
+            long cp = Math.round((double) dc * dp / (dp + dv));
+            cpu[Fase.PARSEO.ordinal()] += cp;
+            cpu[Fase.VALIDACION.ordinal()] += dc - cp;
+        }
+    }
+
+    // ---------- Histograma ----------
+
+    /** Histograma de latencias en buckets de potencias de 2 microsegundos. */
+    public static class Histograma {
+        private final long[] buckets = new long[40];
+        private long cantidad, sumaNanos, maxNanos;
+
+        void registrar(long nanos) {
+            long us = Math.max(1, nanos / 1_000);
+            buckets[63 - Long.numberOfLeadingZeros(us)]++;
+            cantidad++;
+            sumaNanos += nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+        }
+
+        void acumular(Histograma otro) {
+            for (int i = 0; i < buckets.length; i++) buckets[i] += otro.buckets[i];
+            cantidad += otro.cantidad;
+            sumaNanos += otro.sumaNanos;
+            maxNanos = Math.max(maxNanos, otro.maxNanos);
+        }
+
+        public long getCantidad() { return cantidad; }
+        public long getMaxNanos() { return maxNanos; }
+        public double promedioMicros() { return cantidad == 0 ? 0 : sumaNanos / 1e3 / cantidad; }
+
+        /** Cota superior (en µs) del bucket donde cae el percentil {@code p} (0..100). */
+        public long percentilMicros(double p) {
+            if (cantidad == 0) return 0;
+            long objetivo = (long) Math.ceil(cantidad * p / 100.0);
+            long acumulado = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                acumulado += buckets[i];
+                if (acumulado >= objetivo) return Math.min(2L << i, Math.max(1, maxNanos / 1_000));
+            }
+            return maxNanos / 1_000;
+        }
+    }
+
+    void registrarFlush(long nanos) { flush.registrar(nanos); }
+
+    // ---------- Salida ----------
+
+    /** Una línea JSON (sin saltos) con todas las métricas, para dashboards. */
+    public String toJsonLine() {
+        var sb = new StringBuilder(512);
+        sb.append("{\"ts\":\"").append(Instant.now()).append('"');
+        sb.append(",\"filas\":").append(filas);
+        sb.append(",\"wallMs\":").append(getWallTotalNanos() / 1_000_000);
+        sb.append(",\"filasPorSegundo\":").append(Math.round(filasPorSegundo()));
+        sb.append(",\"bytesAsignados\":").append(bytesAsignadosTotal());
+        sb.append(",\"bytesPorSegundo\":").append(Math.round(tasaAsignacion()));
+        sb.append(",\"fases\":{");
+        for (Fase f : Fase.values()) {
+            if (f.ordinal() > 0) sb.append(',');
+            sb.append('"').append(f).append("\":{\"wallMs\":").append(wall[f.ordinal()] / 1_000_000)
+                    .append(",\"cpuMs\":").append(cpu[f.ordinal()] / 1_000_000)
+                    .append(",\"bytes\":").append(bytes[f.ordinal()]).append('}');
+        }
+        sb.append("},\"rechazos\":{");
+        for (MotivoRechazo m : MotivoRechazo.values()) {
+            if (m.ordinal() > 0) sb.append(',');
+            sb.append('"').append(m).append("\":").append(rechazos[m.ordinal()]);
+        }
+        sb.append("},\"flush\":{\"n\":").append(flush.cantidad)
+                .append(",\"p50Us\":").append(flush.percentilMicros(50))
+                .append(",\"p95Us\":").append(flush.percentilMicros(95))
+                .append(",\"p99Us\":").append(flush.percentilMicros(99))
+                .append(",\"maxUs\":").append(flush.maxNanos / 1_000).append("}}");
+        return sb.toString();
+    }
+
+    /** Agrega {@link #toJsonLine()} al final de {@code jsonl} (lo crea si no existe). */
+    public void exportarJsonl(Path jsonl) throws IOException {
+        Files.writeString(jsonl, toJsonLine() + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Telemetría: %d filas en %d ms (%.0f filas/s), %.1f MB asignados (%.1f MB/s)%n",
+                filas, getWallTotalNanos() / 1_000_000, filasPorSegundo(),
+                bytesAsignadosTotal() / 1e6, tasaAsignacion() / 1e6));
+        for (Fase f : Fase.values()) {
+            int i = f.ordinal();
+            sb.append(String.format(Locale.ROOT, "  %-12s pared %7d ms  cpu %7d ms  asignado %9.1f MB%n",
+                    f, wall[i] / 1_000_000, cpu[i] / 1_000_000, bytes[i] / 1e6));
+        }
+        sb.append(String.format(Locale.ROOT, "  flush: %d lotes, p50 %d µs, p95 %d µs, p99 %d µs, máx %d µs%n",
+                flush.cantidad, flush.percentilMicros(50), flush.percentilMicros(95),
+                flush.percentilMicros(99), flush.maxNanos / 1_000));
+        sb.append("  rechazos:");
+        for (MotivoRechazo m : MotivoRechazo.values()) sb.append(' ').append(m).append('=').append(rechazos[m.ordinal()]);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,227 @@
+package utnfc.isi.back.sim.service;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import utnfc.isi.back.sim.domain.LegoSet;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mantenimiento de los agregados THEME_ROLLUP (por temática) y COUNTRY_ROLLUP (por país)
+ * que leen los reportes de {@code JpaLegoSetRepository}.
+ *
+ * Durante una transacción de importación cada set insertado suma, cada set modificado resta
+ * sus valores anteriores y suma los nuevos, y cada baja resta; los deltas se acumulan en
+ * memoria por clave y {@link #aplicar} los escribe con un MERGE por clave justo antes del
+ * commit (y borra las claves que quedaron sin sets). Los valores se redondean como los guarda LEGO_SETS (STAR_RATING DECIMAL(3,1),
+ * LIST_PRICE DECIMAL(10,2)) para que el resultado coincida con {@link #reconstruir}.
+ * Los sets con STAR_RATING 0 no entran en el promedio precio / valoración.
+ *
+ * Sólo la importación los mantiene: al preparar el esquema {@code DatabaseInitializer} los
+ * reconstruye si no cuadran con LEGO_SETS ({@link #consistentes}), y quien escriba sets por
+ * otro medio tiene que llamar a {@code ImportService.reconstruirAgregados()}.
+ */
+public final class LegoRollups {
+
+    /** Escala con la que H2 divide DECIMAL(10,2) / DECIMAL(3,1) (LIST_PRICE / STAR_RATING). */
+    private static final int ESCALA_COCIENTE = 7;
+
+    private static final String MEDIDAS = "SETS, PIECED, SUM_PIECES, RATED, SUM_RATING, PRICED, SUM_PRICE_RATING";
+
+    private static final String SELECT_MEDIDAS = """
+            COUNT(*), COUNT(PIECE_COUNT), COALESCE(SUM(PIECE_COUNT), 0),
+            COUNT(STAR_RATING), COALESCE(SUM(STAR_RATING), 0),
+            COUNT(LIST_PRICE / NULLIF(STAR_RATING, 0)), COALESCE(SUM(LIST_PRICE / NULLIF(STAR_RATING, 0)), 0)
+            FROM LEGO_SETS WHERE DELETED = FALSE
+            """;
+
+    private static final String MERGE_TEMAS = merge("THEME_ROLLUP", "THEME_ID");
+    private static final String MERGE_PAISES = merge("COUNTRY_ROLLUP", "COUNTRY_ID");
+    private static final String BORRAR_TEMA = "DELETE FROM THEME_ROLLUP WHERE THEME_ID = ? AND SETS = 0";
+    private static final String BORRAR_PAIS = "DELETE FROM COUNTRY_ROLLUP WHERE COUNTRY_ID = ? AND SETS = 0";
+
+    private final Map<Integer, Acumulado> temas = new HashMap<>();
+    private final Map<Integer, Acumulado> paises = new HashMap<>();
+
+    /** Suma ({@code signo} = 1) o resta ({@code signo} = -1) un set a los deltas pendientes. */
+    void sumar(LegoSet s, int signo) {
+        sumar(s.getTheme().getId(), s.getCountry().getId(), s.getPieceCount(), s.getStarRating(),
+                s.getListPrice(), signo);
+    }
+
+    void sumar(int themeId, int countryId, Integer piezas, Double rating, BigDecimal precio, int signo) {
+        BigDecimal r = rating == null ? null : BigDecimal.valueOf(rating).setScale(1, RoundingMode.HALF_UP);
+        BigDecimal p = precio == null ? null : precio.setScale(2, RoundingMode.HALF_UP);
+        BigDecimal cociente = r == null || p == null || r.signum() == 0
+                ? null : p.divide(r, ESCALA_COCIENTE, RoundingMode.HALF_UP);
+
+        temas.computeIfAbsent(themeId, k -> new Acumulado()).sumar(piezas, r, cociente, signo);
+        paises.computeIfAbsent(countryId, k -> new Acumulado()).sumar(piezas, r, cociente, signo);
+    }
+
+    boolean isEmpty() {
+        return temas.isEmpty() && paises.isEmpty();
+    }
+
+    /**
+     * Escribe los deltas pendientes (un MERGE por clave, en un lote JDBC por tabla) en la
+     * transacción del EntityManager y los descarta. Hace flush antes: las filas nuevas de
+     * THEMES / COUNTRIES tienen que existir por las FK. Las claves que perdieron sets y
+     * quedaron en cero se borran, como si las hubiera calculado {@link #reconstruir}.
+     */
+    void aplicar(EntityManager em) {
+        if (isEmpty()) return;
+        em.flush();
+        em.unwrap(Session.class).doWork(cn -> {
+            try (PreparedStatement ps = cn.prepareStatement(MERGE_TEMAS);
+                 PreparedStatement borrar = cn.prepareStatement(BORRAR_TEMA)) {
+                boolean restas = false;
+                for (var e : temas.entrySet()) {
+                    ps.setInt(1, e.getKey());
+                    e.getValue().bind(ps, 2);
+                    ps.addBatch();
+                    if (e.getValue().sets < 0) {
+                        borrar.setInt(1, e.getKey());
+                        borrar.addBatch();
+                        restas = true;
+                    }
+                }
+                ps.executeBatch();
+                if (restas) borrar.executeBatch();
+            }
+            try (PreparedStatement ps = cn.prepareStatement(MERGE_PAISES);
+                 PreparedStatement borrar = cn.prepareStatement(BORRAR_PAIS)) {
+                boolean restas = false;
+                for (var e : paises.entrySet()) {
+                    ps.setInt(1, e.getKey());
+                    e.getValue().bind(ps, 2);
+                    ps.addBatch();
+                    if (e.getValue().sets < 0) {
+                        borrar.setInt(1, e.getKey());
+                        borrar.addBatch();
+                        restas = true;
+                    }
+                }
+                ps.executeBatch();
+                if (restas) borrar.executeBatch();
+            }
+        });
+        temas.clear();
+        paises.clear();
+    }
+
+    /** Recalcula los dos agregados desde cero sobre LEGO_SETS (por ejemplo, sobre una base ya cargada). */
+    static void reconstruir(EntityManager em) {
+        em.flush();
+        em.unwrap(Session.class).doWork(LegoRollups::reconstruir);
+    }
+
+    /** Como {@link #reconstruir(EntityManager)}, sobre una conexión JDBC (sin confirmar la transacción). */
+    public static void reconstruir(Connection cn) throws SQLException {
+        try (Statement st = cn.createStatement()) {
+            st.executeUpdate("DELETE FROM THEME_ROLLUP");
+            st.executeUpdate("DELETE FROM COUNTRY_ROLLUP");
+            st.executeUpdate("INSERT INTO THEME_ROLLUP (THEME_ID, " + MEDIDAS + ") "
+                    + "SELECT THEME_ID, " + SELECT_MEDIDAS + "GROUP BY THEME_ID");
+            st.executeUpdate("INSERT INTO COUNTRY_ROLLUP (COUNTRY_ID, " + MEDIDAS + ") "
+                    + "SELECT COUNTRY_ID, " + SELECT_MEDIDAS + "GROUP BY COUNTRY_ID");
+        }
+    }
+
+    /**
+     * Verificación barata (un recorrido de LEGO_SETS) de que los totales de cada agregado
+     * (sets, sets con piezas, piezas y suma de valoraciones) coinciden con los sets activos.
+     * Detecta altas, bajas y cambios de piezas o valoración hechos sin pasar por la importación;
+     * no, por ejemplo, un set movido de temática.
+     */
+    public static boolean consistentes(Connection cn) throws SQLException {
+        var sets = totales(cn, "SELECT COUNT(*), COUNT(PIECE_COUNT), SUM(PIECE_COUNT), SUM(STAR_RATING)"
+                + " FROM LEGO_SETS WHERE DELETED = FALSE");
+        return iguales(sets, totales(cn, "SELECT SUM(SETS), SUM(PIECED), SUM(SUM_PIECES), SUM(SUM_RATING) FROM THEME_ROLLUP"))
+                && iguales(sets, totales(cn, "SELECT SUM(SETS), SUM(PIECED), SUM(SUM_PIECES), SUM(SUM_RATING) FROM COUNTRY_ROLLUP"));
+    }
+
+    private static BigDecimal[] totales(Connection cn, String sql) throws SQLException {
+        try (Statement st = cn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            var v = new BigDecimal[rs.getMetaData().getColumnCount()];
+            for (int i = 0; i < v.length; i++) {
+                var d = rs.getBigDecimal(i + 1);
+                v[i] = d == null ? BigDecimal.ZERO : d;
+            }
+            return v;
+        }
+    }
+
+    private static boolean iguales(BigDecimal[] a, BigDecimal[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].compareTo(b[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    /** MERGE que suma a la fila de la clave (o la crea) los deltas pasados como parámetros. */
+    private static String merge(String tabla, String... clave) {
+        String[] medidas = MEDIDAS.split(", ");
+        String[] tipos = {"BIGINT", "BIGINT", "BIGINT", "BIGINT", "DECIMAL(20,1)", "BIGINT", "DECIMAL(38,16)"};
+        var valores = new StringBuilder();
+        var on = new StringBuilder();
+        var columnas = new StringBuilder();
+        for (String c : clave) {
+            valores.append(valores.length() > 0 ? ", " : "").append("CAST(? AS INTEGER)");
+            on.append(on.length() > 0 ? " AND " : "").append("r.").append(c).append(" = d.").append(c);
+            columnas.append(columnas.length() > 0 ? ", " : "").append(c);
+        }
+        var set = new StringBuilder();
+        for (int i = 0; i < medidas.length; i++) {
+            valores.append(", CAST(? AS ").append(tipos[i]).append(')');
+            set.append(i > 0 ? ", " : "").append(medidas[i]).append(" = r.").append(medidas[i])
+                    .append(" + d.").append(medidas[i]);
+            columnas.append(", ").append(medidas[i]);
+        }
+        return "MERGE INTO " + tabla + " r USING (VALUES (" + valores + ")) d(" + columnas + ") ON " + on
+                + " WHEN MATCHED THEN UPDATE SET " + set
+                + " WHEN NOT MATCHED THEN INSERT (" + columnas + ") VALUES (d."
+                + columnas.toString().replace(", ", ", d.") + ")";
+    }
+
+    /** Deltas de una clave. */
+    private static final class Acumulado {
+        long sets, pieced, sumPieces, rated, priced;
+        BigDecimal sumRating = BigDecimal.ZERO, sumPriceRating = BigDecimal.ZERO;
+
+        void sumar(Integer piezas, BigDecimal rating, BigDecimal cociente, int signo) {
+            sets += signo;
+            if (piezas != null) {
+                pieced += signo;
+                sumPieces += (long) signo * piezas;
+            }
+            if (rating != null) {
+                rated += signo;
+                sumRating = signo > 0 ? sumRating.add(rating) : sumRating.subtract(rating);
+            }
+            if (cociente != null) {
+                priced += signo;
+                sumPriceRating = signo > 0 ? sumPriceRating.add(cociente) : sumPriceRating.subtract(cociente);
+            }
+        }
+
+        void bind(PreparedStatement ps, int desde) throws SQLException {
+            ps.setLong(desde, sets);
+            ps.setLong(desde + 1, pieced);
+            ps.setLong(desde + 2, sumPieces);
+            ps.setLong(desde + 3, rated);
+            ps.setBigDecimal(desde + 4, sumRating);
+            ps.setLong(desde + 5, priced);
+            ps.setBigDecimal(desde + 6, sumPriceRating);
+        }
+    }
+}
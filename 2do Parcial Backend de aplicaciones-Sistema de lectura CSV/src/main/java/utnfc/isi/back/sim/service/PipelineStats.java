@@ -0,0 +1,70 @@
+package utnfc.isi.back.sim.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Métricas de una importación en pipeline ({@link ImportService#importarPipeline}):
+ * throughput de cada etapa y profundidad de las colas que las conectan.
+ *
+ * El throughput de una etapa se calcula sobre su tiempo ocupado (sin contar la espera en
+ * las colas), así que la de menor throughput es el cuello de botella. Una cola que se ve
+ * casi llena indica que la etapa consumidora no da abasto; casi vacía, que la productora.
+ */
+@Getter
+@AllArgsConstructor
+public class PipelineStats {
+
+    private final long wallNanos;
+    private final List<Etapa> etapas;
+    private final List<Cola> colas;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Etapa {
+        private final String nombre;
+        private final long filas;
+        private final long ocupadoNanos;
+        /** Tiempo bloqueado esperando la cola de entrada (vacía) o la de salida (llena). */
+        private final long esperaNanos;
+
+        public double filasPorSegundo() {
+            return ocupadoNanos == 0 ? 0 : filas * 1e9 / ocupadoNanos;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Cola {
+        private final String nombre;
+        /** Capacidad en lotes (cada lote son hasta {@code chunkSize} filas). */
+        private final int capacidad;
+        /** Profundidad vista por el consumidor en cada toma. */
+        private final double profundidadPromedio;
+        private final int profundidadMaxima;
+    }
+
+    public Etapa cuelloDeBotella() {
+        return etapas.stream().min(Comparator.comparingDouble(Etapa::filasPorSegundo)).orElse(null);
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        sb.append(String.format("Pipeline: %d ms%n", wallNanos / 1_000_000));
+        for (var e : etapas) {
+            sb.append(String.format("  etapa %-10s %10d filas %12.0f filas/s  ocupado %6d ms  espera %6d ms%n",
+                    e.nombre, e.filas, e.filasPorSegundo(), e.ocupadoNanos / 1_000_000, e.esperaNanos / 1_000_000));
+        }
+        for (var c : colas) {
+            sb.append(String.format("  cola  %-10s capacidad %d  profundidad promedio %.1f  máxima %d%n",
+                    c.nombre, c.capacidad, c.profundidadPromedio, c.profundidadMaxima));
+        }
+        var lenta = cuelloDeBotella();
+        if (lenta != null) sb.append("  cuello de botella: ").append(lenta.nombre);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,332 @@
+package utnfc.isi.back.sim.service;
+
+import utnfc.isi.back.sim.csv.LegoColumn;
+import utnfc.isi.back.sim.csv.MappedCsvRow;
+import utnfc.isi.back.sim.service.ImportTelemetry.MotivoRechazo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Salida de "letra muerta" de la importación: cada fila rechazada por la validación se graba
+ * con su archivo, línea física, número de fila, motivo y los valores tal como se leyeron, en
+ * CSV ({@code ;}, mismo orden de columnas que lego_sets_data.csv) o en JSON lines.
+ *
+ * El hilo que importa sólo junta el rechazo (con una copia de la fila, que el parser puede
+ * reutilizar) en una {@link Tanda} propia y la pasa a la cola cada {@value #TANDA} rechazos o al final de
+ * cada bloque: así no hay un pase entre hilos por fila. El formateo y la escritura, con un
+ * buffer de {@value #BUFFER} bytes, van en un hilo aparte. La cola es acotada
+ * ({@value #DEFAULT_CAPACITY} tandas): si el disco no da abasto el importador se frena en vez
+ * de acumular filas en memoria, y {@link #getEsperas()} cuenta esas veces.
+ * Los rechazos quedan grabados aunque la transacción de la importación se deshaga.
+ *
+ * No la cierra el {@link ImportService}: se puede usar en varias importaciones y se cierra
+ * al final (close espera a que se escriba todo y relanza el error de escritura, si hubo).
+ */
+public final class RejectedRowSink implements AutoCloseable {
+
+    public enum Formato { CSV, JSONL }
+
+    /** Tandas que entran en la cola antes de frenar al importador. */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private static final int BUFFER = 1 << 16;
+    private static final int TANDA = 256;
+
+    private static final String HEADER = "archivo;linea;fila;motivo;ages;list_price;num_reviews;piece_count;"
+            + "play_star_rating;prod_desc;prod_id;review_difficulty;set_name;star_rating;theme_name;"
+            + "val_star_rating;country";
+
+    /** Un rechazo encolado; {@code linea} es 0 si el origen no la conoce. */
+    private record Rechazo(String archivo, long linea, long fila, MotivoRechazo motivo, MappedCsvRow row) {}
+
+    private static final List<Rechazo> FIN = List.of();
+
+    private final Path destino;
+    private final Formato formato;
+    private final BlockingQueue<List<Rechazo>> cola;
+    private final Writer out;
+    private final Thread hilo;
+    private final AtomicLong esperas = new AtomicLong();
+    private volatile IOException error;
+    private volatile long escritos;
+    private volatile boolean cerrado;
+
+    /** Destino en JSON lines si termina en {@code .jsonl} o {@code .json}; si no, CSV. */
+    public static RejectedRowSink abrir(Path destino) throws IOException {
+        String nombre = destino.getFileName().toString().toLowerCase();
+        var formato = nombre.endsWith(".jsonl") || nombre.endsWith(".json") ? Formato.JSONL : Formato.CSV;
+        return new RejectedRowSink(destino, formato, DEFAULT_CAPACITY);
+    }
+
+    /** Crea (o sobreescribe) {@code destino} y arranca el hilo de escritura. */
+    public RejectedRowSink(Path destino, Formato formato, int capacidad) throws IOException {
+        if (capacidad <= 0) throw new IllegalArgumentException("capacidad debe ser > 0");
+        this.destino = destino;
+        this.formato = formato;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.out = new BufferedWriter(Files.newBufferedWriter(destino, StandardCharsets.UTF_8), BUFFER);
+        if (formato == Formato.CSV) {
+            out.write(HEADER);
+            out.write('\n');
+        }
+        this.hilo = new Thread(this::escribirCola, "rechazos-" + destino.getFileName());
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /** Acumulador de rechazos de un hilo; cada importación usa la suya. */
+    Tanda tanda(String archivo) {
+        return new Tanda(archivo);
+    }
+
+    /**
+     * Rechazos de un hilo que todavía no pasaron a la cola. No es thread-safe. Sólo se bloquea
+     * si la cola está llena; falla si la escritura ya dio error (para no seguir importando sin
+     * auditoría) o si la salida se cerró.
+     */
+    final class Tanda {
+        private final String archivo;
+        private List<Rechazo> pendientes = new ArrayList<>(TANDA);
+
+        private Tanda(String archivo) {
+            this.archivo = archivo;
+        }
+
+        void registrar(long linea, long fila, MotivoRechazo motivo, MappedCsvRow row) {
+            pendientes.add(new Rechazo(archivo, linea, fila, motivo, row.copy()));
+            if (pendientes.size() == TANDA) vaciar();
+        }
+
+        /** Pasa lo acumulado a la cola del hilo de escritura. */
+        void vaciar() {
+            if (pendientes.isEmpty()) return;
+            encolar(pendientes);
+            pendientes = new ArrayList<>(TANDA);
+        }
+    }
+
+    private void encolar(List<Rechazo> lote) {
+        verificar();
+        if (cola.offer(lote)) return;
+        esperas.incrementAndGet();
+        try {
+            while (!cola.offer(lote, 100, TimeUnit.MILLISECONDS)) verificar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando lugar en la cola de rechazos", e);
+        }
+    }
+
+    private void verificar() {
+        if (error != null) throw new UncheckedIOException("No se pudieron grabar los rechazos en " + destino, error);
+        if (cerrado) throw new IllegalStateException("La salida de rechazos " + destino + " está cerrada");
+    }
+
+    public Path getDestino() { return destino; }
+
+    /** Rechazos ya escritos (todos los de tandas vaciadas, después de {@link #close()}). */
+    public long getEscritos() { return escritos; }
+
+    /** Veces que el importador encontró la cola llena y tuvo que esperar. */
+    public long getEsperas() { return esperas.get(); }
+
+    @Override
+    public void close() throws IOException {
+        if (cerrado) return;
+        cerrado = true;
+        boolean interrumpido = false;
+        while (true) {
+            try {
+                cola.put(FIN);
+                hilo.join();
+                break;
+            } catch (InterruptedException e) {
+                interrumpido = true;   // hay que terminar igual: el archivo quedaría a medias
+            }
+        }
+        if (interrumpido) Thread.currentThread().interrupt();
+        if (error != null) throw error;
+    }
+
+    /** Hilo de escritura: después de un error sigue vaciando la cola (descartando) hasta el FIN. */
+    private void escribirCola() {
+        var sb = new StringBuilder(512);
+        long n = 0;
+        try {
+            for (List<Rechazo> lote; (lote = cola.take()) != FIN; ) {
+                if (error != null) continue;
+                for (var r : lote) {
+                    sb.setLength(0);
+                    if (formato == Formato.CSV) csv(sb, r);
+                    else json(sb, r);
+                    sb.append('\n');
+                    try {
+                        out.append(sb);
+                    } catch (IOException e) {
+                        error = e;
+                        break;
+                    }
+                    n++;
+                }
+                escritos = n;
+            }
+            cerrarSalida();
+        } catch (InterruptedException e) {
+            error = new IOException("Hilo de rechazos interrumpido", e);
+            cerrarSalida();
+        }
+    }
+
+    private void cerrarSalida() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (error == null) error = e;
+        }
+    }
+
+    // ---------- Formatos ----------
+
+    private static void csv(StringBuilder sb, Rechazo r) {
+        var f = r.row();
+        texto(sb, r.archivo()).append(';');
+        if (r.linea() > 0) sb.append(r.linea());
+        sb.append(';').append(r.fila()).append(';').append(r.motivo()).append(';');
+        texto(sb, f.getAges()).append(';');
+        numero(sb, f, LegoColumn.LIST_PRICE).append(';');
+        numero(sb, f, LegoColumn.NUM_REVIEWS).append(';');
+        numero(sb, f, LegoColumn.PIECE_COUNT).append(';');
+        numero(sb, f, LegoColumn.PLAY_STAR_RATING).append(';');
+        texto(sb, f.getProdDesc()).append(';');
+        numero(sb, f, LegoColumn.PROD_ID).append(';');
+        texto(sb, f.getReviewDifficulty()).append(';');
+        texto(sb, f.getSetName()).append(';');
+        numero(sb, f, LegoColumn.STAR_RATING).append(';');
+        texto(sb, f.getThemeName()).append(';');
+        numero(sb, f, LegoColumn.VAL_STAR_RATING).append(';');
+        texto(sb, f.getCountry());
+    }
+
+    /** Campo CSV: entre comillas (duplicadas adentro) sólo si tiene separador, comillas o saltos. */
+    private static StringBuilder texto(StringBuilder sb, String s) {
+        if (s == null) return sb;
+        boolean comillas = false;
+        for (int i = 0; i < s.length() && !comillas; i++) {
+            char c = s.charAt(i);
+            comillas = c == ';' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) return sb.append(s);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') sb.append('"');
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+
+    /** Columna numérica de la fila; nada si está ausente. El precio sale exacto, como se leyó. */
+    private static StringBuilder numero(StringBuilder sb, MappedCsvRow f, LegoColumn c) {
+        if (!f.isPresent(c)) return sb;
+        return switch (c) {
+            case LIST_PRICE -> sb.append(f.getListPriceDecimal().toPlainString());
+            case NUM_REVIEWS -> sb.append(f.getNumReviews());
+            case PIECE_COUNT -> sb.append(f.getPieceCount());
+            case PROD_ID -> sb.append(f.getProdId());
+            case PLAY_STAR_RATING -> decimal(sb, f.getPlayStarRating());
+            case STAR_RATING -> decimal(sb, f.getStarRating());
+            case VAL_STAR_RATING -> decimal(sb, f.getValStarRating());
+            default -> throw new IllegalArgumentException("La columna " + c + " no es numérica");
+        };
+    }
+
+    private static StringBuilder decimal(StringBuilder sb, double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) return sb.append(d);
+        return sb.append(BigDecimal.valueOf(d).toPlainString());
+    }
+
+    private static void json(StringBuilder sb, Rechazo r) {
+        var f = r.row();
+        sb.append("{\"archivo\":");
+        jsonTexto(sb, r.archivo());
+        sb.append(",\"linea\":");
+        if (r.linea() > 0) sb.append(r.linea());
+        else sb.append("null");
+        sb.append(",\"fila\":").append(r.fila());
+        sb.append(",\"motivo\":\"").append(r.motivo()).append('"');
+        sb.append(",\"valores\":{\"ages\":");
+        jsonTexto(sb, f.getAges());
+        sb.append(",\"list_price\":");
+        jsonNumero(sb, f, LegoColumn.LIST_PRICE);
+        sb.append(",\"num_reviews\":");
+        jsonNumero(sb, f, LegoColumn.NUM_REVIEWS);
+        sb.append(",\"piece_count\":");
+        jsonNumero(sb, f, LegoColumn.PIECE_COUNT);
+        sb.append(",\"play_star_rating\":");
+        jsonNumero(sb, f, LegoColumn.PLAY_STAR_RATING);
+        sb.append(",\"prod_desc\":");
+        jsonTexto(sb, f.getProdDesc());
+        sb.append(",\"prod_id\":");
+        jsonNumero(sb, f, LegoColumn.PROD_ID);
+        sb.append(",\"review_difficulty\":");
+        jsonTexto(sb, f.getReviewDifficulty());
+        sb.append(",\"set_name\":");
+        jsonTexto(sb, f.getSetName());
+        sb.append(",\"star_rating\":");
+        jsonNumero(sb, f, LegoColumn.STAR_RATING);
+        sb.append(",\"theme_name\":");
+        jsonTexto(sb, f.getThemeName());
+        sb.append(",\"val_star_rating\":");
+        jsonNumero(sb, f, LegoColumn.VAL_STAR_RATING);
+        sb.append(",\"country\":");
+        jsonTexto(sb, f.getCountry());
+        sb.append("}}");
+    }
+
+    private static void jsonTexto(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void jsonNumero(StringBuilder sb, MappedCsvRow f, LegoColumn c) {
+        boolean nulo = !f.isPresent(c) || switch (c) {
+            case PLAY_STAR_RATING -> !Double.isFinite(f.getPlayStarRating());
+            case STAR_RATING -> !Double.isFinite(f.getStarRating());
+            case VAL_STAR_RATING -> !Double.isFinite(f.getValStarRating());
+            default -> false;
+        };
+        if (nulo) sb.append("null");
+        else numero(sb, f, c);
+    }
+}
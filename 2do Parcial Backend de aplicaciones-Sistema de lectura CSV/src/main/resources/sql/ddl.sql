@@ -7,6 +7,10 @@
 -- ---------------------------------------------------------------------
 -- Cleanup (idempotent)
 -- ---------------------------------------------------------------------
+DROP TABLE IF EXISTS SCHEMA_VERSION;
+DROP TABLE IF EXISTS IMPORT_CHECKPOINTS;
+DROP TABLE IF EXISTS THEME_ROLLUP;
+DROP TABLE IF EXISTS COUNTRY_ROLLUP;
 DROP TABLE IF EXISTS LEGO_SETS;
 DROP TABLE IF EXISTS THEMES;
 DROP TABLE IF EXISTS AGE_GROUPS;
@@ -19,11 +23,13 @@ DROP SEQUENCE IF EXISTS SEQ_COUNTRY_ID;
 
 -- ---------------------------------------------------------------------
 -- Sequences (auto-increment strategy)
+-- INCREMENT BY must match allocationSize in the JPA entities (Hibernate
+-- "pooled" optimizer: one sequence call reserves 50 ids).
 -- ---------------------------------------------------------------------
-CREATE SEQUENCE IF NOT EXISTS SEQ_LEGO_SET_ID   START WITH 1 INCREMENT BY 1;
-CREATE SEQUENCE IF NOT EXISTS SEQ_THEME_ID      START WITH 1 INCREMENT BY 1;
-CREATE SEQUENCE IF NOT EXISTS SEQ_AGE_GROUP_ID  START WITH 1 INCREMENT BY 1;
-CREATE SEQUENCE IF NOT EXISTS SEQ_COUNTRY_ID    START WITH 1 INCREMENT BY 1;
+CREATE SEQUENCE IF NOT EXISTS SEQ_LEGO_SET_ID   START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS SEQ_THEME_ID      START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS SEQ_AGE_GROUP_ID  START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS SEQ_COUNTRY_ID    START WITH 1 INCREMENT BY 50;
 
 -- ---------------------------------------------------------------------
 -- Table: COUNTRIES
@@ -76,7 +82,8 @@ CREATE TABLE THEMES (
 
 -- ---------------------------------------------------------------------
 -- Table: AGE_GROUPS (catalog of age ranges)
--- CODE = dataset literal (e.g., '6-12', '12')
+-- CODE = dataset literal (e.g., '6-12', '12'); the age range is parsed
+-- from CODE in memory (AgeRangeIndex), it is not stored
 -- ---------------------------------------------------------------------
 CREATE TABLE AGE_GROUPS (
     ID_AGE_GROUP  INTEGER      NOT NULL DEFAULT NEXT VALUE FOR SEQ_AGE_GROUP_ID,
@@ -89,6 +96,7 @@ CREATE TABLE AGE_GROUPS (
 -- Table: LEGO_SETS (normalized destination)
 -- * Surrogate PK ID_SET
 -- * FKs to THEMES, AGE_GROUPS, COUNTRIES
+-- * ROW_HASH: content hash of the source row, DELETED: tombstone (delta import)
 -- ---------------------------------------------------------------------
 CREATE TABLE LEGO_SETS (
     ID_SET            INTEGER       NOT NULL DEFAULT NEXT VALUE FOR SEQ_LEGO_SET_ID,
@@ -102,6 +110,8 @@ CREATE TABLE LEGO_SETS (
     THEME_ID          INTEGER       NOT NULL,
     AGE_GROUP_ID      INTEGER       NOT NULL,
     COUNTRY_ID        INTEGER       NOT NULL,
+    ROW_HASH          BIGINT,
+    DELETED           BOOLEAN       DEFAULT FALSE NOT NULL,
     CONSTRAINT PK_LEGO_SET PRIMARY KEY (ID_SET),
     CONSTRAINT CK_STAR_RATING CHECK (STAR_RATING IS NULL OR (STAR_RATING >= 0 AND STAR_RATING <= 5)),
     CONSTRAINT FK_LEGOSET_THEME     FOREIGN KEY (THEME_ID)     REFERENCES THEMES(ID_THEME),
@@ -115,6 +125,73 @@ CREATE INDEX IF NOT EXISTS IX_LEGOSET_AGEGROUP ON LEGO_SETS (AGE_GROUP_ID);
 CREATE INDEX IF NOT EXISTS IX_LEGOSET_COUNTRY  ON LEGO_SETS (COUNTRY_ID);
 CREATE INDEX IF NOT EXISTS IX_LEGOSET_PRICE    ON LEGO_SETS (LIST_PRICE);
 CREATE INDEX IF NOT EXISTS IX_LEGOSET_PIECES   ON LEGO_SETS (PIECE_COUNT);
+-- Age/price/rating search: sets of the matching age groups, filtered by rating and price
+CREATE INDEX IF NOT EXISTS IX_LEGOSET_AGE_RATING_PRICE ON LEGO_SETS (AGE_GROUP_ID, STAR_RATING, LIST_PRICE);
+-- Natural key of the delta import (PROD_ID + country)
+CREATE INDEX IF NOT EXISTS IX_LEGOSET_PROD_COUNTRY ON LEGO_SETS (PROD_ID, COUNTRY_ID);
+
+-- ---------------------------------------------------------------------
+-- Rollup tables for the reports, maintained incrementally by the import
+-- (only active sets), one row per theme / per country. PIECED / SUM_PIECES
+-- cover the sets with PIECE_COUNT, RATED / SUM_RATING the sets with
+-- STAR_RATING, PRICED / SUM_PRICE_RATING the sets with both LIST_PRICE and
+-- a non-zero STAR_RATING (sum of LIST_PRICE / STAR_RATING).
+-- The "at least N pieces" ranking does not fit a per-theme row: it reads
+-- LEGO_SETS through IX_LEGOSET_PIECES.
+-- ---------------------------------------------------------------------
+CREATE TABLE THEME_ROLLUP (
+    THEME_ID          INTEGER        NOT NULL,
+    SETS              BIGINT         NOT NULL,
+    PIECED            BIGINT         NOT NULL,
+    SUM_PIECES        BIGINT         NOT NULL,
+    RATED             BIGINT         NOT NULL,
+    SUM_RATING        DECIMAL(20,1)  NOT NULL,
+    PRICED            BIGINT         NOT NULL,
+    SUM_PRICE_RATING  DECIMAL(38,16) NOT NULL,
+    CONSTRAINT PK_THEME_ROLLUP PRIMARY KEY (THEME_ID),
+    CONSTRAINT FK_THEME_ROLLUP_THEME FOREIGN KEY (THEME_ID) REFERENCES THEMES(ID_THEME)
+);
+
+CREATE TABLE COUNTRY_ROLLUP (
+    COUNTRY_ID        INTEGER        NOT NULL,
+    SETS              BIGINT         NOT NULL,
+    PIECED            BIGINT         NOT NULL,
+    SUM_PIECES        BIGINT         NOT NULL,
+    RATED             BIGINT         NOT NULL,
+    SUM_RATING        DECIMAL(20,1)  NOT NULL,
+    PRICED            BIGINT         NOT NULL,
+    SUM_PRICE_RATING  DECIMAL(38,16) NOT NULL,
+    CONSTRAINT PK_COUNTRY_ROLLUP PRIMARY KEY (COUNTRY_ID),
+    CONSTRAINT FK_COUNTRY_ROLLUP_COUNTRY FOREIGN KEY (COUNTRY_ID) REFERENCES COUNTRIES(ID_COUNTRY)
+);
+
+-- ---------------------------------------------------------------------
+-- Table: IMPORT_CHECKPOINTS (progress of resumable imports)
+-- One row per source file; BYTE_OFFSET/NEXT_LINE point to the next record
+-- to read and are committed together with the sets of each chunk.
+-- ---------------------------------------------------------------------
+CREATE TABLE IMPORT_CHECKPOINTS (
+    SOURCE       VARCHAR(1024) NOT NULL,
+    FILE_SIZE    BIGINT        NOT NULL,
+    FILE_MTIME   BIGINT        NOT NULL,
+    BYTE_OFFSET  BIGINT        NOT NULL,
+    NEXT_LINE    BIGINT        NOT NULL,
+    ROWS_READ    BIGINT        NOT NULL,
+    COMPLETED    BOOLEAN       NOT NULL,
+    UPDATED_AT   TIMESTAMP,
+    CONSTRAINT PK_IMPORT_CHECKPOINTS PRIMARY KEY (SOURCE)
+);
+
+-- ---------------------------------------------------------------------
+-- Table: SCHEMA_VERSION (version of this DDL)
+-- Written last, so a file database interrupted halfway through the script
+-- has no version and is recreated. Must match DatabaseInitializer.SCHEMA_VERSION;
+-- bump both whenever this file changes.
+-- ---------------------------------------------------------------------
+CREATE TABLE SCHEMA_VERSION (
+    VERSION  INTEGER NOT NULL
+);
+INSERT INTO SCHEMA_VERSION (VERSION) VALUES (3);
 
 -- =====================================================================
 -- End of DDL
@@ -0,0 +1,93 @@
+package utnfc.isi.back.sim.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.repository.DimensionCache;
+import utnfc.isi.back.sim.repository.JpaAgeGroupRepository;
+import utnfc.isi.back.sim.repository.JpaLegoSetRepository;
+import utnfc.isi.back.sim.service.ImportService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link LegoAnalyticsEngine} contra los reportes de {@link JpaLegoSetRepository} sobre la misma base:
+ * mismos grupos, mismo orden y mismas métricas, también con valoración 0 y grupos que sólo
+ * aparecen en sets dados de baja.
+ */
+class LegoAnalyticsEngineTest {
+
+    private static final String HEADER = "ages;list_price;num_reviews;piece_count;play_star_rating;prod_desc;prod_id;"
+            + "review_difficulty;set_name;star_rating;theme_name;val_star_rating;country\n";
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void init() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            for (var tabla : new String[]{"THEME_ROLLUP", "COUNTRY_ROLLUP", "IMPORT_CHECKPOINTS",
+                    "LEGO_SETS", "THEMES", "AGE_GROUPS"}) {
+                em.createNativeQuery("DELETE FROM " + tabla).executeUpdate();
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        DimensionCache.invalidarTodas();
+        JpaAgeGroupRepository.invalidarIndice();
+    }
+
+    @Test
+    void mismosResultadosQueLosReportesSql() throws IOException {
+        var sb = new StringBuilder(HEADER);
+        String[] paises = {"US", "CA", "GB", "DE"};
+        for (int i = 0; i < 3_000; i++) {
+            // rating 0 cada 7 filas: no entra en precio / valoración
+            String rating = i % 11 == 0 ? "" : i % 7 == 0 ? "0" : Double.toString(1 + i % 5 * 0.5);
+            sb.append(String.join(";", (5 + i % 6) + "+", (10 + i % 90) + ".99", "1",
+                    i % 13 == 0 ? "" : Integer.toString(50 + i % 400), "4", "Desc " + i,
+                    Integer.toString(10_000 + i), "Easy", "Set " + i, rating, "Theme " + i % 17, "4",
+                    paises[i % paises.length])).append('\n');
+        }
+        // un país cuyos únicos sets tienen rating 0: sin el filtro su promedio sería Infinity
+        sb.append("6+;20.00;1;100;4;Cero;99999;Easy;Cero;0;Theme 1;4;NZ\n");
+
+        var engine = new LegoAnalyticsEngine();
+        var svc = new ImportService();
+        svc.alImportar(r -> engine.refrescar());
+        try (var rows = CsvLoader.streamMapped(Files.writeString(dir.resolve("lego.csv"), sb,
+                StandardCharsets.UTF_8).toString())) {
+            svc.importar(rows);
+        }
+        assertEquals(3_001, engine.filas());
+
+        try (var repo = new JpaLegoSetRepository()) {
+            var paisesMotor = engine.rankingPaisesPorCostoValoracion();
+            assertTrue(paisesMotor.stream().noneMatch(r -> r[0].equals("NZ")));
+            assertTrue(paisesMotor.stream().allMatch(r -> Double.isFinite((Double) r[1])));
+            assertIguales(repo.rankingPaisesPorCostoValoracion(), paisesMotor);
+            assertIguales(repo.top5ThemesPorPiezas(), engine.top5ThemesPorPiezas());
+            assertIguales(repo.countriesConMasDeN(100), engine.countriesConMasDeN(100));
+            assertIguales(repo.rankingThemesPorRatingPromedio(200), engine.rankingThemesPorRatingPromedio(200));
+        }
+    }
+
+    private static void assertIguales(List<Object[]> esperado, List<Object[]> real) {
+        assertEquals(esperado.stream().map(r -> r[0]).toList(), real.stream().map(r -> r[0]).toList());
+        for (int i = 0; i < esperado.size(); i++) {
+            assertEquals(((Number) esperado.get(i)[1]).doubleValue(), ((Number) real.get(i)[1]).doubleValue(), 1e-9,
+                    "métrica de " + esperado.get(i)[0]);
+        }
+    }
+}
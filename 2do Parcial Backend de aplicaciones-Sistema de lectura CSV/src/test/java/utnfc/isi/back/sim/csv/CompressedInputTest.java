@@ -0,0 +1,112 @@
+package utnfc.isi.back.sim.csv;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CompressedInput}: detección por contenido, descompresión con y sin hilo aparte,
+ * errores del hilo productor relanzados en el lector y {@code close()} con el productor
+ * bloqueado en la cola.
+ */
+class CompressedInputTest {
+
+    @TempDir
+    Path dir;
+
+    /** Más bloques de los que entran en la cola, para que el productor se bloquee. */
+    private static final byte[] DATOS = datos((CompressedInput.BLOQUES_EN_COLA + 3) * CompressedInput.BLOQUE + 123);
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void gzipYZstdSeDetectanPorContenidoYSeDescomprimen(boolean hiloAparte) throws IOException {
+        var gz = comprimir("datos.zst", DATOS, GZIPOutputStream::new);
+        var zst = comprimir("datos.gz", DATOS, ZstdOutputStream::new);
+        var plano = Files.write(dir.resolve("datos.gz.csv"), DATOS);
+
+        assertEquals(CompressedInput.Formato.GZIP, CompressedInput.detectar(gz));
+        assertEquals(CompressedInput.Formato.ZSTD, CompressedInput.detectar(zst));
+        assertEquals(CompressedInput.Formato.NINGUNO, CompressedInput.detectar(plano));
+        assertEquals(CompressedInput.Formato.NINGUNO, CompressedInput.detectar(Files.write(dir.resolve("vacio"), new byte[0])));
+
+        for (var archivo : new Path[]{gz, zst, plano}) {
+            try (var in = CompressedInput.abrir(archivo, hiloAparte)) {
+                assertArrayEquals(DATOS, in.readAllBytes(), archivo.toString());
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    void errorDelProductorSeRelanzaEnElLector() throws IOException {
+        byte[] gz = Files.readAllBytes(comprimir("ok.gz", DATOS, GZIPOutputStream::new));
+        // truncado a la mitad: el hilo falla con EOFException después de entregar varios bloques
+        var truncado = Files.write(dir.resolve("truncado.gz"), Arrays.copyOf(gz, gz.length / 2));
+
+        try (var in = CompressedInput.abrir(truncado, true)) {
+            var ex = assertThrows(IOException.class, in::readAllBytes);
+            assertEquals("Error descomprimiendo", ex.getMessage());
+            assertNotNull(ex.getCause());
+        }
+
+        // zstd con el cuerpo corrupto
+        byte[] zst = Files.readAllBytes(comprimir("ok.zst", datos(1000), ZstdOutputStream::new));
+        for (int i = 8; i < zst.length - 4; i++) zst[i] ^= 0x5A;
+        var corrupto = Files.write(dir.resolve("corrupto.zst"), zst);
+        try (var in = CompressedInput.abrir(corrupto, true)) {
+            assertThrows(IOException.class, in::readAllBytes);
+        }
+    }
+
+    @Test
+    void closeConElProductorBloqueadoTerminaElHilo() throws Exception {
+        var gz = comprimir("bloqueado.gz", DATOS, GZIPOutputStream::new);
+        var in = CompressedInput.abrir(gz, true);
+        assertEquals(DATOS[0] & 0xFF, in.read());
+
+        var hilo = hilo("descompresion-bloqueado.gz");
+        // con la cola llena el productor queda esperando en put()
+        long limite = System.nanoTime() + 10_000_000_000L;
+        while (hilo.getState() != Thread.State.WAITING && System.nanoTime() < limite) Thread.sleep(10);
+        assertEquals(Thread.State.WAITING, hilo.getState());
+
+        in.close();
+        hilo.join(10_000);
+        assertFalse(hilo.isAlive(), "el hilo de descompresión sigue vivo después de close()");
+        assertEquals(-1, in.read());
+    }
+
+    private interface Compresor {
+        OutputStream abrir(OutputStream out) throws IOException;
+    }
+
+    private Path comprimir(String nombre, byte[] datos, Compresor compresor) throws IOException {
+        var archivo = dir.resolve(nombre);
+        try (var out = compresor.abrir(Files.newOutputStream(archivo))) {
+            out.write(datos);
+        }
+        return archivo;
+    }
+
+    private static byte[] datos(int n) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) b[i] = (byte) ("0123456789;abcdef\n".charAt(i % 18) + (i / 4096) % 3);
+        return b;
+    }
+
+    private static Thread hilo(String nombre) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals(nombre)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,179 @@
+package utnfc.isi.back.sim.csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CsvSnapshot}: las filas leídas del snapshot son las del parser (también los textos que no
+ * entran en el diccionario), el encabezado identifica formato y versión, y un snapshot de otra
+ * versión o de otro contenido se descarta y se reescribe.
+ */
+class CsvSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mismasFilasQueElParserConTextosFueraDelDiccionario() throws IOException {
+        // más nombres y descripciones distintos que MAX_DICCIONARIO: el resto va como textos sueltos
+        int n = CsvSnapshot.MAX_DICCIONARIO + 500;
+        var csv = escribir(n);
+        var snap = CsvSnapshot.rutaPara(csv);
+
+        assertEquals(n, CsvSnapshot.escribir(csv, snap));
+        assertTrue(CsvSnapshot.vigente(csv, snap));
+
+        var esperadas = MappedCsvParserTest.leer(csv);
+        try (var s = CsvSnapshot.open(snap)) {
+            assertEquals(n, s.filas());
+            // nombres y descripciones llenan su diccionario; el resto de las columnas tiene pocos valores
+            assertTrue(s.textosEnDiccionario() <= 2 * CsvSnapshot.MAX_DICCIONARIO + 100, "" + s.textosEnDiccionario());
+            assertIguales(esperadas, leer(s));
+            // un segundo recorrido vuelve a empezar, también con los textos sueltos
+            assertIguales(esperadas, leer(s));
+        }
+    }
+
+    @Test
+    void encabezadoConMagiaVersionYTamanioDeRegistro() throws IOException {
+        var csv = escribir(10);
+        var snap = CsvSnapshot.rutaPara(csv);
+        CsvSnapshot.escribir(csv, snap);
+
+        var h = encabezado(snap);
+        assertEquals(0x50414E534F47454CL, h.getLong(0));
+        assertEquals(2, h.getInt(8), "versión");
+        assertEquals(CsvSnapshot.RECORD, h.getInt(12));
+        assertEquals(Files.size(csv), h.getLong(16));
+        assertEquals(10, h.getLong(40));
+    }
+
+    @Test
+    void snapshotDeVersionAnteriorSeReescribe() throws IOException {
+        var csv = escribir(50);
+        var snap = CsvSnapshot.rutaPara(csv);
+        CsvSnapshot.escribir(csv, snap);
+        escribirVersion(snap, 1);
+
+        assertFalse(CsvSnapshot.vigente(csv, snap));
+        var ex = assertThrows(IllegalStateException.class, () -> CsvSnapshot.open(snap));
+        assertTrue(ex.getMessage().contains("versión"), ex.getMessage());
+
+        // streamSnapshot parsea el CSV y, recorrido completo, deja el snapshot en la versión actual
+        List<MappedCsvRow> filas;
+        try (var s = CsvLoader.streamSnapshot(csv.toString())) {
+            filas = s.toList();
+        }
+        assertIguales(MappedCsvParserTest.leer(csv), filas);
+        assertTrue(CsvSnapshot.vigente(csv, snap));
+        assertEquals(2, encabezado(snap).getInt(8));
+
+        try (var s = CsvLoader.streamSnapshot(csv.toString())) {
+            assertIguales(filas, s.toList());
+        }
+    }
+
+    @Test
+    void csvModificadoConMismoTamanioYFechaNoEsVigente() throws IOException {
+        var csv = escribir(20);
+        var snap = CsvSnapshot.rutaPara(csv);
+        CsvSnapshot.escribir(csv, snap);
+        var mtime = Files.getLastModifiedTime(csv);
+
+        var texto = Files.readString(csv, StandardCharsets.UTF_8).replace("Set 7;", "Set 8;");
+        Files.writeString(csv, texto, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(csv, mtime);
+
+        assertFalse(CsvSnapshot.vigente(csv, snap), "el CRC32C tiene que detectar el cambio");
+    }
+
+    @Test
+    void lecturaInterrumpidaNoPublicaElSnapshot() throws IOException {
+        var csv = escribir(100);
+        var snap = CsvSnapshot.rutaPara(csv);
+        try (var s = CsvLoader.streamSnapshot(csv.toString())) {
+            assertEquals(10, s.limit(10).count());
+        }
+        assertFalse(Files.exists(snap));
+        try (var archivos = Files.list(dir)) {
+            assertEquals(List.of(csv), archivos.toList(), "sin temporales");
+        }
+    }
+
+    private Path escribir(int filas) throws IOException {
+        var sb = new StringBuilder(MappedCsvParserTest.HEADER);
+        for (int i = 0; i < filas; i++) {
+            sb.append(i % 4 == 0 ? "" : "6-12").append(';')
+                    .append(i % 5 == 0 ? "" : (10 + i % 90) + "." + (i % 100)).append(';')
+                    .append(i % 7).append(';')
+                    .append(i % 9 == 0 ? "" : Integer.toString(i * 3)).append(';')
+                    .append("4.5;")
+                    .append(i % 3 == 0 ? "\"Descripción\n" + i + "; ñ\"" : "Descripción " + i).append(';')
+                    .append(10_000 + i).append(';')
+                    .append(i % 2 == 0 ? "Easy" : "").append(';')
+                    .append("Set ").append(i).append(';')
+                    .append(i % 6 == 0 ? "" : "4").append(';')
+                    .append("Theme ").append(i % 9).append(';')
+                    .append("3.5;")
+                    .append(i % 2 == 0 ? "US" : "CA").append('\n');
+        }
+        return Files.writeString(dir.resolve("lego.csv"), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static List<MappedCsvRow> leer(CsvSnapshot s) {
+        var filas = new ArrayList<MappedCsvRow>();
+        s.forEach(r -> filas.add(r.copy()));
+        return filas;
+    }
+
+    private static ByteBuffer encabezado(Path snap) throws IOException {
+        try (var ch = FileChannel.open(snap, StandardOpenOption.READ)) {
+            var h = ByteBuffer.allocate(80).order(ByteOrder.LITTLE_ENDIAN);
+            while (h.hasRemaining()) ch.read(h, h.position());
+            return h.flip();
+        }
+    }
+
+    private static void escribirVersion(Path snap, int version) throws IOException {
+        try (var ch = FileChannel.open(snap, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, version), 8);
+        }
+    }
+
+    private static void assertIguales(List<MappedCsvRow> esperadas, List<MappedCsvRow> filas) {
+        assertEquals(esperadas.size(), filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            var e = esperadas.get(i);
+            var f = filas.get(i);
+            for (var c : LegoColumn.values()) {
+                assertEquals(e.isPresent(c), f.isPresent(c), c + ", fila " + i);
+            }
+            assertEquals(e.getLineNumber(), f.getLineNumber());
+            assertEquals(e.getStartOffset(), f.getStartOffset());
+            assertEquals(e.getEndOffset(), f.getEndOffset());
+            assertEquals(e.getProdId(), f.getProdId());
+            assertEquals(e.getListPriceDecimal(), f.getListPriceDecimal(), "list_price, fila " + i);
+            assertEquals(e.getPieceCount(), f.getPieceCount());
+            assertEquals(e.getStarRating(), f.getStarRating());
+            assertEquals(e.getAges(), f.getAges());
+            assertEquals(e.getProdDesc(), f.getProdDesc(), "prod_desc, fila " + i);
+            assertEquals(e.getReviewDifficulty(), f.getReviewDifficulty());
+            assertEquals(e.getSetName(), f.getSetName(), "set_name, fila " + i);
+            assertEquals(e.getThemeName(), f.getThemeName());
+            assertEquals(e.getCountry(), f.getCountry());
+        }
+    }
+}
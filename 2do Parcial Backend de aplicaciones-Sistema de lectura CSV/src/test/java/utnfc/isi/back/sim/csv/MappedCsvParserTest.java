@@ -0,0 +1,171 @@
+package utnfc.isi.back.sim.csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Casos de borde de {@link MappedCsvParser}: comillas, campos vacíos y precio exacto.
+ */
+class MappedCsvParserTest {
+
+    static final String HEADER = "ages;list_price;num_reviews;piece_count;play_star_rating;prod_desc;prod_id;"
+            + "review_difficulty;set_name;star_rating;theme_name;val_star_rating;country\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void camposEntreComillasConSeparadorSaltoDeLineaYComillasEscapadas() throws IOException {
+        var rows = leer(HEADER
+                + "6-12;29.99;2;277;4;\"Uno; dos\";75823;Easy;\"Bird \"\"Island\"\"\";4.5;Angry Birds;4;US\n"
+                + "6-12;19.99;2;168;4;\"Línea 1\nLínea 2\r\nLínea 3\";75822;Easy;Piggy;5;Angry Birds;4;US\n"
+                + "8-14;9.99;1;74;3;Corto;75821;Average;Car;4;City;3;CA\n");
+
+        assertEquals(3, rows.size());
+        assertEquals("Uno; dos", rows.get(0).getProdDesc());
+        assertEquals("Bird \"Island\"", rows.get(0).getSetName());
+        // CRLF dentro de comillas pasa a LF, como en OpenCSV
+        assertEquals("Línea 1\nLínea 2\nLínea 3", rows.get(1).getProdDesc());
+        assertEquals(75822, rows.get(1).getProdId());
+        assertEquals("Piggy", rows.get(1).getSetName());
+
+        // el encabezado es la línea 1; el segundo registro ocupa las líneas 3 a 5
+        assertEquals(2, rows.get(0).getLineNumber());
+        assertEquals(3, rows.get(1).getLineNumber());
+        assertEquals(6, rows.get(2).getLineNumber());
+        assertEquals("CA", rows.get(2).getCountry());
+    }
+
+    @Test
+    void camposNumericosVaciosQuedanAusentes() throws IOException {
+        var r = leer(HEADER + "6-12;;;;;desc;75823;;Set;;Theme;;US\n").get(0);
+
+        for (var c : List.of(LegoColumn.LIST_PRICE, LegoColumn.NUM_REVIEWS, LegoColumn.PIECE_COUNT,
+                LegoColumn.PLAY_STAR_RATING, LegoColumn.STAR_RATING, LegoColumn.VAL_STAR_RATING)) {
+            assertFalse(r.isPresent(c), c + " debería quedar ausente");
+        }
+        assertNull(r.getListPriceDecimal());
+        assertEquals(0, r.getPieceCount());
+        assertTrue(r.isPresent(LegoColumn.PROD_ID));
+
+        var bean = r.toCsvLegoRow();
+        assertNull(bean.getListPrice());
+        assertNull(bean.getPieceCount());
+        assertNull(bean.getStarRating());
+    }
+
+    @Test
+    void textoVacioSinComillasEsNullYEntreComillasEsCadenaVacia() throws IOException {
+        var rows = leer(HEADER
+                + ";1;1;1;1;;1;;;1;;1;\n"
+                + "\"\";1;1;1;1;\"\";2;\"\";\"\";1;\"\";1;\"\"\n");
+
+        var sinComillas = rows.get(0);
+        assertNull(sinComillas.getAges());
+        assertNull(sinComillas.getProdDesc());
+        assertNull(sinComillas.getSetName());
+        assertNull(sinComillas.getCountry());
+        assertFalse(sinComillas.isPresent(LegoColumn.THEME_NAME));
+        assertEquals(ColumnDictionary.SIN_CODIGO, sinComillas.codigo(LegoColumn.THEME_NAME));
+
+        var conComillas = rows.get(1);
+        assertEquals("", conComillas.getAges());
+        assertEquals("", conComillas.getProdDesc());
+        assertEquals("", conComillas.getSetName());
+        assertEquals("", conComillas.getCountry());
+        assertTrue(conComillas.isPresent(LegoColumn.THEME_NAME));
+    }
+
+    @Test
+    void textosComoOpenCsv() throws Exception {
+        var csv = escribir(HEADER
+                + ";1;1;1;1;;1;;;1;;1;\n"
+                + "\"\";1;1;1;1;\"a;b\";2;\"\";\"x \"\"y\"\"\";1;\"\";1;\"\"\n"
+                + "6-12;1;1;1;1;\"multi\r\nlínea\";3;Easy;Set;1;Theme;1;US\n");
+        var esperadas = CsvLoader.read(csv.toString());
+        var filas = leer(csv);
+
+        assertEquals(esperadas.size(), filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            var o = esperadas.get(i);
+            var m = filas.get(i).toCsvLegoRow();
+            assertEquals(o.getAges(), m.getAges(), "ages, fila " + i);
+            assertEquals(o.getProdDesc(), m.getProdDesc(), "prod_desc, fila " + i);
+            assertEquals(o.getReviewDifficulty(), m.getReviewDifficulty(), "review_difficulty, fila " + i);
+            assertEquals(o.getSetName(), m.getSetName(), "set_name, fila " + i);
+            assertEquals(o.getThemeName(), m.getThemeName(), "theme_name, fila " + i);
+            assertEquals(o.getCountry(), m.getCountry(), "country, fila " + i);
+        }
+    }
+
+    @Test
+    void listPriceConservaEscalaYPrecision() throws IOException {
+        var rows = leer(HEADER
+                + "1;29.99;;;;;1;;;;;;\n"
+                + "1;10;;;;;2;;;;;;\n"
+                + "1;49.990;;;;;3;;;;;;\n"
+                + "1; 12.50 ;;;;;4;;;;;;\n"
+                + "1;-0.05;;;;;5;;;;;;\n"
+                + "1;1.5e2;;;;;6;;;;;;\n"
+                + "1;0.1234567890123456789;;;;;7;;;;;;\n"
+                + "1;123456789012.345678;;;;;8;;;;;;\n"
+                + "1;\"7.25\";;;;;9;;;;;;\n");
+
+        assertPrecio("29.99", 2, rows.get(0));
+        assertPrecio("10", 0, rows.get(1));
+        assertPrecio("49.990", 3, rows.get(2));
+        assertPrecio("12.50", 2, rows.get(3));
+        assertPrecio("-0.05", 2, rows.get(4));
+        assertPrecio("150", 0, rows.get(5));
+        // más de 18 decimales: se redondea HALF_EVEN
+        assertPrecio("0.123456789012345679", 18, rows.get(6));
+        // 18 dígitos significativos sin pasar por un double
+        assertPrecio("123456789012.345678", 6, rows.get(7));
+        assertPrecio("7.25", 2, rows.get(8));
+
+        assertEquals(29.99, rows.get(0).getListPrice());
+        assertEquals(123456789012.345678, rows.get(7).getListPrice());
+    }
+
+    @Test
+    void valorNumericoInvalidoIndicaLineaYColumna() throws IOException {
+        var csv = escribir(HEADER + "1;9.99;;;;;1;;;;;;\n1;abc;;;;;2;;;;;;\n");
+        try (var p = MappedCsvParser.open(csv)) {
+            var ex = assertThrows(IllegalArgumentException.class, () -> p.forEach(r -> { }));
+            assertTrue(ex.getMessage().contains("línea 3"), ex.getMessage());
+            assertTrue(ex.getMessage().contains("list_price"), ex.getMessage());
+        }
+    }
+
+    private static void assertPrecio(String esperado, int escala, MappedCsvRow r) {
+        var v = r.getListPriceDecimal();
+        assertEquals(new BigDecimal(esperado), v, "list_price de la línea " + r.getLineNumber());
+        assertEquals(escala, v.scale(), "escala de la línea " + r.getLineNumber());
+    }
+
+    private List<MappedCsvRow> leer(String contenido) throws IOException {
+        return leer(escribir(contenido));
+    }
+
+    static List<MappedCsvRow> leer(Path csv) throws IOException {
+        var rows = new ArrayList<MappedCsvRow>();
+        try (var p = MappedCsvParser.open(csv)) {
+            p.forEach(r -> rows.add(r.copy()));
+        }
+        return rows;
+    }
+
+    private Path escribir(String contenido) throws IOException {
+        return Files.writeString(Files.createTempFile(dir, "lego", ".csv"), contenido, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package utnfc.isi.back.sim.csv;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ParallelCsvParser} con tramos de pocos bytes (mucho menores que un registro): los cortes
+ * nominales caen dentro de campos entre comillas con saltos de línea y el resultado tiene que
+ * ser el del parser secuencial.
+ */
+class ParallelCsvParserTest {
+
+    private static ForkJoinPool pool;
+
+    @TempDir
+    static Path dir;
+    private static Path csv;
+
+    @BeforeAll
+    static void init() throws IOException {
+        pool = new ForkJoinPool(4);
+        var sb = new StringBuilder(MappedCsvParserTest.HEADER);
+        for (int i = 1; i <= 300; i++) {
+            String desc = switch (i % 4) {
+                case 0 -> "\"Descripción\ncon \"\"salto\"\"\r\ny ; separador\"";
+                case 1 -> "Sin comillas " + i;
+                case 2 -> "\"\n\n\"";
+                default -> "";
+            };
+            sb.append(i % 3 == 0 ? "" : "6-12").append(';')
+                    .append(i % 5 == 0 ? "" : (i % 100) + "." + (i % 7) + "9").append(';')
+                    .append(i).append(';')
+                    .append(i * 3).append(';')
+                    .append("4.5;")
+                    .append(desc).append(';')
+                    .append(70000 + i).append(';')
+                    .append(i % 2 == 0 ? "Easy" : "\"Average\"").append(';')
+                    .append("\"Set ").append(i).append("\";")
+                    .append(i % 6 == 0 ? "" : "4").append(';')
+                    .append("Theme ").append(i % 9).append(';')
+                    .append("3.5;")
+                    .append(i % 2 == 0 ? "US" : "CA")
+                    .append(i % 10 == 0 ? "\r\n" : "\n");
+        }
+        csv = Files.writeString(dir.resolve("lego.csv"), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {7, 17, 64, 1000, ParallelCsvParser.DEFAULT_CHUNK_BYTES})
+    void mismasFilasYLineasQueElParserSecuencial(long chunkBytes) throws IOException {
+        var esperadas = MappedCsvParserTest.leer(csv);
+        List<MappedCsvRow> filas;
+        try (var s = ParallelCsvParser.stream(csv, pool, chunkBytes)) {
+            filas = s.toList();
+        }
+
+        assertEquals(300, esperadas.size());
+        assertEquals(esperadas.size(), filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            var e = esperadas.get(i);
+            var f = filas.get(i);
+            assertEquals(e.getLineNumber(), f.getLineNumber(), "línea de la fila " + i);
+            assertEquals(e.getStartOffset(), f.getStartOffset(), "offset de la fila " + i);
+            assertEquals(e.getProdId(), f.getProdId(), "orden de la fila " + i);
+            assertTrue(iguales(e, f), "contenido de la fila " + i);
+        }
+    }
+
+    @Test
+    void losTramosEmpiezanEnInicioDeRegistro() throws IOException {
+        var inicios = MappedCsvParserTest.leer(csv).stream().map(MappedCsvRow::getStartOffset).toList();
+        var tramos = ParallelCsvParser.split(csv, pool, 7);
+
+        assertTrue(tramos.size() > 1);
+        for (var t : tramos) {
+            assertTrue(inicios.contains(t.from()), "el tramo " + t + " no empieza en un registro");
+        }
+        for (int i = 1; i < tramos.size(); i++) {
+            assertEquals(tramos.get(i - 1).to(), tramos.get(i).from());
+        }
+    }
+
+    private static boolean iguales(MappedCsvRow x, MappedCsvRow y) {
+        for (var c : LegoColumn.values()) {
+            if (x.isPresent(c) != y.isPresent(c)) return false;
+        }
+        return Objects.equals(x.getAges(), y.getAges())
+                && Objects.equals(x.getProdDesc(), y.getProdDesc())
+                && Objects.equals(x.getReviewDifficulty(), y.getReviewDifficulty())
+                && Objects.equals(x.getSetName(), y.getSetName())
+                && Objects.equals(x.getThemeName(), y.getThemeName())
+                && Objects.equals(x.getCountry(), y.getCountry())
+                && Objects.equals(x.getListPriceDecimal(), y.getListPriceDecimal())
+                && x.getNumReviews() == y.getNumReviews()
+                && x.getPieceCount() == y.getPieceCount()
+                && x.getStarRating() == y.getStarRating()
+                && x.getEndOffset() == y.getEndOffset();
+    }
+}
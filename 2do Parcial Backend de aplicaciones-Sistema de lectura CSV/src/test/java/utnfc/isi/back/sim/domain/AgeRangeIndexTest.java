@@ -0,0 +1,80 @@
+package utnfc.isi.back.sim.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link AgeRangeIndex#cubren}: extremos de cada rango (inclusivos), rangos abiertos "12+",
+ * edades sueltas, huecos entre rangos y edades fuera de todos.
+ */
+class AgeRangeIndexTest {
+
+    private static final Map<Integer, String> GRUPOS = Map.of(
+            1, "4-7",
+            2, "6-12",
+            3, "12+",
+            4, "10",
+            5, "16+",
+            6, "20-25");
+
+    private final AgeRangeIndex indice = AgeRangeIndex.of(GRUPOS);
+
+    @Test
+    void extremosInclusivos() {
+        assertEquals(List.of(), indice.cubren(3));
+        assertEquals(List.of(1), indice.cubren(4));
+        assertEquals(List.of(1, 2), indice.cubren(6));
+        assertEquals(List.of(1, 2), indice.cubren(7));
+        assertEquals(List.of(2), indice.cubren(8));
+        assertEquals(List.of(2, 4), indice.cubren(10));
+        assertEquals(List.of(2), indice.cubren(11));
+        assertEquals(List.of(2, 3), indice.cubren(12));
+        assertEquals(List.of(3), indice.cubren(13));
+    }
+
+    @Test
+    void rangosAbiertosNoTienenTope() {
+        assertEquals(List.of(3), indice.cubren(15));
+        assertEquals(List.of(3, 5), indice.cubren(16));
+        assertEquals(List.of(3, 5, 6), indice.cubren(20));
+        assertEquals(List.of(3, 5, 6), indice.cubren(25));
+        assertEquals(List.of(3, 5), indice.cubren(26));
+        assertEquals(List.of(3, 5), indice.cubren(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void edadesFueraDeTodosLosRangos() {
+        assertEquals(List.of(), indice.cubren(0));
+        assertEquals(List.of(), indice.cubren(-1));
+        assertEquals(List.of(), indice.cubren(Integer.MIN_VALUE));
+
+        var sinAbiertos = AgeRangeIndex.of(Map.of(1, "4-7", 2, "10-12"));
+        assertEquals(List.of(), sinAbiertos.cubren(8), "hueco entre rangos");
+        assertEquals(List.of(2), sinAbiertos.cubren(12));
+        assertEquals(List.of(), sinAbiertos.cubren(13), "después del último rango");
+    }
+
+    @Test
+    void indiceVacio() {
+        var vacio = AgeRangeIndex.of(Map.of());
+        assertEquals(0, vacio.size());
+        assertEquals(List.of(), vacio.cubren(10));
+    }
+
+    @Test
+    void coincideConRecorrerLosGrupos() {
+        assertEquals(GRUPOS.size(), indice.size());
+        for (int edad = -2; edad <= 40; edad++) {
+            List<Integer> esperado = new ArrayList<>();
+            for (int id = 1; id <= GRUPOS.size(); id++) {
+                if (AgeRange.of(GRUPOS.get(id)).contiene(edad)) esperado.add(id);
+            }
+            assertEquals(esperado, indice.cubren(edad), "edad " + edad);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package utnfc.isi.back.sim.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utnfc.isi.back.sim.service.ImportServiceDeltaTest.*;
+
+/**
+ * {@link DimensionRegistry} con varios hilos que piden a la vez claves que se solapan: cada
+ * maestra se inserta una sola vez y todos los hilos ven la misma entidad (mismo id).
+ */
+class DimensionRegistryTest {
+
+    private static final int HILOS = 8, RONDAS = 20;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void init() {
+        limpiarBase();
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("DELETE FROM COUNTRIES WHERE CODE LIKE 'Z%'").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void cadaMaestraSeInsertaUnaSolaVez() throws Exception {
+        var registro = new DimensionRegistry();
+        var barrera = new CyclicBarrier(HILOS);
+        var pool = Executors.newFixedThreadPool(HILOS);
+        List<Future<int[]>> futuros = new ArrayList<>();
+        try {
+            for (int h = 0; h < HILOS; h++) {
+                int hilo = h;
+                futuros.add(pool.submit(() -> {
+                    int[] total = new int[3];
+                    for (int ronda = 0; ronda < RONDAS; ronda++) {
+                        barrera.await();
+                        // cada ronda trae claves nuevas compartidas por todos y alguna propia del hilo
+                        var ins = registro.resolver(
+                                Set.of("Z" + ronda % 10, "Z" + (char) ('A' + hilo)),
+                                Set.of("Tema " + ronda, "Tema " + (ronda + 1), "Tema del hilo " + hilo),
+                                Set.of(ronda + "+", "1-" + (hilo + 2)));
+                        for (int i = 0; i < 3; i++) total[i] += ins[i];
+                    }
+                    return total;
+                }));
+            }
+            int[] insertadas = new int[3];
+            for (var f : futuros) {
+                var t = f.get();
+                for (int i = 0; i < 3; i++) insertadas[i] += t[i];
+            }
+
+            // 10 países compartidos + uno por hilo; RONDAS + 1 temáticas + una por hilo; RONDAS edades + HILOS
+            assertArrayEquals(new int[]{10 + HILOS, RONDAS + 1 + HILOS, RONDAS + HILOS}, insertadas);
+            assertEquals(10 + HILOS, registro.countries.size());
+            assertEquals(RONDAS + 1 + HILOS, registro.themes.size());
+            assertEquals(RONDAS + HILOS, registro.ages.size());
+
+            assertEquals(10L + HILOS, contar("SELECT COUNT(*) FROM COUNTRIES WHERE CODE LIKE 'Z%'"));
+            assertEquals((long) registro.themes.size(), contar("SELECT COUNT(*) FROM THEMES"));
+            assertEquals((long) registro.ages.size(), contar("SELECT COUNT(*) FROM AGE_GROUPS"));
+            assertEquals(registro.themes.size(), new HashSet<>(registro.themes.values().stream()
+                    .map(t -> t.getId()).toList()).size(), "ids repetidos");
+
+            // una segunda pasada con claves conocidas no inserta nada
+            assertArrayEquals(new int[3], registro.resolver(Set.of("Z0"), Set.of("Tema 0"), Set.of("0+")));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void importarArchivosEnParaleloNoDuplicaMaestras() throws Exception {
+        List<Path> archivos = new ArrayList<>();
+        for (int a = 0; a < 4; a++) {
+            var sb = new StringBuilder(HEADER);
+            for (int i = 0; i < 200; i++) {
+                sb.append(fila(10_000 * (a + 1) + i, "Z" + i % 5, "Tema " + i % 13, (i % 7 + 1) + "+",
+                        "9.99", "10", "4.0", "Set " + i));
+            }
+            archivos.add(Files.writeString(dir.resolve("lego" + a + ".csv"), sb.toString(), StandardCharsets.UTF_8));
+        }
+
+        var r = new ImportService(16).importarArchivos(archivos, 4);
+
+        assertEquals(800, r.getSetsInsertados());
+        assertEquals(5, r.getCountriesInsertados());
+        assertEquals(13, r.getThemesInsertados());
+        assertEquals(7, r.getAgeGroupsInsertados());
+        assertEquals(13L, contar("SELECT COUNT(*) FROM THEMES"));
+        assertEquals(7L, contar("SELECT COUNT(*) FROM AGE_GROUPS"));
+        assertEquals(5L, contar("SELECT COUNT(*) FROM COUNTRIES WHERE CODE LIKE 'Z%'"));
+    }
+
+    private static long contar(String sql) {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            return ((Number) em.createNativeQuery(sql).getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+}
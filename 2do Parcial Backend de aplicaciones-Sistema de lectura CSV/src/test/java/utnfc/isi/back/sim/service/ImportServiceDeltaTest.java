@@ -0,0 +1,250 @@
+package utnfc.isi.back.sim.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.domain.LegoSet;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.repository.DimensionCache;
+import utnfc.isi.back.sim.repository.JpaAgeGroupRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Importación delta ({@link ImportService#importarDelta}): se importa un CSV y después se aplica
+ * una versión modificada; se verifican los contadores del resultado y el contenido de LEGO_SETS.
+ * Lotes de 2 filas, así las claves repetidas y las bajas cruzan bloques.
+ */
+class ImportServiceDeltaTest {
+
+    static final String HEADER = "ages;list_price;num_reviews;piece_count;play_star_rating;prod_desc;prod_id;"
+            + "review_difficulty;set_name;star_rating;theme_name;val_star_rating;country\n";
+
+    static final String ORIGINAL = HEADER
+            + fila(75001, "US", "City", "6-12", "10.00", "100", "4.5", "Comisaría")
+            + fila(75002, "US", "Star Wars", "8-14", "20.00", "200", "4.0", "X-Wing")
+            + fila(75003, "CA", "City", "6-12", "30.00", "300", "3.5", "Bomberos")
+            + fila(75004, "GB", "Ninjago", "9-14", "40.00", "", "5.0", "Dragón")
+            + fila(75001, "CA", "City", "6-12", "12.00", "100", "4.5", "Comisaría");
+
+    /** 75002/US cambia, 75005/US es nuevo, 75004/GB no viene, 75002/US se repite y hay una fila sin país. */
+    static final String MODIFICADO = HEADER
+            + fila(75001, "US", "City", "6-12", "10.00", "100", "4.5", "Comisaría")
+            + fila(75002, "US", "Star Wars", "8-14", "25.00", "210", "4.0", "X-Wing")
+            + fila(75003, "CA", "City", "6-12", "30.00", "300", "3.5", "Bomberos")
+            + fila(75005, "US", "Technic", "10+", "99.99", "", "", "Grúa")
+            + fila(75002, "US", "Star Wars", "8-14", "1.00", "1", "1.0", "Repetido")
+            + fila(75006, "", "City", "6-12", "5.00", "50", "4.0", "Sin país")
+            + fila(75001, "CA", "City", "6-12", "12.00", "100", "4.5", "Comisaría");
+
+    @TempDir
+    Path dir;
+
+    private ImportService svc;
+
+    @BeforeEach
+    void init() {
+        limpiarBase();
+        svc = new ImportService(2);
+    }
+
+    @Test
+    void mismoArchivoNoEscribeNada() throws IOException {
+        importar(ORIGINAL);
+        var r = delta(ORIGINAL, false);
+
+        assertEquals(5, r.getFilasLeidas());
+        assertEquals(5, r.getFilasValidas());
+        assertEquals(0, r.getSetsInsertados());
+        assertEquals(0, r.getSetsActualizados());
+        assertEquals(5, r.getSetsSinCambios());
+        assertEquals(0, r.getSetsEliminados());
+        assertEquals(0, r.getFilasDuplicadas());
+        assertEquals(5, sets().size());
+    }
+
+    @Test
+    void insertaNuevosActualizaCambiadosYCuentaDuplicados() throws IOException {
+        importar(ORIGINAL);
+        var r = delta(MODIFICADO, false);
+
+        assertEquals(7, r.getFilasLeidas());
+        assertEquals(6, r.getFilasValidas());
+        assertEquals(1, r.getSetsInsertados());
+        assertEquals(1, r.getSetsActualizados());
+        assertEquals(3, r.getSetsSinCambios());
+        assertEquals(1, r.getFilasDuplicadas());
+        assertEquals(0, r.getSetsEliminados());
+
+        var sets = sets();
+        assertEquals(6, sets.size());
+        // vale la primera aparición de 75002/US
+        var xWing = sets.get("75002/US");
+        assertEquals("X-Wing", xWing.getSetName());
+        assertEquals(0, new BigDecimal("25.00").compareTo(xWing.getListPrice()));
+        assertEquals(210, xWing.getPieceCount());
+        var grua = sets.get("75005/US");
+        assertEquals("Technic", grua.getTheme().getName());
+        assertNull(grua.getPieceCount());
+        assertNull(grua.getStarRating());
+        // sin --marcar-bajas lo que no vino queda activo
+        assertFalse(sets.get("75004/GB").getDeleted());
+        assertTrue(sets.values().stream().noneMatch(LegoSet::getDeleted));
+    }
+
+    @Test
+    void marcarBajasDaDeBajaLoQueNoVino() throws IOException {
+        importar(ORIGINAL);
+        var r = delta(MODIFICADO, true);
+
+        assertEquals(1, r.getSetsInsertados());
+        assertEquals(1, r.getSetsActualizados());
+        assertEquals(3, r.getSetsSinCambios());
+        assertEquals(1, r.getSetsEliminados());
+
+        var sets = sets();
+        assertEquals(6, sets.size(), "la baja es lógica: la fila sigue en LEGO_SETS");
+        assertTrue(sets.get("75004/GB").getDeleted());
+        assertEquals(1, sets.values().stream().filter(LegoSet::getDeleted).count());
+
+        // una segunda corrida con el mismo archivo no vuelve a dar de baja
+        var otra = delta(MODIFICADO, true);
+        assertEquals(0, otra.getSetsEliminados());
+        assertEquals(5, otra.getSetsSinCambios());
+    }
+
+    @Test
+    void reactivaUnSetDadoDeBaja() throws IOException {
+        importar(ORIGINAL);
+        delta(MODIFICADO, true);
+
+        // 75004/GB vuelve con el mismo contenido: mismo hash, pero estaba dado de baja
+        var r = delta(ORIGINAL, true);
+
+        assertEquals(0, r.getSetsInsertados());
+        assertEquals(2, r.getSetsActualizados(), "75002/US vuelve al precio original y 75004/GB se reactiva");
+        assertEquals(3, r.getSetsSinCambios());
+        assertEquals(1, r.getSetsEliminados(), "75005/US no está en el original");
+
+        var sets = sets();
+        assertEquals(6, sets.size());
+        var dragon = sets.get("75004/GB");
+        assertFalse(dragon.getDeleted());
+        assertEquals("Dragón", dragon.getSetName());
+        assertEquals(0, new BigDecimal("20.00").compareTo(sets.get("75002/US").getListPrice()));
+        assertTrue(sets.get("75005/US").getDeleted());
+    }
+
+    @Test
+    void deltaDelMismoArchivoConClavesRepetidasNoDaDeBaja() throws IOException {
+        // la importación completa guarda las dos filas de 75002/US y las dos de 75001/CA
+        var conRepetidos = ORIGINAL
+                + fila(75002, "US", "Star Wars", "8-14", "21.00", "201", "4.0", "Otro X-Wing")
+                + fila(75001, "CA", "City", "6-12", "12.00", "100", "4.5", "Comisaría");
+        importar(conRepetidos);
+        assertEquals(7, filas().size());
+
+        for (int corrida = 0; corrida < 2; corrida++) {
+            var r = delta(conRepetidos, true);
+
+            assertEquals(0, r.getSetsInsertados());
+            assertEquals(0, r.getSetsActualizados());
+            assertEquals(5, r.getSetsSinCambios());
+            assertEquals(2, r.getFilasDuplicadas());
+            assertEquals(0, r.getSetsEliminados(), "corrida " + corrida);
+
+            var filas = filas();
+            assertEquals(7, filas.size());
+            assertTrue(filas.stream().noneMatch(LegoSet::getDeleted));
+            // la fila de menor id de 75002/US es la que se comparó; la repetida queda como estaba
+            var xWings = filas.stream().filter(s -> s.getProdId() == 75002).map(LegoSet::getSetName).toList();
+            assertEquals(List.of("X-Wing", "Otro X-Wing"), xWings);
+        }
+
+        // si la clave no viene se dan de baja todas sus filas
+        var r = delta(ORIGINAL.replace(fila(75001, "CA", "City", "6-12", "12.00", "100", "4.5", "Comisaría"), ""), true);
+        assertEquals(2, r.getSetsEliminados());
+        assertEquals(2, filas().stream().filter(LegoSet::getDeleted).count());
+    }
+
+    // ---------- Helpers (también los usa LegoRollupsTest) ----------
+
+    static String fila(int prodId, String country, String theme, String ages, String price,
+                       String pieces, String rating, String name) {
+        return String.join(";", ages, price, "1", pieces, "4.0", "\"Descripción de " + name + "\"",
+                Integer.toString(prodId), "Average", name, rating, theme, "4.0", country) + "\n";
+    }
+
+    /**
+     * Vacía las tablas de la importación y las cachés de maestras. No se recrea el esquema:
+     * reiniciaría las secuencias con bloques de ids todavía reservados por Hibernate.
+     */
+    static void limpiarBase() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            for (var tabla : new String[]{"THEME_ROLLUP", "COUNTRY_ROLLUP", "IMPORT_CHECKPOINTS",
+                    "LEGO_SETS", "THEMES", "AGE_GROUPS"}) {
+                em.createNativeQuery("DELETE FROM " + tabla).executeUpdate();
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        DimensionCache.invalidarTodas();
+        JpaAgeGroupRepository.invalidarIndice();
+    }
+
+    ImportService.ImportResult importar(String contenido) throws IOException {
+        try (var rows = CsvLoader.streamMapped(escribir(contenido).toString())) {
+            return svc.importar(rows);
+        }
+    }
+
+    ImportService.ImportResult delta(String contenido, boolean marcarBajas) throws IOException {
+        try (var rows = CsvLoader.streamMapped(escribir(contenido).toString())) {
+            return svc.importarDelta(rows, marcarBajas);
+        }
+    }
+
+    private Path escribir(String contenido) throws IOException {
+        return Files.writeString(Files.createTempFile(dir, "lego", ".csv"), contenido, StandardCharsets.UTF_8);
+    }
+
+    /** Todas las filas de LEGO_SETS, en orden de id (con claves repetidas si las hay). */
+    static List<LegoSet> filas() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            return em.createQuery("SELECT s FROM LegoSet s ORDER BY s.id", LegoSet.class).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /** Sets de LEGO_SETS (activos y dados de baja) por PROD_ID/país. */
+    static Map<String, LegoSet> sets() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            var porClave = new LinkedHashMap<String, LegoSet>();
+            for (var s : em.createQuery("""
+                    SELECT s FROM LegoSet s JOIN FETCH s.country JOIN FETCH s.theme
+                    ORDER BY s.prodId, s.country.code
+                    """, LegoSet.class).getResultList()) {
+                assertNull(porClave.put(s.getProdId() + "/" + s.getCountry().getCode(), s), "clave repetida");
+            }
+            return porClave;
+        } finally {
+            em.close();
+        }
+    }
+}
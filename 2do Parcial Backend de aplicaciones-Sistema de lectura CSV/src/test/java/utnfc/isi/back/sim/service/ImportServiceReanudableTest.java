@@ -0,0 +1,122 @@
+package utnfc.isi.back.sim.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utnfc.isi.back.sim.domain.ImportCheckpoint;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utnfc.isi.back.sim.service.ImportServiceDeltaTest.*;
+
+/**
+ * Importación reanudable ({@link ImportService#importarReanudable}) con bloques de 10 filas:
+ * una corrida que se corta a mitad del archivo deja confirmados los bloques anteriores y su
+ * checkpoint; la siguiente sigue desde ahí sin duplicar sets, y un archivo que cambió se rechaza.
+ */
+class ImportServiceReanudableTest {
+
+    private static final int FILAS = 50;
+    /** Precio de la fila 33: un valor inválido del mismo largo corta la corrida en el parser. */
+    private static final String PRECIO = "33.33", ROTO = "xx.xx";
+
+    @TempDir
+    Path dir;
+
+    private ImportService svc;
+    private Path csv;
+
+    @BeforeEach
+    void init() throws IOException {
+        limpiarBase();
+        svc = new ImportService(10);
+        var sb = new StringBuilder(HEADER);
+        for (int i = 1; i <= FILAS; i++) {
+            sb.append(fila(80_000 + i, i % 2 == 0 ? "US" : "CA", "Tema " + i % 4, "6-12",
+                    i == 33 ? ROTO : "10.00", Integer.toString(i), "4.0", "Set " + i));
+        }
+        csv = Files.writeString(dir.resolve("lego.csv"), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void reanudaDesdeElUltimoCheckpointSinDuplicar() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> svc.importarReanudable(csv));
+
+        // quedaron confirmados los tres bloques completos y el checkpoint de la fila 30
+        assertEquals(30, sets().size());
+        var cp = checkpoint();
+        assertFalse(cp.getCompleted());
+        assertEquals(30, cp.getRowsRead());
+        assertEquals(32, cp.getNextLine(), "el encabezado es la línea 1");
+
+        // se corrige la fila sin cambiar tamaño ni fecha: es el mismo archivo para el checkpoint
+        reparar();
+        var r = svc.importarReanudable(csv);
+
+        assertEquals(30, r.getReanudadoDesdeFila());
+        assertEquals(20, r.getFilasLeidas());
+        assertEquals(20, r.getSetsInsertados());
+        var sets = sets();
+        assertEquals(FILAS, sets.size());
+        assertEquals(FILAS, sets.values().stream().map(s -> s.getProdId()).collect(Collectors.toSet()).size());
+        assertTrue(checkpoint().getCompleted());
+        assertEquals(FILAS, checkpoint().getRowsRead());
+
+        // completo y sin cambios: una nueva corrida no importa nada
+        var otra = svc.importarReanudable(csv);
+        assertEquals(0, otra.getSetsInsertados());
+        assertEquals(FILAS, otra.getReanudadoDesdeFila());
+        assertEquals(FILAS, sets().size());
+    }
+
+    @Test
+    void rechazaUnArchivoQueCambioDesdeElCheckpointIncompleto() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> svc.importarReanudable(csv));
+        assertEquals(30, sets().size());
+
+        reparar();
+        Files.writeString(csv, fila(80_051, "US", "Tema 1", "6-12", "10.00", "51", "4.0", "Set 51"),
+                StandardCharsets.UTF_8, java.nio.file.StandardOpenOption.APPEND);
+
+        var ex = assertThrows(IllegalStateException.class, () -> svc.importarReanudable(csv));
+        assertTrue(ex.getMessage().contains("cambió"), ex.getMessage());
+        assertEquals(30, sets().size(), "no se insertó nada");
+        assertFalse(checkpoint().getCompleted());
+    }
+
+    @Test
+    void rechazaOtraVersionDeUnArchivoYaImportado() throws IOException {
+        reparar();
+        assertEquals(FILAS, svc.importarReanudable(csv).getSetsInsertados());
+
+        Files.writeString(csv, Files.readString(csv, StandardCharsets.UTF_8).replace("Set 7;", "Set 77;"),
+                StandardCharsets.UTF_8);
+
+        var ex = assertThrows(IllegalStateException.class, () -> svc.importarReanudable(csv));
+        assertTrue(ex.getMessage().contains("importarDelta"), ex.getMessage());
+        assertEquals(FILAS, sets().size());
+    }
+
+    /** Reemplaza el precio inválido por uno del mismo largo y deja la fecha como estaba. */
+    private void reparar() throws IOException {
+        var mtime = Files.getLastModifiedTime(csv);
+        Files.writeString(csv, Files.readString(csv, StandardCharsets.UTF_8).replace(ROTO, PRECIO),
+                StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(csv, mtime);
+    }
+
+    private ImportCheckpoint checkpoint() {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            return em.find(ImportCheckpoint.class, csv.toAbsolutePath().normalize().toString());
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package utnfc.isi.back.sim.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utnfc.isi.back.sim.csv.CsvLoader;
+import utnfc.isi.back.sim.infra.DatabaseInitializer;
+import utnfc.isi.back.sim.infra.LocalEntityManagerProvider;
+import utnfc.isi.back.sim.repository.JpaLegoSetRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static utnfc.isi.back.sim.service.ImportServiceDeltaTest.*;
+
+/**
+ * Los agregados que mantiene la importación ({@link LegoRollups#sumar} + {@link LegoRollups#aplicar})
+ * tienen que quedar iguales a los que calcula {@link LegoRollups#reconstruir} desde LEGO_SETS,
+ * también después de actualizaciones, bajas y reactivaciones de la importación delta, y
+ * {@link DatabaseInitializer#prepararEsquema} los corrige si se escribió por fuera de la importación.
+ */
+class LegoRollupsTest {
+
+    @TempDir
+    Path dir;
+
+    private ImportService svc;
+
+    @BeforeEach
+    void init() {
+        limpiarBase();
+        svc = new ImportService(2);
+    }
+
+    @Test
+    void importacionYDeltaCoincidenConReconstruir() throws IOException {
+        try (var rows = CsvLoader.streamMapped(escribir(ORIGINAL).toString())) {
+            svc.importar(rows);
+        }
+        assertIgualAReconstruir("importación");
+
+        try (var rows = CsvLoader.streamMapped(escribir(MODIFICADO).toString())) {
+            svc.importarDelta(rows, true);
+        }
+        assertIgualAReconstruir("delta con bajas");
+
+        try (var rows = CsvLoader.streamMapped(escribir(ORIGINAL).toString())) {
+            svc.importarDelta(rows, true);
+        }
+        assertIgualAReconstruir("delta que reactiva");
+    }
+
+    @Test
+    void setsSinPiezasNoCuentanEnLosReportesPorPiezas() throws IOException {
+        try (var rows = CsvLoader.streamMapped(escribir(ORIGINAL + fila(75010, "US", "Ninjago", "9-14",
+                "15.00", "0", "2.0", "Llavero")).toString())) {
+            svc.importar(rows);
+        }
+
+        // Ninjago: 75004/GB sin piezas (rating 5.0) y 75010/US con 0 piezas (rating 2.0)
+        var ninjago = rollup("""
+                SELECT r.SETS, r.PIECED, r.SUM_PIECES, r.RATED FROM THEME_ROLLUP r
+                JOIN THEMES t ON t.ID_THEME = r.THEME_ID WHERE t.NAME = 'Ninjago'
+                """);
+        assertEquals(List.of(List.of(2L, 1L, 0L, 2L)), ninjago);
+        var filas = directo("SELECT (SELECT COUNT(*) FROM THEMES), (SELECT COUNT(*) FROM THEME_ROLLUP)").get(0);
+        assertEquals(filas[0], filas[1], "una fila por temática");
+
+        try (var repo = new JpaLegoSetRepository()) {
+            var top5 = repo.top5ThemesPorPiezas();
+            assertEquals(nombres(directo("""
+                    SELECT t.NAME, SUM(s.PIECE_COUNT) FROM LEGO_SETS s JOIN THEMES t ON t.ID_THEME = s.THEME_ID
+                    WHERE s.DELETED = FALSE AND s.PIECE_COUNT IS NOT NULL
+                    GROUP BY t.NAME ORDER BY SUM(s.PIECE_COUNT) DESC, t.NAME LIMIT 5
+                    """)), nombres(top5));
+            assertTrue(top5.stream().anyMatch(r -> r[0].equals("Ninjago") && ((Number) r[1]).longValue() == 0));
+
+            // con minPieces = 0 el set sin piezas no cuenta: el promedio de Ninjago es 2.0, no 3.5
+            var ranking = repo.rankingThemesPorRatingPromedio(0);
+            var esperado = directo("""
+                    SELECT t.NAME, AVG(CAST(s.STAR_RATING AS DOUBLE PRECISION)) FROM LEGO_SETS s
+                    JOIN THEMES t ON t.ID_THEME = s.THEME_ID
+                    WHERE s.DELETED = FALSE AND s.PIECE_COUNT >= 0 AND s.STAR_RATING IS NOT NULL
+                    GROUP BY t.NAME ORDER BY 2 DESC, t.NAME
+                    """);
+            assertEquals(nombres(esperado), nombres(ranking));
+            for (int i = 0; i < ranking.size(); i++) {
+                assertEquals(((Number) esperado.get(i)[1]).doubleValue(), ((Number) ranking.get(i)[1]).doubleValue(), 1e-9);
+            }
+            assertEquals(2.0, ranking.stream().filter(r -> r[0].equals("Ninjago"))
+                    .mapToDouble(r -> ((Number) r[1]).doubleValue()).findFirst().orElseThrow(), 1e-9);
+            // un mínimo negativo tampoco incluye los sets sin piezas
+            assertEquals(nombres(ranking), nombres(repo.rankingThemesPorRatingPromedio(-5)));
+        }
+    }
+
+    @Test
+    void prepararEsquemaReconstruyeAgregadosDesactualizados() throws IOException {
+        try (var rows = CsvLoader.streamMapped(escribir(ORIGINAL).toString())) {
+            svc.importar(rows);
+        }
+        var temas = rollup("SELECT * FROM THEME_ROLLUP ORDER BY THEME_ID");
+        var paises = rollup("SELECT * FROM COUNTRY_ROLLUP ORDER BY COUNTRY_ID");
+
+        // escrituras por fuera de ImportService: los agregados no se enteran
+        ejecutar("UPDATE LEGO_SETS SET PIECE_COUNT = PIECE_COUNT + 1000 WHERE PROD_ID = 75001");
+        ejecutar("UPDATE LEGO_SETS SET DELETED = TRUE WHERE PROD_ID = 75003");
+        assertEquals(temas, rollup("SELECT * FROM THEME_ROLLUP ORDER BY THEME_ID"));
+
+        assertTrue(DatabaseInitializer.prepararEsquema(false), "el esquema se reutiliza");
+        var corregidos = rollup("SELECT * FROM THEME_ROLLUP ORDER BY THEME_ID");
+        assertNotEquals(temas, corregidos);
+        assertNotEquals(paises, rollup("SELECT * FROM COUNTRY_ROLLUP ORDER BY COUNTRY_ID"));
+        assertIgualAReconstruir("prepararEsquema");
+    }
+
+    private void assertIgualAReconstruir(String etapa) {
+        var temas = rollup("SELECT * FROM THEME_ROLLUP ORDER BY THEME_ID");
+        var paises = rollup("SELECT * FROM COUNTRY_ROLLUP ORDER BY COUNTRY_ID");
+        assertFalse(temas.isEmpty(), etapa);
+
+        svc.reconstruirAgregados();
+
+        assertEquals(rollup("SELECT * FROM THEME_ROLLUP ORDER BY THEME_ID"), temas, "THEME_ROLLUP tras " + etapa);
+        assertEquals(rollup("SELECT * FROM COUNTRY_ROLLUP ORDER BY COUNTRY_ID"), paises, "COUNTRY_ROLLUP tras " + etapa);
+    }
+
+    private static List<List<Object>> rollup(String sql) {
+        return directo(sql).stream().map(Arrays::asList).toList();
+    }
+
+    private static List<Object[]> directo(String sql) {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            @SuppressWarnings("unchecked")
+            List<Object[]> filas = em.createNativeQuery(sql).getResultList();
+            return filas;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void ejecutar(String sql) {
+        var em = LocalEntityManagerProvider.em();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery(sql).executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<Object> nombres(List<Object[]> filas) {
+        return filas.stream().map(r -> r[0]).toList();
+    }
+
+    private Path escribir(String contenido) throws IOException {
+        return Files.writeString(Files.createTempFile(dir, "lego", ".csv"), contenido, StandardCharsets.UTF_8);
+    }
+}